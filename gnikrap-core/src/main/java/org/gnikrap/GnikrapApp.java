@@ -22,8 +22,10 @@ import static io.undertow.Handlers.resource;
 import static io.undertow.Handlers.websocket;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.gnikrap.httphandler.FolderHttpHandler;
@@ -31,6 +33,7 @@ import org.gnikrap.script.EV3ActionProcessor;
 import org.gnikrap.script.EV3SriptCommandSocketConnectionCallback;
 import org.gnikrap.script.FakeEV3ExecutionManager;
 import org.gnikrap.script.ScriptExecutionManager;
+import org.gnikrap.script.XSensorDatagramReceiver;
 import org.gnikrap.script.actions.RunScript;
 import org.gnikrap.script.actions.SetXSensorValue;
 import org.gnikrap.script.actions.ShutdownBrick;
@@ -55,6 +58,7 @@ public class GnikrapApp implements GnikrapAppContext {
   private ScriptExecutionManager scriptExecutionManager;
   private int httpPort;
   private EV3SriptCommandSocketConnectionCallback webSocketConnectionCallback;
+  private XSensorDatagramReceiver xSensorDatagramReceiver;
   private boolean alreadyStopped = false;
 
   /**
@@ -83,6 +87,12 @@ public class GnikrapApp implements GnikrapAppContext {
     actionProcessor.registerActionMessageProcessor(new SetXSensorValue());
     actionProcessor.registerActionMessageProcessor(new ShutdownBrick());
     actionProcessor.registerActionMessageProcessor(new StopGnikrap(this));
+
+    // Optional low-latency lane for the XSensors values of native clients
+    int xSensorUdpPort = config.getValueAsInt("xSensorUdpPort", 0);
+    if (xSensorUdpPort > 0) {
+      xSensorDatagramReceiver = new XSensorDatagramReceiver(scriptExecutionManager, xSensorUdpPort);
+    }
   }
 
   private void buildHttpServer() {
@@ -133,6 +143,13 @@ public class GnikrapApp implements GnikrapAppContext {
       scriptExecutionManager.start();
       actionProcessor.start();
       server.start();
+      if (xSensorDatagramReceiver != null) {
+        try {
+          xSensorDatagramReceiver.start();
+        } catch (IOException ioe) {
+          LOGGER.log(Level.WARNING, "Cannot listen XSensor datagrams, only WebSocket will be available", ioe);
+        }
+      }
     }
   }
 
@@ -142,6 +159,9 @@ public class GnikrapApp implements GnikrapAppContext {
   public void stop() {
     alreadyStopped = true;
     actionProcessor.stop();
+    if (xSensorDatagramReceiver != null) {
+      xSensorDatagramReceiver.stop();
+    }
     server.stop();
     scriptExecutionManager.stopScript();
   }
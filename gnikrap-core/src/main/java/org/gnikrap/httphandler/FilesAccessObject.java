@@ -76,6 +76,16 @@ public class FilesAccessObject {
     }
   }
 
+  /**
+   * Returns the file (in the data folder) matching the provided filename.
+   * 
+   * @throws IOException thrown if the filename is not valid
+   */
+  public File getFile(String filename, boolean readOnly) throws IOException {
+    checkFilename(filename, readOnly);
+    return new File(getStorageFilename(filename));
+  }
+
   private String getStorageFilename(String filename) {
     return dataFolder + File.separator + filename.trim();
   }
@@ -18,6 +18,7 @@
 package org.gnikrap.script;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
@@ -158,6 +159,13 @@ public final class EV3ActionProcessor {
     }
   }
 
+  /**
+   * Send a binary message to all the browsers. Binary messages are already batched by the caller, so they are always sent directly.
+   */
+  void sendBackBinaryMessage(ByteBuffer message) {
+    remoteWebSocketService.sendBinaryMessage(message);
+  }
+
   void logAndSendBackException(Exception ex) {
     LOGGER.log(Level.SEVERE, "Error while processing a message from the browser", ex);
     sendBackEV3Exception(new EV3ScriptException(EV3ScriptException.UNEXPECTED_ERROR, MapBuilder.buildHashMap("error", ex.toString()).build()));
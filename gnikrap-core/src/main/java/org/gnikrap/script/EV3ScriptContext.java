@@ -17,15 +17,35 @@
  */
 package org.gnikrap.script;
 
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.gnikrap.GnikrapAppContext;
+import org.gnikrap.httphandler.FilesAccessObject;
+import org.gnikrap.script.ev3api.EV3ScriptException;
 import org.gnikrap.script.ev3api.SimpleChrono;
 import org.gnikrap.script.ev3api.SimpleEV3Brick;
+import org.gnikrap.script.ev3api.SimpleEV3Filters;
 import org.gnikrap.script.ev3api.SimpleEV3Keyboard.SimpleEV3Button;
 import org.gnikrap.script.ev3api.xsensors.XSensor;
 import org.gnikrap.script.ev3api.xsensors.XSensorManager;
+import org.gnikrap.script.ev3api.xsensors.XSensorStreamPlayer;
+import org.gnikrap.script.ev3api.xsensors.XSensorStreamRecorder;
 import org.gnikrap.script.ev3api.xsensors.XSensorValue;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
+import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 import lejos.utility.Delay;
@@ -35,6 +55,11 @@ import lejos.utility.Delay;
  * Within the script, the object {@code ev3} is an instance of this object.
  */
 public final class EV3ScriptContext {
+  private static final Logger LOGGER = LoggerUtils.getLogger(EV3ScriptContext.class);
+
+  public static final String DEFAULT_SOUNDS_FOLDER = "userData/sounds";
+  /** All the published values are sent every n flushes, in order to resync the browsers connected meanwhile */
+  static final int PUBLISH_KEYFRAME_PERIOD = 25;
 
   private boolean running;
   private final SimpleEV3Button escape;
@@ -43,22 +68,36 @@ public final class EV3ScriptContext {
   // XSensors
   private final XSensorManager xsensor;
   private int xSensorActive = 0;
+  private final String xSensorRecordsFolder;
+  private XSensorStreamPlayer xSensorPlayer;
+  private Thread xSensorPlayerThread;
 
   // Other resources
   private final SimpleChrono chrono;
+  private final SimpleEV3Filters filters = new SimpleEV3Filters();
+  private final PublishedValues publishedValues = new PublishedValues();
+  private volatile ScheduledExecutorService publishExecutor;
+  private int publishFlushCount;
+  private int publishBrowserConnections;
+  private final AtomicInteger browserConnections = new AtomicInteger();
+  private final ScriptCallbacks scriptCallbacks = new ScriptCallbacks();
 
   // Configuration
   private final Configuration configuration = new Configuration();
   private int confIsRunningWait = 0;
   private boolean confIsRunningCheckEscapeKey = true;
   private int confWaitingTimeBeforeHardKill = 5000;
+  private int confPublishPeriod = 200;
   private final ScriptExecutionManager scriptExecutionMgr;
+  private final String soundsFolder;
 
   public EV3ScriptContext(GnikrapAppContext context, SimpleEV3Brick ev3) {
     this.ev3 = ev3;
     this.xsensor = new XSensorManager();
     this.chrono = new SimpleChrono();
     this.scriptExecutionMgr = context.getScriptExecutionManager();
+    this.xSensorRecordsFolder = context.getConfiguration().getValueAsString("xSensorRecordsFolder", "userData/xsensorrecords");
+    this.soundsFolder = context.getConfiguration().getValueAsString("SoundsFolder", DEFAULT_SOUNDS_FOLDER);
     if (ev3 != null) {
       escape = ev3.getKeyboard().getEscape();
     } else {
@@ -86,6 +125,118 @@ public final class EV3ScriptContext {
     }
   }
 
+  /**
+   * Publish a value in order to watch it in the browser: only the latest value of each name is kept, the values changed are sent periodically
+   * (see {@link Configuration#setPublishPeriod(int)}). Calling it in each loop is cheap, contrary to {@link #notify(String)}.
+   * 
+   * @param value a number or a text (the other values are converted to text)
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void publish(String name, Object value) throws EV3ScriptException {
+    if (name != null) {
+      onPublished(publishedValues.publish(name, value));
+    }
+  }
+
+  /**
+   * Same as {@link #publish(String, Object)}, without creating an object for the number.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void publish(String name, double value) throws EV3ScriptException {
+    if (name != null) {
+      onPublished(publishedValues.publish(name, value));
+    }
+  }
+
+  /**
+   * Same as {@link #publish(String, Object)}, without creating an object for the number.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void publish(String name, int value) throws EV3ScriptException {
+    if (name != null) {
+      onPublished(publishedValues.publish(name, value));
+    }
+  }
+
+  private void onPublished(boolean published) throws EV3ScriptException {
+    if (!published) {
+      throw new EV3ScriptException(EV3ScriptException.TOO_MANY_PUBLISHED_VALUES, MapBuilder.buildHashMap("max", String.valueOf(PublishedValues.MAX_VALUES))
+          .build());
+    }
+    if (publishExecutor == null) {
+      startPublishing();
+    }
+  }
+
+  private synchronized void startPublishing() {
+    if (publishExecutor != null) {
+      return;
+    }
+    publishExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("PublishFlusher"));
+    publishExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          int connections = browserConnections.get();
+          boolean all = (publishFlushCount++ % PUBLISH_KEYFRAME_PERIOD == 0) || (connections != publishBrowserConnections);
+          publishBrowserConnections = connections;
+          flushPublishedValues(all);
+        } catch (Exception ex) {
+          LOGGER.log(Level.WARNING, "Error while sending the published values", ex);
+        }
+      }
+    }, 0, confPublishPeriod, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized void stopPublishing() {
+    if (publishExecutor != null) {
+      publishExecutor.shutdown();
+      publishExecutor = null;
+      flushPublishedValues(false); // Send the last changes
+    }
+  }
+
+  /**
+   * The context is reused by the next script: its names shouldn't be mixed with the ones of the previous script.
+   */
+  private synchronized void resetPublishedValues() {
+    publishedValues.clear();
+    publishFlushCount = 0;
+  }
+
+  private void flushPublishedValues(boolean all) {
+    ByteBuffer message = publishedValues.nextFrame(all);
+    if (message != null) {
+      sendBinaryMessage(message);
+    }
+  }
+
+  /**
+   * @return the folder of the sound files (not available to the script).
+   */
+  public String getSoundsFolder() {
+    return soundsFolder;
+  }
+
+  void onBrowserConnected() {
+    browserConnections.incrementAndGet();
+  }
+
+  /**
+   * @return a counter incremented each time a browser is connected, in order to send the full state of the streamed data to the new browser (not
+   *         available to the script).
+   */
+  public int getBrowserConnections() {
+    return browserConnections.get();
+  }
+
+  /**
+   * Send a binary message to the browsers (for the devices that stream data, not available to the script).
+   */
+  public void sendBinaryMessage(ByteBuffer message) {
+    scriptExecutionMgr.sendBackBinaryMessage(message);
+  }
+
   /**
    * This method manage the script stop and also make the script thread friendly with the other threads.
    * 
@@ -110,10 +261,21 @@ public final class EV3ScriptContext {
       if (confIsRunningCheckEscapeKey && (escape != null) && escape.isDown()) {
         stop();
       }
+      if (running) {
+        scriptCallbacks.runAll();
+      }
     }
     return running;
   }
 
+  /**
+   * Queue a function that will be called by the script thread (on its next call to {@link #isOk()}), in order to call the script functions given as
+   * listener from the script thread only. Can be called by any thread.
+   */
+  public void runInScriptThread(Runnable callback) {
+    scriptCallbacks.add(callback);
+  }
+
   /**
    * @return the object that enable to pilot the EV3 brick
    */
@@ -122,6 +284,14 @@ public final class EV3ScriptContext {
     return ev3;
   }
 
+  /**
+   * Open the given devices in parallel, should be called at the beginning of the script, see {@link SimpleEV3Brick#require(String...)}.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public Map<String, Long> require(String... devices) throws EV3ScriptException {
+    return (ev3 != null ? ev3.require(devices) : Collections.<String, Long>emptyMap());
+  }
+
   /**
    * @return the XSensor with the given name.
    */
@@ -130,6 +300,88 @@ public final class EV3ScriptContext {
     return xsensor.getSensor(name);
   }
 
+  XSensorManager getXSensorManager() {
+    return xsensor;
+  }
+
+  /**
+   * Record all the XSensor values received from now in the given file (in the XSensor records folder), until {@link #stopXSensorRecording()} or the end
+   * of the script.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startXSensorRecording(String filename) throws EV3ScriptException {
+    FileOutputStream fos = null;
+    try {
+      FilesAccessObject fao = new FilesAccessObject(xSensorRecordsFolder);
+      fos = new FileOutputStream(fao.getFile(filename, false));
+      xsensor.startRecording(new XSensorStreamRecorder(fos));
+    } catch (IOException ioe) {
+      if (fos != null) {
+        try {
+          fos.close();
+        } catch (IOException ignore) {
+          // Nothing more to do, already in error
+        }
+      }
+      throw new EV3ScriptException(EV3ScriptException.CANT_WRITE_FILE, MapBuilder.buildHashMap("filename", filename).put("error", ioe.toString()).build());
+    }
+  }
+
+  /**
+   * Stop the XSensor recording in progress (if any).
+   * 
+   * @return the number of values recorded.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int stopXSensorRecording() {
+    return xsensor.stopRecording();
+  }
+
+  /**
+   * Replay in background the XSensor values recorded in the given file (in the XSensor records folder), a replay in progress is stopped.
+   * 
+   * @param speed 1 to replay at the original timing, 2 to replay twice faster, etc. 0 to replay as fast as possible.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void startXSensorReplay(String filename, float speed) throws EV3ScriptException {
+    stopXSensorReplay();
+    try {
+      FilesAccessObject fao = new FilesAccessObject(xSensorRecordsFolder);
+      xSensorPlayer = new XSensorStreamPlayer(new FileInputStream(fao.getFile(filename, true)), xsensor, speed, new XSensorStreamPlayer.ValueSetter() {
+        @Override
+        public void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value) {
+          EV3ScriptContext.this.setXSensorFutureValue(sensor, value); // Same path than the values coming from the browser
+        }
+      });
+    } catch (IOException ioe) {
+      throw new EV3ScriptException(EV3ScriptException.CANT_READ_FILE, MapBuilder.buildHashMap("filename", filename).put("error", ioe.toString()).build());
+    }
+    xSensorPlayerThread = new Thread(xSensorPlayer, "XSensorReplay");
+    xSensorPlayerThread.setDaemon(true);
+    xSensorPlayerThread.start();
+  }
+
+  /**
+   * Stop the XSensor replay in progress (if any).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void stopXSensorReplay() {
+    if (xSensorPlayer != null) {
+      xSensorPlayer.stop();
+      xSensorPlayerThread.interrupt();
+      xSensorPlayer = null;
+      xSensorPlayerThread = null;
+    }
+  }
+
+  /**
+   * @return true if a XSensor replay is in progress.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized boolean isXSensorReplaying() {
+    return (xSensorPlayer != null) && xSensorPlayer.isPlaying();
+  }
+
   /**
    * Stop the script.
    */
@@ -149,9 +401,9 @@ public final class EV3ScriptContext {
   /**
    * Set the value and change the settings in order to allocate a minimum of time for the XSensors events processing
    */
-  void setXSensorFutureValue(String name, Future<XSensorValue> value) {
+  void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value) {
     xSensorActive = 10; // Maximum wait 10 * 10ms (xSensor streaming is one message/sensor each 50ms <=> 20 msgs/s => Were should be ok the 2 next messages)
-    getXSensor(name).setFutureValue(value);
+    sensor.setFutureValue(value);
   }
 
   /**
@@ -176,10 +428,23 @@ public final class EV3ScriptContext {
     return chrono;
   }
 
+  /**
+   * @return the factory of the filters for the sensor values.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filters getFilters() {
+    return filters;
+  }
+
   void releaseResources() {
+    stopPublishing();
+    resetPublishedValues();
+    stopXSensorRecording();
+    stopXSensorReplay();
     if (ev3 != null) {
       ev3.releaseResources();
     }
+    scriptCallbacks.clear(); // After the devices (cancelled moves)
   }
 
   public class Configuration {
@@ -235,5 +500,26 @@ public final class EV3ScriptContext {
     public int getWaitingTimeBeforeHardKill() {
       return confWaitingTimeBeforeHardKill;
     }
+
+    /**
+     * @param timeInMs the time between 2 sendings of the published values to the browser, between [50, 10000]
+     */
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public Configuration setPublishPeriod(int timeInMs) {
+      confPublishPeriod = Math.min(Math.max(timeInMs, 50), 10000);
+      synchronized (EV3ScriptContext.this) {
+        if (publishExecutor != null) { // Restart with the new period
+          stopPublishing();
+          startPublishing();
+        }
+      }
+
+      return this;
+    }
+
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public int getPublishPeriod() {
+      return confPublishPeriod;
+    }
   }
 }
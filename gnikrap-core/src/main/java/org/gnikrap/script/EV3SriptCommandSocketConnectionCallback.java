@@ -27,6 +27,7 @@ import io.undertow.websockets.core.WebSockets;
 import io.undertow.websockets.spi.WebSocketHttpExchange;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -47,9 +48,11 @@ final public class EV3SriptCommandSocketConnectionCallback implements WebSocketC
   private final List<WebSocketSession> sessions = new ArrayList<WebSocketSession>();
 
   private final EV3ActionProcessor ev3ActionProcessor;
+  private final GnikrapAppContext context;
 
   public EV3SriptCommandSocketConnectionCallback(GnikrapAppContext context) {
     this.ev3ActionProcessor = context.getEV3ActionProcessor();
+    this.context = context;
   }
 
   @Override
@@ -62,6 +65,7 @@ final public class EV3SriptCommandSocketConnectionCallback implements WebSocketC
       LOGGER.warning("Important number (" + sessions.size() + ") of session opened at the same time: Potential performance issues");
     }
     channel.resumeReceives(); // /!\ channel don't receive nothing if not called
+    context.getScriptExecutionManager().onBrowserConnected(); // The new browser needs the full state of the streamed data
   }
 
   void unregisterSession(WebSocketSession session) {
@@ -90,6 +94,17 @@ final public class EV3SriptCommandSocketConnectionCallback implements WebSocketC
     }
   }
 
+  /**
+   * Send a binary message to all the WebSocket sessions.
+   * 
+   * @param message The message to sent (the position of the buffer isn't changed).
+   */
+  public void sendBinaryMessage(ByteBuffer message) {
+    for (WebSocketSession session : sessions) {
+      session.sendBinaryMessage(message.duplicate()); // Each session has its own position
+    }
+  }
+
   /**
    * A websocket session.<br/>
    * Manage the various listener and callback associated to the channel.
@@ -159,6 +174,10 @@ final public class EV3SriptCommandSocketConnectionCallback implements WebSocketC
       WebSockets.sendText(message, myChannel, sendCallback);
     }
 
+    void sendBinaryMessage(ByteBuffer message) {
+      WebSockets.sendBinary(message, myChannel, sendCallback);
+    }
+
     UUID getUUID() {
       return uuid;
     }
@@ -75,6 +75,13 @@ package org.gnikrap.script;
  * <li>txt: The message</li>
  * </ul>
  * </ul>
+ * <p/>
+ * Binary messages (EV3 -> Browser), the first byte is the binary message type:
+ * <ul>
+ * <li>Motor telemetry ({@link #BINARY_MESSAGE_MOTOR_TELEMETRY}), see {@link org.gnikrap.script.ev3api.SimpleEV3MotorRecorder}</li>
+ * <li>Screen mirroring ({@link #BINARY_MESSAGE_SCREEN}), see {@link org.gnikrap.script.ev3api.SimpleEV3Screen#startMirroring(int)}</li>
+ * <li>Values published by the script ({@link #BINARY_MESSAGE_PUBLISHED_VALUES}), see {@link PublishedValues}</li>
+ * </ul>
  */
 public final class JsonMessageFields {
 
@@ -119,6 +126,11 @@ public final class JsonMessageFields {
   public static final String EXTERNAL_SENSOR_VALUE = "xSnsVal";
   public static final String EXTERNAL_SENSOR_TYPE = "xSnsTyp";
 
+  /** Binary message types */
+  public static final byte BINARY_MESSAGE_MOTOR_TELEMETRY = 1;
+  public static final byte BINARY_MESSAGE_SCREEN = 2;
+  public static final byte BINARY_MESSAGE_PUBLISHED_VALUES = 3;
+
   private JsonMessageFields() {
     // Avoid instantiation
   }
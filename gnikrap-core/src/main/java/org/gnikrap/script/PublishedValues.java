@@ -0,0 +1,195 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The values published by the script (see {@link EV3ScriptContext#publish(String, Object)}): only the latest value of each name is kept, in arrays
+ * indexed by a slot allocated on the first publication of the name (the numbers are stored as double, the int and double overloads avoid boxing them). Publishing a value
+ * only marks the slot as changed, the changed values are sent periodically in one frame.
+ * <p/>
+ * Binary message format (big endian):
+ * <ul>
+ * <li>byte: {@link JsonMessageFields#BINARY_MESSAGE_PUBLISHED_VALUES}</li>
+ * <li>short: the number of values</li>
+ * <li>for each value: short: the length of the name, the name (UTF-8), byte: the type ({@link #TYPE_NUMBER} or {@link #TYPE_TEXT}), then the value:
+ * double for a number, short: the length of the text and the text (UTF-8) for a text</li>
+ * </ul>
+ */
+final class PublishedValues {
+
+  static final int MAX_VALUES = 256;
+  static final byte TYPE_NUMBER = 0;
+  static final byte TYPE_TEXT = 1;
+  /** The longer names and texts are truncated (the encoded length should fit in a short) */
+  static final int MAX_TEXT_LENGTH = 1000;
+
+  private final Map<String, Integer> slots = new HashMap<String, Integer>();
+  private byte[][] names = new byte[16][];
+  private double[] numbers = new double[16];
+  private String[] texts = new String[16]; // null for the numbers
+  private boolean[] changed = new boolean[16];
+  private int size;
+  private int changedCount;
+
+  /**
+   * @return false if the name is new and there is already {@link #MAX_VALUES} names.
+   */
+  synchronized boolean publish(String name, Object value) {
+    if (value instanceof Number) {
+      return publish(name, ((Number) value).doubleValue());
+    }
+    int i = getSlot(name);
+    if (i < 0) {
+      return false;
+    }
+    String t = truncate(String.valueOf(value));
+    if (!t.equals(texts[i])) {
+      texts[i] = t;
+      markChanged(i);
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link #publish(String, Object)} without boxing the number.
+   */
+  synchronized boolean publish(String name, double value) {
+    int i = getSlot(name);
+    if (i < 0) {
+      return false;
+    }
+    if ((texts[i] != null) || (Double.compare(numbers[i], value) != 0)) {
+      numbers[i] = value;
+      texts[i] = null;
+      markChanged(i);
+    }
+    return true;
+  }
+
+  /**
+   * Same as {@link #publish(String, Object)} without boxing the number.
+   */
+  synchronized boolean publish(String name, int value) {
+    return publish(name, (double) value);
+  }
+
+  /**
+   * @return the slot of the name (allocated and marked as changed if the name is new), -1 if the name is new and there is already {@link #MAX_VALUES}
+   *         names.
+   */
+  private int getSlot(String name) {
+    Integer slot = slots.get(name);
+    if (slot != null) {
+      return slot.intValue();
+    }
+    if (size >= MAX_VALUES) {
+      return -1;
+    }
+    if (size == names.length) {
+      int capacity = 2 * size;
+      names = Arrays.copyOf(names, capacity);
+      numbers = Arrays.copyOf(numbers, capacity);
+      texts = Arrays.copyOf(texts, capacity);
+      changed = Arrays.copyOf(changed, capacity);
+    }
+    int i = size++;
+    slots.put(name, i);
+    names[i] = truncate(name).getBytes(StandardCharsets.UTF_8);
+    texts[i] = null;
+    markChanged(i);
+    return i;
+  }
+
+  private void markChanged(int i) {
+    if (!changed[i]) {
+      changed[i] = true;
+      changedCount++;
+    }
+  }
+
+  private static String truncate(String text) {
+    return (text.length() > MAX_TEXT_LENGTH ? text.substring(0, MAX_TEXT_LENGTH) : text);
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Forget all the names (eg. at the end of the script).
+   */
+  synchronized void clear() {
+    slots.clear();
+    Arrays.fill(names, 0, size, null);
+    Arrays.fill(texts, 0, size, null);
+    Arrays.fill(changed, 0, size, false);
+    size = 0;
+    changedCount = 0;
+  }
+
+  /**
+   * @param all true to send all the values (eg. for the browsers connected meanwhile), false to send only the values changed since the last frame.
+   * @return the binary message, null if there is nothing to send.
+   */
+  synchronized ByteBuffer nextFrame(boolean all) {
+    int count = (all ? size : changedCount);
+    if (count == 0) {
+      return null;
+    }
+    byte[][] encodedTexts = new byte[size][];
+    int length = 3;
+    for (int i = 0; i < size; i++) {
+      if (all || changed[i]) {
+        length += 2 + names[i].length + 1;
+        if (texts[i] == null) {
+          length += 8;
+        } else {
+          encodedTexts[i] = texts[i].getBytes(StandardCharsets.UTF_8);
+          length += 2 + encodedTexts[i].length;
+        }
+      }
+    }
+    ByteBuffer result = ByteBuffer.allocate(length);
+    result.put(JsonMessageFields.BINARY_MESSAGE_PUBLISHED_VALUES);
+    result.putShort((short) count);
+    for (int i = 0; i < size; i++) {
+      if (all || changed[i]) {
+        result.putShort((short) names[i].length);
+        result.put(names[i]);
+        if (texts[i] == null) {
+          result.put(TYPE_NUMBER);
+          result.putDouble(numbers[i]);
+        } else {
+          result.put(TYPE_TEXT);
+          result.putShort((short) encodedTexts[i].length);
+          result.put(encodedTexts[i]);
+        }
+        changed[i] = false;
+      }
+    }
+    changedCount = 0;
+    result.flip();
+    return result;
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script;
+
+import java.util.ArrayDeque;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.LoggerUtils;
+
+/**
+ * The functions queued by the other threads (end of move callbacks, key listeners...) in order to be called by the script thread (see
+ * {@link EV3ScriptContext#runInScriptThread(Runnable)}): the script functions are then never called concurrently with the script.<br/>
+ * Bounded, the oldest functions are lost if the script doesn't call them.
+ */
+final class ScriptCallbacks {
+  private static final Logger LOGGER = LoggerUtils.getLogger(ScriptCallbacks.class);
+
+  static final int MAX_CALLBACKS = 64;
+
+  // Guarded by itself
+  private final ArrayDeque<Runnable> callbacks = new ArrayDeque<Runnable>();
+  private volatile boolean pending; // Avoid the lock when nothing is queued
+  private boolean running; // Only used by the script thread
+
+  /**
+   * Can be called by any thread.
+   */
+  void add(Runnable callback) {
+    synchronized (callbacks) {
+      if (callbacks.size() >= MAX_CALLBACKS) {
+        callbacks.poll();
+        LOGGER.warning("Too many functions waiting for the script thread, the oldest is lost");
+      }
+      callbacks.add(callback);
+      pending = true;
+    }
+  }
+
+  /**
+   * Call the queued functions, to be called by the script thread. The errors are script errors (not caught), the next functions stay queued.
+   */
+  void runAll() {
+    if (!pending || running) {
+      return; // Nothing to do or the function called isOk()
+    }
+    running = true;
+    try {
+      Runnable callback;
+      while ((callback = next()) != null) {
+        callback.run();
+      }
+    } finally {
+      running = false;
+    }
+  }
+
+  private Runnable next() {
+    synchronized (callbacks) {
+      Runnable result = callbacks.poll();
+      pending = !callbacks.isEmpty();
+      return result;
+    }
+  }
+
+  void clear() {
+    synchronized (callbacks) {
+      callbacks.clear();
+      pending = false;
+    }
+  }
+
+  int size() {
+    synchronized (callbacks) {
+      return callbacks.size();
+    }
+  }
+}
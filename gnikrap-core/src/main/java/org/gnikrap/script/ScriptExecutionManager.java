@@ -18,6 +18,7 @@
 package org.gnikrap.script;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
@@ -29,6 +30,8 @@ import javax.script.ScriptEngineManager;
 import org.gnikrap.GnikrapAppContext;
 import org.gnikrap.script.ev3api.EV3ScriptException;
 import org.gnikrap.script.ev3api.SimpleEV3Brick;
+import org.gnikrap.script.ev3api.xsensors.XSensor;
+import org.gnikrap.script.ev3api.xsensors.XSensorManager;
 import org.gnikrap.script.ev3api.xsensors.XSensorValue;
 import org.gnikrap.script.ev3menu.WelcomeMenu;
 import org.gnikrap.utils.LoggerUtils;
@@ -143,10 +146,24 @@ public class ScriptExecutionManager {
     scriptResult = scriptExecutor.submit(scriptTask);
   }
 
+  /**
+   * A browser has been connected: the data streamed to the browsers (screen mirroring, published values) will be fully sent with their next message.
+   */
+  public void onBrowserConnected() {
+    EV3ScriptContext temp = scriptContext;
+    if (temp != null) {
+      temp.onBrowserConnected();
+    }
+  }
+
   void sendBackMessage(String msg) {
     actionProcessor.sendBackMessage(null, msg);
   }
 
+  void sendBackBinaryMessage(ByteBuffer msg) {
+    actionProcessor.sendBackBinaryMessage(msg);
+  }
+
   /**
    * Stop the script currently running
    */
@@ -190,9 +207,29 @@ public class ScriptExecutionManager {
     reset(true);
   }
 
-  public void setXSensorFutureValue(String sensorName, Future<XSensorValue> value) {
+  public void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value) {
+    if (scriptContext != null) {
+      scriptContext.setXSensorFutureValue(sensor, value);
+    }
+  }
+
+  /**
+   * Returns the XSensor with the given name, null if there is no script context. (Note: The XSensor object can be locally kept).
+   */
+  public XSensor getXSensor(String sensorName) {
+    if (scriptContext != null) {
+      return scriptContext.getXSensor(sensorName);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the XSensorManager, null if there is no script context. (Note: The XSensorManager object can be locally kept).
+   */
+  public XSensorManager getXSensorManager() {
     if (scriptContext != null) {
-      scriptContext.setXSensorFutureValue(sensorName, value);
+      return scriptContext.getXSensorManager();
     }
+    return null;
   }
 }
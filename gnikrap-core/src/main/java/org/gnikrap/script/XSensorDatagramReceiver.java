@@ -0,0 +1,223 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.script.ev3api.xsensors.JSonXSensorMessageFields;
+import org.gnikrap.script.ev3api.xsensors.XSensorManager;
+import org.gnikrap.script.ev3api.xsensors.XSensorValueFactory;
+import org.gnikrap.utils.LoggerUtils;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Receive the XSensor values sent by native clients (joystick bridge, phone app, etc.) as UDP datagrams.<br/>
+ * Unlike the WebSocket, a lost datagram doesn't delay the next ones: out-of-order (stale) datagrams are just dropped.
+ * 
+ * Datagram format (big endian):
+ * <ul>
+ * <li>version (byte), currently 1</li>
+ * <li>sequence number (int), incremented by the sender for each value of a sensor (wrap-around allowed)</li>
+ * <li>sensor name length (unsigned byte), sensor name (UTF-8 bytes)</li>
+ * <li>sensor type length (unsigned byte), sensor type (UTF-8 bytes), empty for a generic XSensor</li>
+ * <li>the value: UTF-8 json (same content as the WebSocket value), until the end of the datagram</li>
+ * </ul>
+ * The values has to be complete (delta values aren't accepted as a datagram can be lost).<br/>
+ * 
+ * Note: The datagrams are processed by only one thread.
+ */
+public final class XSensorDatagramReceiver implements Runnable {
+  private static final Logger LOGGER = LoggerUtils.getLogger(XSensorDatagramReceiver.class);
+
+  static final byte VERSION = 1;
+  private static final int MAX_DATAGRAM_SIZE = 8192;
+  // A sequence number lower than the last one by more than this value means that the sender has restarted
+  private static final int SEQUENCE_RESTART_WINDOW = 1000;
+  /** Maximum number of sensors which sequence is kept (the least recently updated are forgotten) */
+  static final int MAX_SEQUENCES = 64;
+
+  private final ScriptExecutionManager scriptExecutionManager;
+  private final int port;
+  // Key is the sensor name (only accessed by the receiving thread), in access order in order to forget the least recently updated sensors
+  private final Map<String, SequenceState> sequences = new LinkedHashMap<String, SequenceState>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, SequenceState> eldest) {
+      return size() > MAX_SEQUENCES;
+    }
+  };
+  private volatile DatagramSocket socket;
+  private volatile int acceptedCount;
+  private volatile int droppedCount;
+
+  /**
+   * @param port the UDP port to listen, 0 for an ephemeral port (see {@link #getLocalPort()})
+   */
+  public XSensorDatagramReceiver(ScriptExecutionManager scriptExecutionManager, int port) {
+    this.scriptExecutionManager = scriptExecutionManager;
+    this.port = port;
+  }
+
+  /**
+   * Start listening in a dedicated thread.
+   */
+  public void start() throws IOException {
+    socket = new DatagramSocket(port);
+    Thread t = new Thread(this, "XSensorDatagramReceiver");
+    t.setDaemon(true);
+    t.start();
+    LOGGER.info("Listening XSensor datagrams on UDP port " + socket.getLocalPort());
+  }
+
+  /**
+   * Stop listening.
+   */
+  public void stop() {
+    DatagramSocket s = socket;
+    socket = null;
+    if (s != null) {
+      s.close(); // Unblock the receiving thread
+    }
+  }
+
+  /**
+   * @return the UDP port listened, -1 if not started.
+   */
+  public int getLocalPort() {
+    DatagramSocket s = socket;
+    return (s == null ? -1 : s.getLocalPort());
+  }
+
+  public int getAcceptedCount() {
+    return acceptedCount;
+  }
+
+  public int getDroppedCount() {
+    return droppedCount;
+  }
+
+  @Override
+  public void run() {
+    byte[] buffer = new byte[MAX_DATAGRAM_SIZE];
+    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+    DatagramSocket s;
+    while ((s = socket) != null) {
+      try {
+        packet.setLength(buffer.length);
+        s.receive(packet);
+        if (process(packet.getSocketAddress(), buffer, packet.getOffset(), packet.getLength())) {
+          acceptedCount++;
+        } else {
+          droppedCount++;
+        }
+      } catch (IOException ioe) {
+        if (socket != null) {
+          LOGGER.log(Level.WARNING, "Exception ignored", ioe);
+        } // else: Socket closed by stop()
+      }
+    }
+  }
+
+  /**
+   * @return true if the datagram has been accepted, false if dropped.
+   */
+  boolean process(SocketAddress sender, byte[] data, int offset, int length) {
+    String sensorName;
+    String sensorType;
+    JsonValue rawValue;
+    try {
+      ByteBuffer bb = ByteBuffer.wrap(data, offset, length);
+      if (bb.get() != VERSION) {
+        LOGGER.fine("XSensor datagram with unsupported version dropped");
+        return false;
+      }
+      int sequence = bb.getInt();
+      sensorName = readString(bb);
+      if (isInSequence(sender, sensorName, sequence) == false) {
+        return false; // Stale value, no need to decode the json
+      }
+      sensorType = readString(bb);
+      rawValue = Json.parse(new String(data, bb.position(), bb.remaining(), StandardCharsets.UTF_8));
+    } catch (RuntimeException ex) { // BufferUnderflowException, ParseException, etc.
+      LOGGER.log(Level.FINE, "Invalid XSensor datagram dropped", ex);
+      return false;
+    }
+    if ((rawValue.isObject() == false) || rawValue.asObject().getBoolean(JSonXSensorMessageFields.IS_DELTA, false)) {
+      LOGGER.fine("XSensor datagram with a delta value dropped");
+      return false;
+    }
+
+    XSensorManager xsensorManager = scriptExecutionManager.getXSensorManager();
+    if (xsensorManager == null) {
+      return false; // No script context, nothing to update
+    }
+    xsensorManager.record(sensorName, sensorType, rawValue); // Only if a recording is in progress
+    scriptExecutionManager.setXSensorFutureValue(xsensorManager.getSensor(sensorName), XSensorValueFactory.newFutureValue(sensorType, rawValue));
+    return true;
+  }
+
+  /**
+   * Returns true if the sequence number is newer than the last one received for the sensor (and keep it as the last one).
+   */
+  private boolean isInSequence(SocketAddress sender, String sensorName, int sequence) {
+    SequenceState state = sequences.get(sensorName);
+    if (state == null) {
+      state = new SequenceState();
+      sequences.put(sensorName, state);
+    } else if (sender.equals(state.sender)) {
+      int diff = sequence - state.sequence; // Wrap-around safe
+      if ((diff <= 0) && (diff > -SEQUENCE_RESTART_WINDOW)) {
+        return false;
+      }
+    } // else: Another sender took over the sensor
+    state.sender = sender;
+    state.sequence = sequence;
+    return true;
+  }
+
+  int getSequenceCount() {
+    return sequences.size();
+  }
+
+  private static String readString(ByteBuffer bb) {
+    int len = bb.get() & 0xFF;
+    if (len > bb.remaining()) {
+      throw new IllegalArgumentException("Invalid string length: " + len);
+    }
+    String result = new String(bb.array(), bb.position(), len, StandardCharsets.UTF_8);
+    bb.position(bb.position() + len);
+    return result;
+  }
+
+  private static final class SequenceState {
+    SocketAddress sender;
+    int sequence;
+  }
+}
@@ -17,6 +17,8 @@
  */
 package org.gnikrap.script.actions;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 import org.gnikrap.script.ActionMessageProcessor;
@@ -24,13 +26,11 @@ import org.gnikrap.script.EV3ActionProcessor;
 import org.gnikrap.script.EV3Exception;
 import org.gnikrap.script.EV3Message;
 import org.gnikrap.script.JsonMessageFields;
-import org.gnikrap.script.ev3api.xsensors.FutureJsonToMapValue;
-import org.gnikrap.script.ev3api.xsensors.FutureJsonToXGeoValue;
-import org.gnikrap.script.ev3api.xsensors.FutureJsonToXGyroValue;
-import org.gnikrap.script.ev3api.xsensors.FutureJsonToXTouchValue;
-import org.gnikrap.script.ev3api.xsensors.FutureJsonToXVideoValue;
-import org.gnikrap.script.ev3api.xsensors.JSonXSensorMessageFields;
+import org.gnikrap.script.ScriptExecutionManager;
+import org.gnikrap.script.ev3api.xsensors.XSensor;
+import org.gnikrap.script.ev3api.xsensors.XSensorManager;
 import org.gnikrap.script.ev3api.xsensors.XSensorValue;
+import org.gnikrap.script.ev3api.xsensors.XSensorValueFactory;
 
 import com.eclipsesource.json.JsonValue;
 
@@ -39,26 +39,32 @@ import com.eclipsesource.json.JsonValue;
  */
 public class SetXSensorValue implements ActionMessageProcessor {
 
+  // XSensor handles already resolved (the XSensor objects live as long as the application)
+  private final ConcurrentMap<String, XSensor> sensors = new ConcurrentHashMap<String, XSensor>(8, 0.75f, 2);
+
   @Override
   public void process(EV3Message msg, EV3ActionProcessor context) throws EV3Exception {
     String sensorName = msg.getFieldAsText(JsonMessageFields.EXTERNAL_SENSOR_NAME);
     String sensorType = msg.getFieldAsText(JsonMessageFields.EXTERNAL_SENSOR_TYPE);
     JsonValue rawSensorValue = msg.getField(JsonMessageFields.EXTERNAL_SENSOR_VALUE);
 
-    Future<XSensorValue> futureValue;
-    if (JSonXSensorMessageFields.XSENSOR_TYPE_XGYRO.equals(sensorType)) {
-      futureValue = new FutureJsonToXGyroValue(rawSensorValue);
-    } else if (JSonXSensorMessageFields.XSENSOR_TYPE_XVIDEO.equals(sensorType)) {
-      futureValue = new FutureJsonToXVideoValue(rawSensorValue);
-    } else if (JSonXSensorMessageFields.XSENSOR_TYPE_XTOUCH.equals(sensorType)) {
-      futureValue = new FutureJsonToXTouchValue(rawSensorValue);
-    } else if (JSonXSensorMessageFields.XSENSOR_TYPE_XGEO.equals(sensorType)) {
-      futureValue = new FutureJsonToXGeoValue(rawSensorValue);
-    } else {
-      futureValue = new FutureJsonToMapValue(rawSensorValue);
+    ScriptExecutionManager sem = context.getScriptExecutionManager();
+    XSensorManager xsensorManager = sem.getXSensorManager();
+    if (xsensorManager == null) {
+      return; // No script context, nothing to update
     }
+    xsensorManager.record(sensorName, sensorType, rawSensorValue); // Only if a recording is in progress
 
-    context.getScriptExecutionManager().setXSensorFutureValue(sensorName, futureValue);
+    XSensor sensor = sensors.get(sensorName);
+    if (sensor == null) {
+      sensor = sem.getXSensor(sensorName);
+      if (sensor == null) {
+        return; // No script context, nothing to update
+      }
+      sensors.put(sensorName, sensor);
+    }
+    Future<XSensorValue> futureValue = XSensorValueFactory.newFutureValue(sensorType, rawSensorValue);
+    sem.setXSensorFutureValue(sensor, futureValue);
   }
 
   @Override
@@ -0,0 +1,149 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Classify the RGB colors (each component between 0 and 100) with the nearest reference color.<br/>
+ * The references are compiled in a lookup table of 32 x 32 x 32 bytes (5 bits by component): classifying a color is then a single array index,
+ * whatever the number of references.
+ */
+final class ColorLookupTable {
+
+  static final int MAX_COLORS = 127;
+  static final int DEFAULT_MAX_DISTANCE = 20;
+  private static final int BITS = 5;
+  private static final int LEVELS = 1 << BITS;
+
+  private final List<String> names = new ArrayList<String>();
+  // References: name index, r, g, b
+  private int[] references = new int[4 * 8];
+  private int referenceCount;
+  private int maxDistance = DEFAULT_MAX_DISTANCE;
+  // Name index + 1 by quantized color, 0 if no reference is near enough
+  private byte[] table;
+
+  /**
+   * Add a reference color, a name can have several references (eg. the same brick under different lights).
+   * 
+   * @return false if there is already {@link #MAX_COLORS} names
+   */
+  boolean addReference(String name, int r, int g, int b) {
+    int index = names.indexOf(name);
+    if (index < 0) {
+      if (names.size() >= MAX_COLORS) {
+        return false;
+      }
+      index = names.size();
+      names.add(name);
+    }
+    if (4 * referenceCount == references.length) {
+      references = Arrays.copyOf(references, references.length * 2);
+    }
+    int i = 4 * referenceCount++;
+    references[i] = index;
+    references[i + 1] = r;
+    references[i + 2] = g;
+    references[i + 3] = b;
+    table = null;
+    return true;
+  }
+
+  void clear() {
+    names.clear();
+    referenceCount = 0;
+    table = null;
+  }
+
+  int getReferenceCount() {
+    return referenceCount;
+  }
+
+  /**
+   * @param maxDistance the max distance (in the RGB space) between a color and its reference, the farther colors are unknown.
+   */
+  void setMaxDistance(int maxDistance) {
+    this.maxDistance = maxDistance;
+    table = null;
+  }
+
+  /**
+   * Build the lookup table (done when classifying the first color after a change of the references).
+   */
+  void compile() {
+    byte[] result = new byte[LEVELS * LEVELS * LEVELS];
+    if (referenceCount > 0) {
+      long maxDistance2 = (long) maxDistance * maxDistance * 10000;
+      int i = 0;
+      for (int r = 0; r < LEVELS; r++) {
+        int r100 = toCenter(r);
+        for (int g = 0; g < LEVELS; g++) {
+          int g100 = toCenter(g);
+          for (int b = 0; b < LEVELS; b++) {
+            int b100 = toCenter(b);
+            long best = Long.MAX_VALUE;
+            int bestIndex = -1;
+            for (int k = 0; k < 4 * referenceCount; k += 4) {
+              long dr = r100 - 100 * references[k + 1];
+              long dg = g100 - 100 * references[k + 2];
+              long db = b100 - 100 * references[k + 3];
+              long d = dr * dr + dg * dg + db * db;
+              if (d < best) {
+                best = d;
+                bestIndex = references[k];
+              }
+            }
+            result[i++] = (byte) (best <= maxDistance2 ? bestIndex + 1 : 0);
+          }
+        }
+      }
+    }
+    table = result;
+  }
+
+  /**
+   * @return the center of the level, in 1/100 of the component unit.
+   */
+  private static int toCenter(int level) {
+    return ((2 * level + 1) * 10000) / (2 * LEVELS);
+  }
+
+  private static int toLevel(int value) {
+    if (value <= 0) {
+      return 0;
+    }
+    if (value >= 100) {
+      return LEVELS - 1;
+    }
+    return (value * LEVELS) / 100;
+  }
+
+  /**
+   * @return the name of the nearest reference, null if there is no reference near enough.
+   */
+  String classify(int r, int g, int b) {
+    if (table == null) {
+      compile();
+    }
+    int index = table[(((toLevel(r) << BITS) | toLevel(g)) << BITS) | toLevel(b)];
+    return (index > 0 ? names.get(index - 1) : null);
+  }
+}
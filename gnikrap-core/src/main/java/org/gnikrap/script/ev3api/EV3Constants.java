@@ -53,6 +53,7 @@ public class EV3Constants {
   public static final String COLOR_SENSOR_REFLECTED_LIGHT = "Reflected";
   public static final String COLOR_SENSOR_AMBIENT_LIGHT = "Ambient";
   public static final String COLOR_SENSOR_COLOR = "Color";
+  public static final String COLOR_SENSOR_RGB = "RGB";
   // Battery sensor
   public static final String BATTERY_BATTERY_CURRENT = "BatteryCur";
   public static final String BATTERY_MOTOR_CURRENT = "MotorCur";
@@ -60,7 +61,13 @@ public class EV3Constants {
   // Sound sensor
   public static final String SOUND_SENSOR_DBA = "DBA";
   public static final String SOUND_SENSOR_DB = "DB";
+  // Touch sensor
+  public static final String TOUCH_SENSOR_TOUCH = "Touch";
   // Ultrasonic sensor
   public static final String ULTRASONIC_DISTANCE = "Distance";
   public static final String ULTRASONIC_PRESENCE = "Presence";
+  // Gyro sensor
+  public static final String GYRO_RATE = "Rate";
+  public static final String GYRO_ANGLE = "Angle";
+  public static final String GYRO_ANGLE_AND_RATE = "AngleAndRate";
 }
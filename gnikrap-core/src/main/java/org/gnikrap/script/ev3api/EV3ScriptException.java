@@ -33,6 +33,11 @@ public class EV3ScriptException extends EV3Exception {
    */
   public static final String INVALID_SENSOR_PORT = "INVALID_SENSOR_PORT";
 
+  /**
+   * "Sensor mode '{mode}' isn't valid, should be in [{modes}]"
+   */
+  public static final String INVALID_SENSOR_MODE = "INVALID_SENSOR_MODE";
+
   /**
    * "Motor port '{port}' isn't valid, should be in [A, B, C, D]"
    */
@@ -43,6 +48,66 @@ public class EV3ScriptException extends EV3Exception {
    */
   public static final String API_NOT_IMPLEMENTED = "API_NOT_IMPLEMENTED";
 
+  /**
+   * "A motor group should contains between 2 and 4 different motors"
+   */
+  public static final String INVALID_MOTOR_GROUP = "INVALID_MOTOR_GROUP";
+
+  /**
+   * "The number of angles ({actual}) should be the same as the number of motors in the group ({expected})"
+   */
+  public static final String INVALID_MOTOR_GROUP_ANGLES = "INVALID_MOTOR_GROUP_ANGLES";
+
+  /**
+   * "The maximum speed ({speed}) and the acceleration ({acceleration}) of a move should be greater than 0"
+   */
+  public static final String INVALID_MOTION_PROFILE = "INVALID_MOTION_PROFILE";
+
+  /**
+   * "A motor recorder should record between 1 and 4 motors"
+   */
+  public static final String INVALID_MOTOR_RECORDER = "INVALID_MOTOR_RECORDER";
+
+  /**
+   * "Invalid draw command '{command}' at index {index} (unknown command or bad parameters)"
+   */
+  public static final String INVALID_DRAW_COMMAND = "INVALID_DRAW_COMMAND";
+
+  /**
+   * "Device '{device}' isn't valid, should be 'type:port' with type in [{types}]"
+   */
+  public static final String INVALID_DEVICE = "INVALID_DEVICE";
+
+  /**
+   * "Invalid parameters for the filter '{filter}'"
+   */
+  public static final String INVALID_FILTER = "INVALID_FILTER";
+
+  /**
+   * "An odometry needs 2 different motors, the wheel diameter ({wheelDiameter}) and the track width ({trackWidth}) should be greater than 0"
+   */
+  public static final String INVALID_ODOMETRY = "INVALID_ODOMETRY";
+
+  /**
+   * "Invalid grid size ({width} x {height}), the grid should have between 1 and {maxCells} cells and a cell size greater than 0"
+   */
+  public static final String INVALID_GRID = "INVALID_GRID";
+
+  /**
+   * "Invalid grid data for a grid of {width} x {height} cells, all the rows should have the same length"
+   */
+  public static final String INVALID_GRID_DATA = "INVALID_GRID_DATA";
+
+  /**
+   * "Too many calibrated colors, at most {max} colors can be calibrated"
+   */
+  public static final String TOO_MANY_COLORS = "TOO_MANY_COLORS";
+
+  /**
+   * "Too many published values, at most {max} values can be published"
+   */
+  public static final String TOO_MANY_PUBLISHED_VALUES = "TOO_MANY_PUBLISHED_VALUES";
+
   /**
    * "Invalid channel value: '{channel}', valid values in [1, 2, 3, 4]"
    */
@@ -68,6 +133,11 @@ public class EV3ScriptException extends EV3Exception {
    */
   public static final String CANT_READ_FILE = "CANT_READ_FILE";
 
+  /**
+   * "Can't write file '{filename}', technical error is: {error}"
+   */
+  public static final String CANT_WRITE_FILE = "CANT_WRITE_FILE";
+
   /**
    * "The image '{filename}' is corrupted (invalid file size)"
    */
@@ -93,6 +163,11 @@ public class EV3ScriptException extends EV3Exception {
    */
   public static final String CANT_DECODE_IMAGE_INVALID_TYPE = "CANT_DECODE_IMAGE_INVALID_TYPE";
 
+  /**
+   * "'{name}' isn't a value of the snapshot"
+   */
+  public static final String INVALID_SNAPSHOT_VALUE_NAME = "INVALID_SNAPSHOT_VALUE_NAME";
+
   /**
    * Unexpected error: '{error}'
    */
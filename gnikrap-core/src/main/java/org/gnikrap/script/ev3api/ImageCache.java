@@ -0,0 +1,93 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.gnikrap.script.ev3api.SimpleEV3Screen.SimpleEV3Image;
+
+/**
+ * A bounded cache of the images already decoded/loaded/built (least recently used images are removed first).<br/>
+ * The cache is bounded by the size of the images data plus the size of the keys (a key can be bigger than its image, eg. a data URI).
+ */
+final class ImageCache {
+
+  private final int maxSizeInBytes;
+  // Guarded by this
+  private final LinkedHashMap<Object, Entry> images = new LinkedHashMap<Object, Entry>(16, 0.75f, true);
+  private int sizeInBytes;
+
+  ImageCache(int maxSizeInBytes) {
+    this.maxSizeInBytes = maxSizeInBytes;
+  }
+
+  /**
+   * @return the image, null if not in the cache.
+   */
+  synchronized SimpleEV3Image get(Object key) {
+    Entry e = images.get(key);
+    return (e != null ? e.image : null);
+  }
+
+  /**
+   * @param keySizeInBytes the memory retained by the key (eg. 2 bytes by character for a String).
+   */
+  synchronized void put(Object key, int keySizeInBytes, SimpleEV3Image image) {
+    Entry entry = new Entry(image, keySizeInBytes + sizeOf(image));
+    Entry old = images.put(key, entry);
+    if (old != null) {
+      sizeInBytes -= old.sizeInBytes;
+    }
+    sizeInBytes += entry.sizeInBytes;
+    for (Iterator<Entry> it = images.values().iterator(); (sizeInBytes > maxSizeInBytes) && it.hasNext();) {
+      Entry eldest = it.next();
+      if (eldest != entry) { // Keep at least the last one
+        sizeInBytes -= eldest.sizeInBytes;
+        it.remove();
+      }
+    }
+  }
+
+  synchronized int size() {
+    return images.size();
+  }
+
+  synchronized int getSizeInBytes() {
+    return sizeInBytes;
+  }
+
+  synchronized void clear() {
+    images.clear();
+    sizeInBytes = 0;
+  }
+
+  private static int sizeOf(SimpleEV3Image image) {
+    return (image.getWidth() + 7) / 8 * image.getHeight();
+  }
+
+  private static final class Entry {
+    final SimpleEV3Image image;
+    final int sizeInBytes; // Image and key
+
+    Entry(SimpleEV3Image image, int sizeInBytes) {
+      this.image = image;
+      this.sizeInBytes = sizeInBytes;
+    }
+  }
+}
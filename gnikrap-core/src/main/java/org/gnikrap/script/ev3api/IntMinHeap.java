@@ -0,0 +1,106 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of int values with int priorities, without any boxing (the arrays are only reallocated when the heap grows).<br/>
+ * There is no decrease-key: a value can be pushed several times with different priorities (the caller ignores the outdated entries).
+ */
+final class IntMinHeap {
+
+  private int[] values;
+  private int[] priorities;
+  private int size;
+
+  IntMinHeap(int initialCapacity) {
+    values = new int[Math.max(initialCapacity, 1)];
+    priorities = new int[values.length];
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void push(int value, int priority) {
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+      priorities = Arrays.copyOf(priorities, size * 2);
+    }
+    // Sift up
+    int i = size++;
+    while (i > 0) {
+      int parent = (i - 1) >>> 1;
+      if (priorities[parent] <= priority) {
+        break;
+      }
+      values[i] = values[parent];
+      priorities[i] = priorities[parent];
+      i = parent;
+    }
+    values[i] = value;
+    priorities[i] = priority;
+  }
+
+  /**
+   * @return the priority of the value that will be returned by {@link #pop()}.
+   */
+  int peekPriority() {
+    return priorities[0];
+  }
+
+  /**
+   * @return the value with the lowest priority (the heap should not be empty).
+   */
+  int pop() {
+    int result = values[0];
+    size--;
+    if (size > 0) {
+      // Sift down the last entry
+      int value = values[size];
+      int priority = priorities[size];
+      int i = 0;
+      int half = size >>> 1;
+      while (i < half) {
+        int child = 2 * i + 1;
+        int right = child + 1;
+        if ((right < size) && (priorities[right] < priorities[child])) {
+          child = right;
+        }
+        if (priority <= priorities[child]) {
+          break;
+        }
+        values[i] = values[child];
+        priorities[i] = priorities[child];
+        i = child;
+      }
+      values[i] = value;
+      priorities[i] = priority;
+    }
+    return result;
+  }
+}
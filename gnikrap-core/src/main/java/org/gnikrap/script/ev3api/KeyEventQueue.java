@@ -0,0 +1,174 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.gnikrap.script.ev3api.SimpleEV3Keyboard.SimpleEV3KeyEvent;
+
+/**
+ * Record the key press/release events in a bounded queue (the oldest events are lost when the queue is full) and count the press/release of each
+ * key in order to be able to wait for a key without missing a short press.
+ */
+final class KeyEventQueue {
+
+  /** Number of keys on the EV3 (Button.ID_UP to Button.ID_ESCAPE) */
+  static final int KEY_COUNT = 6;
+  /** Index of the counter of all the keys */
+  static final int ANY_KEY = KEY_COUNT;
+
+  private final SimpleEV3KeyEvent[] events;
+  private int head;
+  private int size;
+  private int lost;
+  private int buttons; // Bit mask of the keys down
+  private int lastPressed;
+  private final int[] pressCounts = new int[KEY_COUNT + 1];
+  private final int[] releaseCounts = new int[KEY_COUNT + 1];
+
+  KeyEventQueue(int capacity) {
+    events = new SimpleEV3KeyEvent[capacity];
+  }
+
+  /**
+   * @return the index of the counters for the given key id (one of the Button.ID_xxx).
+   */
+  static int indexOf(int keyId) {
+    return Integer.numberOfTrailingZeros(keyId);
+  }
+
+  /**
+   * Record the events for the keys that changed since the last update.
+   * 
+   * @param newButtons the bit mask of the keys down
+   * @return the events created (empty if nothing changed)
+   */
+  synchronized List<SimpleEV3KeyEvent> update(int newButtons, long time) {
+    int changed = buttons ^ newButtons;
+    if (changed == 0) {
+      return Collections.emptyList();
+    }
+    List<SimpleEV3KeyEvent> result = new ArrayList<SimpleEV3KeyEvent>(2);
+    for (int i = 0; i < KEY_COUNT; i++) {
+      int id = 1 << i;
+      if ((changed & id) != 0) {
+        boolean pressed = (newButtons & id) != 0;
+        SimpleEV3KeyEvent event = new SimpleEV3KeyEvent(id, pressed, time);
+        add(event);
+        result.add(event);
+        if (pressed) {
+          pressCounts[i]++;
+          pressCounts[ANY_KEY]++;
+          lastPressed = id;
+        } else {
+          releaseCounts[i]++;
+          releaseCounts[ANY_KEY]++;
+        }
+      }
+    }
+    buttons = newButtons;
+    notifyAll();
+    return result;
+  }
+
+  private void add(SimpleEV3KeyEvent event) {
+    if (size == events.length) {
+      // Full => lose the oldest
+      head = (head + 1) % events.length;
+      size--;
+      lost++;
+    }
+    events[(head + size) % events.length] = event;
+    size++;
+  }
+
+  /**
+   * @return the oldest event, null if there is no event.
+   */
+  synchronized SimpleEV3KeyEvent poll() {
+    if (size == 0) {
+      return null;
+    }
+    SimpleEV3KeyEvent result = events[head];
+    events[head] = null;
+    head = (head + 1) % events.length;
+    size--;
+    return result;
+  }
+
+  /**
+   * @return the oldest event, null if there is still no event after the timeout.
+   */
+  synchronized SimpleEV3KeyEvent poll(long timeoutInMs) throws InterruptedException {
+    if (size == 0) {
+      wait(timeoutInMs);
+    }
+    return poll();
+  }
+
+  synchronized void clear() {
+    while (poll() != null) {
+      // Does nothing
+    }
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  /**
+   * @return the number of events lost because the queue was full.
+   */
+  synchronized int getLostCount() {
+    return lost;
+  }
+
+  synchronized int getLastPressed() {
+    return lastPressed;
+  }
+
+  synchronized int getPressCount(int index) {
+    return pressCounts[index];
+  }
+
+  synchronized int getReleaseCount(int index) {
+    return releaseCounts[index];
+  }
+
+  /**
+   * @return true if the press count of the key is no more the given count (immediately or before the timeout).
+   */
+  synchronized boolean waitPress(int index, int count, long timeoutInMs) throws InterruptedException {
+    if (pressCounts[index] == count) {
+      wait(timeoutInMs);
+    }
+    return pressCounts[index] != count;
+  }
+
+  /**
+   * @return true if the release count of the key is no more the given count (immediately or before the timeout).
+   */
+  synchronized boolean waitRelease(int index, int count, long timeoutInMs) throws InterruptedException {
+    if (releaseCounts[index] == count) {
+      wait(timeoutInMs);
+    }
+    return releaseCounts[index] != count;
+  }
+}
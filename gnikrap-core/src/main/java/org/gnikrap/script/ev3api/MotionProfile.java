@@ -0,0 +1,127 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+/**
+ * A motion profile: the position and the speed along the time for a move of a given distance with a maximum speed and a maximum acceleration.<br/>
+ * The move has 3 phases: acceleration, cruise (at the peak speed, can be empty for short moves) and deceleration (symmetric to the acceleration).
+ * <ul>
+ * <li>Trapezoidal: constant acceleration during the acceleration phase (speed is a ramp)</li>
+ * <li>S-curve: the acceleration smoothly rises and falls (speed is a half cosine), no acceleration step means less slip and less shock. For the same
+ * maximum acceleration, the acceleration phase is longer (x PI/2).</li>
+ * </ul>
+ * The units are the ones of the caller (typically degrees, degrees per second and degrees per second^2), the time is in seconds.
+ */
+final class MotionProfile {
+
+  private final boolean sCurve;
+  private final float sign;
+  private final float distance;
+  private final float peakSpeed;
+  private final float rampTime;
+  private final float rampDistance;
+  private final float duration;
+
+  /**
+   * @param distance the signed distance of the move
+   * @param maxSpeed the maximum speed (absolute value), should be &gt; 0
+   * @param maxAcceleration the maximum acceleration (absolute value), should be &gt; 0
+   * @param sCurve true for a S-curve profile, false for a trapezoidal profile
+   */
+  MotionProfile(float distance, float maxSpeed, float maxAcceleration, boolean sCurve) {
+    this.sCurve = sCurve;
+    this.sign = (distance < 0 ? -1 : 1);
+    this.distance = Math.abs(distance);
+    // Peak acceleration is k * speed / rampTime (k = 1 for a ramp, PI/2 for a half cosine)
+    float k = (sCurve ? (float) (Math.PI / 2) : 1f);
+    float speed = Math.abs(maxSpeed);
+    float acceleration = Math.abs(maxAcceleration);
+    if ((k * speed * speed / acceleration) > this.distance) {
+      speed = (float) Math.sqrt(this.distance * acceleration / k); // Too short to reach the maximum speed
+    }
+    peakSpeed = speed;
+    rampTime = (speed > 0 ? k * speed / acceleration : 0);
+    rampDistance = speed * rampTime / 2; // Same for both shapes
+    float cruiseTime = (speed > 0 ? (this.distance - 2 * rampDistance) / speed : 0);
+    duration = 2 * rampTime + Math.max(0, cruiseTime);
+  }
+
+  /**
+   * @return the duration of the move in seconds.
+   */
+  float getDuration() {
+    return duration;
+  }
+
+  /**
+   * @return the peak speed of the move (absolute value).
+   */
+  float getPeakSpeed() {
+    return peakSpeed;
+  }
+
+  /**
+   * @return the signed position at the given time (0 before the move, distance after the move).
+   */
+  float getPosition(float t) {
+    float result;
+    if (t <= 0) {
+      result = 0;
+    } else if (t >= duration) {
+      result = distance;
+    } else if (t < rampTime) {
+      result = peakSpeed * rampTime * rampPosition(t / rampTime);
+    } else if (t <= duration - rampTime) {
+      result = rampDistance + peakSpeed * (t - rampTime);
+    } else {
+      result = distance - peakSpeed * rampTime * rampPosition((duration - t) / rampTime);
+    }
+    return sign * result;
+  }
+
+  /**
+   * @return the speed at the given time (absolute value).
+   */
+  float getSpeed(float t) {
+    if ((t <= 0) || (t >= duration)) {
+      return 0;
+    } else if (t < rampTime) {
+      return peakSpeed * rampSpeed(t / rampTime);
+    } else if (t <= duration - rampTime) {
+      return peakSpeed;
+    } else {
+      return peakSpeed * rampSpeed((duration - t) / rampTime);
+    }
+  }
+
+  /**
+   * @param u the normalized time in the ramp [0, 1]
+   * @return the normalized speed [0, 1]
+   */
+  private float rampSpeed(float u) {
+    return (sCurve ? (float) ((1 - Math.cos(Math.PI * u)) / 2) : u);
+  }
+
+  /**
+   * @param u the normalized time in the ramp [0, 1]
+   * @return the normalized position [0, 0.5] (integral of {@link #rampSpeed(float)})
+   */
+  private float rampPosition(float u) {
+    return (sCurve ? (float) ((u - Math.sin(Math.PI * u) / Math.PI) / 2) : u * u / 2);
+  }
+}
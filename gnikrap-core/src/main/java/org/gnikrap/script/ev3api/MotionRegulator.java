@@ -0,0 +1,262 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import lejos.hardware.motor.BaseRegulatedMotor;
+
+import org.gnikrap.script.EV3ScriptContext;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
+
+/**
+ * Execute the {@link MotionProfile}s of the motors in the background.<br/>
+ * Each motor has a queue of moves, the moves of a motor are executed one after the other. A single regulator thread (shared by all the motors) follows
+ * the profiles: for each motor in move, the lejos regulated motor goes to the final position of the move and the regulator thread periodically adjust
+ * its speed in order to follow the profile (profile speed + correction proportional to the position error).<br/>
+ * The regulator thread only runs while some moves are queued. There is one regulator by {@link SimpleEV3Brick}, shut down when the brick releases its
+ * resources.
+ */
+final class MotionRegulator implements Runnable {
+  private static final Logger LOGGER = LoggerUtils.getLogger(MotionRegulator.class);
+
+  static final int PERIOD_IN_MS = 10;
+  /** Speed correction (in degrees per second) by degree of position error */
+  private static final float POSITION_GAIN = 4f;
+  /** Minimum speed while in move, in order to always reach the final position */
+  private static final float MIN_SPEED = 5f;
+  /** Time given to the motor to reach the final position at the end of the profile */
+  private static final long END_TIMEOUT_IN_MS = 2000;
+
+  private final Map<BaseRegulatedMotor, MotorQueue> queues = new IdentityHashMap<BaseRegulatedMotor, MotorQueue>();
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> future;
+  private volatile EV3ScriptContext sc;
+
+  MotionRegulator() {
+    // Built by SimpleEV3Brick
+  }
+
+  /**
+   * Set the context used to call the end of move callbacks from the script thread.
+   */
+  void setScriptContext(EV3ScriptContext sc) {
+    this.sc = sc;
+  }
+
+  /**
+   * Queue the end of move callback in order to be called by the script thread.
+   * 
+   * @return false if there is no script context (the callback isn't queued).
+   */
+  boolean queueInScriptThread(Runnable callback) {
+    EV3ScriptContext temp = sc;
+    if (temp == null) {
+      return false;
+    }
+    temp.runInScriptThread(callback);
+    return true;
+  }
+
+  /**
+   * Queue a move on the motor, the move will start at the end of the previous queued moves of the motor (if any).
+   */
+  synchronized SimpleEV3Motion queue(BaseRegulatedMotor motor, MotionProfile profile) {
+    MotorQueue q = queues.get(motor);
+    if (q == null) {
+      q = new MotorQueue(motor);
+      queues.put(motor, q);
+    }
+    SimpleEV3Motion result = new SimpleEV3Motion(this, profile);
+    q.pending.add(result);
+    if (future == null) {
+      if (executor == null) {
+        executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("MotionRegulator", Thread.MAX_PRIORITY));
+      }
+      future = executor.scheduleAtFixedRate(this, 0, PERIOD_IN_MS, TimeUnit.MILLISECONDS);
+    }
+    return result;
+  }
+
+  /**
+   * Cancel the move (stop the motor if the move is in progress).
+   */
+  void cancel(SimpleEV3Motion motion) {
+    synchronized (this) {
+      for (MotorQueue q : queues.values()) {
+        if (q.current == motion) {
+          q.stopCurrent();
+          break;
+        } else if (q.pending.remove(motion)) {
+          break;
+        }
+      }
+    }
+    motion.finish(true); // Callback out of the lock
+  }
+
+  /**
+   * Cancel all the moves of the motor (stop the motor if a move is in progress).
+   */
+  void cancelAll(BaseRegulatedMotor motor) {
+    MotorQueue q;
+    SimpleEV3Motion current;
+    synchronized (this) {
+      q = queues.remove(motor);
+      if (q == null) {
+        return;
+      }
+      current = q.current;
+      q.stopCurrent();
+    }
+    // Callbacks out of the lock
+    if (current != null) {
+      current.finish(true);
+    }
+    for (SimpleEV3Motion m : q.pending) {
+      m.finish(true);
+    }
+  }
+
+  /**
+   * Cancel all the moves and stop the regulator thread (it will be started again by the next queued move).
+   */
+  void shutdown() {
+    BaseRegulatedMotor[] motors;
+    synchronized (this) {
+      motors = queues.keySet().toArray(new BaseRegulatedMotor[queues.size()]);
+    }
+    for (BaseRegulatedMotor m : motors) {
+      cancelAll(m);
+    }
+    synchronized (this) {
+      if (future != null) {
+        future.cancel(false);
+        future = null;
+      }
+      if (executor != null) {
+        executor.shutdownNow();
+        executor = null;
+      }
+    }
+  }
+
+  /**
+   * One step of regulation for all the motors.
+   */
+  @Override
+  public void run() {
+    try {
+      long now = System.currentTimeMillis();
+      ArrayDeque<SimpleEV3Motion> finished = null;
+      synchronized (this) {
+        for (Iterator<MotorQueue> it = queues.values().iterator(); it.hasNext();) {
+          MotorQueue q = it.next();
+          SimpleEV3Motion motion = q.step(now);
+          if (motion != null) {
+            if (finished == null) {
+              finished = new ArrayDeque<SimpleEV3Motion>();
+            }
+            finished.add(motion);
+          }
+          if ((q.current == null) && q.pending.isEmpty()) {
+            it.remove();
+          }
+        }
+        if (queues.isEmpty() && (future != null)) {
+          future.cancel(false);
+          future = null;
+        }
+      }
+      if (finished != null) { // Callbacks out of the lock
+        for (SimpleEV3Motion m : finished) {
+          m.finish(false);
+        }
+      }
+    } catch (Exception ex) {
+      LOGGER.log(Level.WARNING, "Error while regulating the motors", ex);
+    }
+  }
+
+  /**
+   * The moves of one motor.
+   */
+  static final class MotorQueue {
+    final BaseRegulatedMotor motor;
+    final ArrayDeque<SimpleEV3Motion> pending = new ArrayDeque<SimpleEV3Motion>();
+    SimpleEV3Motion current;
+    // Position where the next move start: the target of the previous move (not the actual position) in order to not accumulate the errors
+    int basePosition;
+    int targetPosition;
+    long startTime;
+
+    MotorQueue(BaseRegulatedMotor motor) {
+      this.motor = motor;
+      basePosition = motor.getTachoCount();
+    }
+
+    /**
+     * @return the move finished during this step, if any.
+     */
+    SimpleEV3Motion step(long now) {
+      SimpleEV3Motion result = null;
+      if (current != null) {
+        MotionProfile profile = current.getProfile();
+        float t = (now - startTime) / 1000f;
+        if (t >= profile.getDuration()) {
+          if (!motor.isMoving() || ((now - startTime) > (profile.getDuration() * 1000 + END_TIMEOUT_IN_MS))) {
+            result = current;
+            current = null;
+            basePosition = targetPosition;
+          }
+        } else {
+          float expected = basePosition + profile.getPosition(t);
+          float error = (targetPosition >= basePosition ? expected - motor.getTachoCount() : motor.getTachoCount() - expected);
+          motor.setSpeed(Math.max(MIN_SPEED, profile.getSpeed(t) + POSITION_GAIN * error));
+        }
+      }
+      if ((current == null) && !pending.isEmpty()) {
+        current = pending.poll();
+        MotionProfile profile = current.getProfile();
+        targetPosition = basePosition + Math.round(profile.getPosition(profile.getDuration()));
+        startTime = now;
+        motor.setSpeed(Math.max(MIN_SPEED, profile.getSpeed(PERIOD_IN_MS / 1000f)));
+        motor.rotateTo(targetPosition, true);
+      }
+      return result;
+    }
+
+    void stopCurrent() {
+      if (current != null) {
+        motor.stop(true);
+        basePosition = motor.getTachoCount();
+        current = null;
+      }
+    }
+  }
+}
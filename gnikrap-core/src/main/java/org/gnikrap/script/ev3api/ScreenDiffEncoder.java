@@ -0,0 +1,125 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.gnikrap.script.JsonMessageFields;
+
+/**
+ * Encode the screen frames (1 bit by pixel, (width + 7) / 8 bytes by row) as the rows changed since the previous frame, each row being run-length
+ * encoded, or raw when the run-length encoding is bigger (eg. noisy row). All the rows are sent every {@link #KEYFRAME_PERIOD} frames, in order to resync the browsers connected meanwhile.
+ * <p/>
+ * Binary message format (big endian):
+ * <ul>
+ * <li>byte: {@link JsonMessageFields#BINARY_MESSAGE_SCREEN}</li>
+ * <li>short: the width of the screen, short: the height of the screen</li>
+ * <li>short: the number of rows</li>
+ * <li>for each row: short: the row index, then the (count, value) pairs (both unsigned bytes) until the bytes of the row are all given. If the high
+ * bit of the row index is set ({@link #RAW_ROW}), the bytes of the row follow as is</li>
+ * </ul>
+ */
+final class ScreenDiffEncoder {
+
+  static final int KEYFRAME_PERIOD = 50;
+  static final int RAW_ROW = 0x8000;
+  private static final int HEADER_SIZE = 7;
+
+  private final int width;
+  private final int height;
+  private final int stride;
+  private final byte[] previous;
+  private final byte[] buffer; // Worst case: the run-length encoding of the last row without any run (before the fallback to raw)
+  private int framesSinceKeyframe = KEYFRAME_PERIOD; // The first frame is a keyframe
+
+  ScreenDiffEncoder(int width, int height) {
+    this.width = width;
+    this.height = height;
+    stride = (width + 7) / 8;
+    previous = new byte[stride * height];
+    buffer = new byte[HEADER_SIZE + height * (2 + 2 * stride)];
+  }
+
+  /**
+   * Send all the rows with the next frame.
+   */
+  void requestKeyframe() {
+    framesSinceKeyframe = KEYFRAME_PERIOD;
+  }
+
+  /**
+   * @return the binary message for the frame, null if no rows changed since the previous frame.
+   */
+  ByteBuffer encode(byte[] frame) {
+    if (frame.length < previous.length) {
+      return null;
+    }
+    boolean keyframe = (framesSinceKeyframe >= KEYFRAME_PERIOD);
+    framesSinceKeyframe = (keyframe ? 1 : framesSinceKeyframe + 1);
+    int pos = HEADER_SIZE;
+    int rows = 0;
+    for (int row = 0; row < height; row++) {
+      int start = row * stride;
+      if (!keyframe && equals(frame, previous, start, stride)) {
+        continue;
+      }
+      System.arraycopy(frame, start, previous, start, stride);
+      rows++;
+      int rowStart = pos;
+      buffer[pos++] = (byte) (row >>> 8);
+      buffer[pos++] = (byte) row;
+      int i = start;
+      int end = start + stride;
+      while (i < end) {
+        byte value = frame[i];
+        int count = 1;
+        while ((i + count < end) && (count < 255) && (frame[i + count] == value)) {
+          count++;
+        }
+        buffer[pos++] = (byte) count;
+        buffer[pos++] = value;
+        i += count;
+      }
+      if (pos - rowStart - 2 > stride) { // Raw is smaller
+        buffer[rowStart] = (byte) ((row | RAW_ROW) >>> 8);
+        System.arraycopy(frame, start, buffer, rowStart + 2, stride);
+        pos = rowStart + 2 + stride;
+      }
+    }
+    if (rows == 0) {
+      return null;
+    }
+    ByteBuffer result = ByteBuffer.wrap(Arrays.copyOf(buffer, pos));
+    result.put(JsonMessageFields.BINARY_MESSAGE_SCREEN);
+    result.putShort((short) width);
+    result.putShort((short) height);
+    result.putShort((short) rows);
+    result.rewind();
+    return result;
+  }
+
+  private static boolean equals(byte[] a, byte[] b, int start, int length) {
+    for (int i = start; i < start + length; i++) {
+      if (a[i] != b[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
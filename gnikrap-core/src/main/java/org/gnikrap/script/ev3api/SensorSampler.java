@@ -0,0 +1,185 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
+
+import lejos.robotics.SampleProvider;
+
+/**
+ * Optional background sampling of the modes of one sensor.<br/>
+ * While a mode is sampled, a dedicated thread (one by sensor) periodically fetch the samples in a cache and the reading returns immediately the latest
+ * sample. Otherwise, the sample is synchronously fetched as usual.
+ * 
+ * Note: The sensor is never accessed by 2 threads at the same time (a synchronous fetch can wait the end of a background sampling in progress). Sampling
+ * several modes of the same sensor is possible but slow as the sensor will have to switch between the modes.
+ */
+final class SensorSampler {
+  private static final Logger LOGGER = LoggerUtils.getLogger(SensorSampler.class);
+
+  static final int MIN_PERIOD_IN_MS = 5;
+
+  private final String name;
+  private final Object fetchLock = new Object();
+  private ScheduledExecutorService executor;
+  // Copy on write: the reading is lock-free
+  private volatile SampledMode[] sampledModes = new SampledMode[0];
+
+  SensorSampler(String name) {
+    this(name, null);
+  }
+
+  /**
+   * @param executor the executor of the background sampling (eg. driven by the tests), null to create the sampling thread when needed.
+   */
+  SensorSampler(String name, ScheduledExecutorService executor) {
+    this.name = name;
+    this.executor = executor;
+  }
+
+  /**
+   * Start (or restart with the new period) the background sampling of the mode.
+   */
+  synchronized void start(SampleProvider mode, int periodInMs) {
+    stop(mode);
+    SampledMode sm = new SampledMode(mode);
+    sm.run(); // First sample available immediately
+    if (executor == null) {
+      executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("SensorSampler-" + name));
+    }
+    int period = Math.max(periodInMs, MIN_PERIOD_IN_MS);
+    sm.future = executor.scheduleAtFixedRate(sm, period, period, TimeUnit.MILLISECONDS);
+    SampledMode[] temp = Arrays.copyOf(sampledModes, sampledModes.length + 1);
+    temp[temp.length - 1] = sm;
+    sampledModes = temp;
+  }
+
+  /**
+   * Stop the background sampling of the mode (if sampled).
+   */
+  synchronized void stop(SampleProvider mode) {
+    SampledMode[] temp = sampledModes;
+    for (int i = 0; i < temp.length; i++) {
+      if (temp[i].mode == mode) {
+        temp[i].future.cancel(false);
+        SampledMode[] newModes = new SampledMode[temp.length - 1];
+        System.arraycopy(temp, 0, newModes, 0, i);
+        System.arraycopy(temp, i + 1, newModes, i, temp.length - i - 1);
+        sampledModes = newModes;
+        return;
+      }
+    }
+  }
+
+  /**
+   * Stop the background sampling of all the modes and the sampling thread.
+   */
+  synchronized void release() {
+    sampledModes = new SampledMode[0];
+    if (executor != null) {
+      executor.shutdownNow();
+      try {
+        executor.awaitTermination(500, TimeUnit.MILLISECONDS); // The sensor can be closed once the current sampling is finished
+      } catch (InterruptedException ie) {
+        // Ignore
+      }
+      executor = null;
+    }
+  }
+
+  /**
+   * Same as {@link SampleProvider#fetchSample(float[], int)} (offset 0), from the cache if the mode is sampled in background.
+   */
+  void fetchSample(SampleProvider mode, float[] sample) {
+    SampledMode sm = find(mode);
+    if (sm != null) {
+      sm.copyTo(sample);
+    } else {
+      synchronized (fetchLock) {
+        mode.fetchSample(sample, 0);
+      }
+    }
+  }
+
+  /**
+   * @return the lock to hold while accessing the sensor without {@link #fetchSample(SampleProvider, float[])}.
+   */
+  Object getFetchLock() {
+    return fetchLock;
+  }
+
+  /**
+   * @return the age (in ms) of the latest sample of the mode, 0 if the mode isn't sampled in background (the sample is always fetched on demand).
+   */
+  long getAge(SampleProvider mode) {
+    SampledMode sm = find(mode);
+    return (sm == null ? 0 : System.currentTimeMillis() - sm.timestamp);
+  }
+
+  private SampledMode find(SampleProvider mode) {
+    SampledMode[] temp = sampledModes; // Get locally to avoid race condition issues
+    for (SampledMode sm : temp) {
+      if (sm.mode == mode) {
+        return sm;
+      }
+    }
+    return null;
+  }
+
+  private final class SampledMode implements Runnable {
+    private final SampleProvider mode;
+    private final float[] fetched; // Only used by the sampling thread
+    private final float[] latest;
+    private volatile long timestamp;
+    private ScheduledFuture<?> future;
+
+    SampledMode(SampleProvider mode) {
+      this.mode = mode;
+      fetched = new float[mode.sampleSize()];
+      latest = new float[fetched.length];
+    }
+
+    @Override
+    public void run() {
+      try {
+        synchronized (fetchLock) {
+          mode.fetchSample(fetched, 0); // Potentially slow, the script doesn't wait as it reads the latest sample
+        }
+        synchronized (this) {
+          System.arraycopy(fetched, 0, latest, 0, fetched.length);
+          timestamp = System.currentTimeMillis();
+        }
+      } catch (RuntimeException ex) {
+        LOGGER.log(Level.WARNING, "Error while sampling sensor, sample ignored", ex); // Don't throw: the periodic task would be cancelled
+      }
+    }
+
+    synchronized void copyTo(float[] sample) {
+      System.arraycopy(latest, 0, sample, 0, latest.length);
+    }
+  }
+}
@@ -18,15 +18,26 @@
 package org.gnikrap.script.ev3api;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
 
 import org.gnikrap.script.EV3ScriptContext;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
 import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 import lejos.hardware.BrickFinder;
+import lejos.hardware.motor.BaseRegulatedMotor;
 import lejos.hardware.port.MotorPort;
 import lejos.hardware.port.Port;
 import lejos.hardware.port.SensorPort;
@@ -35,7 +46,16 @@ import lejos.hardware.port.SensorPort;
  * This class act as a factory and is the main entry point to access to the EV3 devices.<br/>
  */
 public class SimpleEV3Brick {
+
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3Brick.class);
+
+  /** Device types supported by {@link #require(String...)} */
+  static final String DEVICE_TYPES = "LargeMotor, MediumMotor, ColorSensor, IRSensor, TouchSensor, UltrasonicSensor, NXTSoundSensor, GyroSensor";
+
   private final Map<String, EV3Device> devices = new HashMap<String, EV3Device>();
+  // Resources not linked to a port (released with the devices)
+  private final List<EV3Device> resources = new ArrayList<EV3Device>();
+  private final MotionRegulator regulator = new MotionRegulator();
   private EV3ScriptContext sc;
 
   public SimpleEV3Brick() {
@@ -44,6 +64,7 @@ public class SimpleEV3Brick {
 
   public void setScriptContext(EV3ScriptContext sc) {
     this.sc = sc;
+    regulator.setScriptContext(sc);
   }
 
   // Actions
@@ -61,7 +82,7 @@ public class SimpleEV3Brick {
       d.release();
       devices.remove(port);
     }
-    devices.put(port, new SimpleEV3MediumMotor(getMotorPort(port)));
+    devices.put(port, new SimpleEV3MediumMotor(getMotorPort(port), regulator));
     return getMediumMotor(port);
   }
 
@@ -75,17 +96,127 @@ public class SimpleEV3Brick {
       d.release();
       devices.remove(port);
     }
-    devices.put(port, new SimpleEV3LargeMotor(getMotorPort(port)));
+    devices.put(port, new SimpleEV3LargeMotor(getMotorPort(port), regulator));
     return getLargeMotor(port);
   }
 
+  /**
+   * @return a group of 2 to 4 motors (already retrieved with {@link #getLargeMotor(String)} or {@link #getMediumMotor(String)}) that start, stop and rotate
+   *         at the same time.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3MotorGroup newMotorGroup(SimpleEV3Motor... motors) throws EV3ScriptException {
+    return new SimpleEV3MotorGroup(motors);
+  }
+
+  /**
+   * @param periodInMs the time between 2 samples (minimum 10ms)
+   * @param capacity the maximum number of samples kept (the oldest samples are overwritten)
+   * @return a recorder of the tacho count and speed of 1 to 4 motors (already retrieved with {@link #getLargeMotor(String)} or
+   *         {@link #getMediumMotor(String)}). The recording is not started.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3MotorRecorder newMotorRecorder(int periodInMs, int capacity, SimpleEV3Motor... motors) throws EV3ScriptException {
+    if ((motors == null) || (motors.length < 1) || (motors.length > 4)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_RECORDER, Collections.<String, String>emptyMap());
+    }
+    String[] names = new String[motors.length];
+    BaseRegulatedMotor[] delegates = new BaseRegulatedMotor[motors.length];
+    for (int i = 0; i < motors.length; i++) {
+      if (motors[i] == null) {
+        throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_RECORDER, Collections.<String, String>emptyMap());
+      }
+      names[i] = motors[i].getPortName();
+      delegates[i] = motors[i].getDelegate();
+    }
+    SimpleEV3MotorRecorder result = new SimpleEV3MotorRecorder(sc, names, delegates, periodInMs, capacity);
+    resources.add(result);
+    return result;
+  }
+
+  /**
+   * @param left the motor of the left wheel (already retrieved with {@link #getLargeMotor(String)} or {@link #getMediumMotor(String)})
+   * @param right the motor of the right wheel
+   * @param wheelDiameter the diameter of the wheels (the unit of the pose, eg. cm)
+   * @param trackWidth the distance between the 2 wheels (same unit than the diameter)
+   * @param periodInMs the time between 2 updates of the pose (minimum 5ms)
+   * @return the odometry of a differential drive robot, not started.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Odometry newOdometry(SimpleEV3Motor left, SimpleEV3Motor right, float wheelDiameter, float trackWidth, int periodInMs)
+      throws EV3ScriptException {
+    if ((left == null) || (right == null) || (left == right) || !(wheelDiameter > 0) || !(trackWidth > 0)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_ODOMETRY, MapBuilder.buildHashMap("wheelDiameter", String.valueOf(wheelDiameter))
+          .put("trackWidth", String.valueOf(trackWidth)).build());
+    }
+    SimpleEV3Odometry result = new SimpleEV3Odometry(left.getDelegate(), right.getDelegate(), wheelDiameter, trackWidth, periodInMs);
+    resources.add(result);
+    return result;
+  }
+
+  /**
+   * @param width the number of columns
+   * @param height the number of rows
+   * @param cellSize the size of a cell (the unit of the coordinates, eg. cm)
+   * @return a new occupancy grid (1 byte per cell), all the cells are unknown.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3OccupancyGrid newOccupancyGrid(int width, int height, float cellSize) throws EV3ScriptException {
+    checkGridSize(width, height);
+    if (!(cellSize > 0)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_GRID, MapBuilder.buildHashMap("width", String.valueOf(width))
+          .put("height", String.valueOf(height)).put("maxCells", String.valueOf(SimpleEV3OccupancyGrid.MAX_CELLS)).build());
+    }
+    return new SimpleEV3OccupancyGrid(width, height, cellSize);
+  }
+
+  /**
+   * @param rows one string by row of the grid, the spaces and the dots are free cells, the other characters are walls (eg. "#")
+   * @return a path planner for the grid, the row 0 is the first string.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3PathPlanner newPathPlanner(String... rows) throws EV3ScriptException {
+    int width = ((rows != null) && (rows.length > 0) && (rows[0] != null) ? rows[0].length() : 0);
+    int height = (rows != null ? rows.length : 0);
+    for (int i = 0; i < height; i++) {
+      if ((rows[i] == null) || (rows[i].length() != width)) {
+        throw new EV3ScriptException(EV3ScriptException.INVALID_GRID_DATA, MapBuilder.buildHashMap("width", String.valueOf(width))
+            .put("height", String.valueOf(height)).build());
+      }
+    }
+    checkGridSize(width, height);
+    return SimpleEV3PathPlanner.fromRows(rows);
+  }
+
+  /**
+   * @param walls the walls, 1 bit per cell (row by row, bit <code>i % 32</code> of <code>walls[i / 32]</code> is the cell <code>i</code>).
+   * @return a path planner for the grid.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3PathPlanner newPathPlanner(int width, int height, int[] walls) throws EV3ScriptException {
+    checkGridSize(width, height);
+    if ((walls == null) || (walls.length < (width * height + 31) / 32)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_GRID_DATA, MapBuilder.buildHashMap("width", String.valueOf(width))
+          .put("height", String.valueOf(height)).build());
+    }
+    return new SimpleEV3PathPlanner(width, height, walls.clone());
+  }
+
+  /**
+   * @return a path planner for the grid (the occupied cells are walls, the unknown cells are free), the row 0 is the bottom of the grid.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3PathPlanner newPathPlanner(SimpleEV3OccupancyGrid grid) {
+    return SimpleEV3PathPlanner.fromGrid(grid);
+  }
+
   @ScriptApi
   public SimpleEV3Screen getScreen() {
     EV3Device d = devices.get(EV3Constants.SCREEN_KEY);
     if (d != null) {
       return (SimpleEV3Screen) d;
     }
-    devices.put(EV3Constants.SCREEN_KEY, new SimpleEV3Screen());
+    devices.put(EV3Constants.SCREEN_KEY, new SimpleEV3Screen(sc));
     return getScreen();
   }
 
@@ -95,7 +226,7 @@ public class SimpleEV3Brick {
     if (d != null) {
       return (SimpleEV3Sound) d;
     }
-    devices.put(EV3Constants.SOUND_KEY, new SimpleEV3Sound());
+    devices.put(EV3Constants.SOUND_KEY, new SimpleEV3Sound(sc != null ? sc.getSoundsFolder() : EV3ScriptContext.DEFAULT_SOUNDS_FOLDER));
     return getSound();
   }
 
@@ -168,6 +299,20 @@ public class SimpleEV3Brick {
     return getTouchSensor(port);
   }
 
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3GyroSensor getGyroSensor(String port) throws EV3ScriptException {
+    EV3Device d = devices.get(port);
+    if (d != null) {
+      if (d instanceof SimpleEV3GyroSensor) {
+        return (SimpleEV3GyroSensor) d;
+      }
+      d.release();
+      devices.remove(port);
+    }
+    devices.put(port, new SimpleEV3GyroSensor(getSensorPort(port)));
+    return getGyroSensor(port);
+  }
+
   @ScriptApi(isIncubating = true, versionAdded = "0.5.0")
   public SimpleNXTSoundSensor getNXTSoundSensor(String port) throws EV3ScriptException {
     EV3Device d = devices.get(port);
@@ -196,46 +341,295 @@ public class SimpleEV3Brick {
     return getUltrasonicSensor(port);
   }
 
+  /**
+   * @return a new snapshot, in order to read several device values with only one call.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot newSnapshot() {
+    return new SimpleEV3Snapshot();
+  }
+
+  /**
+   * Open the given devices in parallel (opening a device can take a long time, so the total time is the time of the slowest device instead of the
+   * sum of all the devices).<br/>
+   * The devices are then available with the getXxx() functions (use the port names "S1" to "S4" and "A" to "D"). The devices already opened are not
+   * opened again, the other devices using the ports are released before opening.
+   * 
+   * @param devices the devices to open, "type:port" with type in {@link #DEVICE_TYPES}, eg. "LargeMotor:A", "ColorSensor:S1".
+   * @return the time (in milliseconds) taken to open each device.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public Map<String, Long> require(String... devices) throws EV3ScriptException {
+    Map<String, Long> result = new LinkedHashMap<String, Long>();
+    if ((devices == null) || (devices.length == 0)) {
+      return result;
+    }
+    // Check everything before opening
+    List<String> toOpen = new ArrayList<String>();
+    List<String> toOpenPorts = new ArrayList<String>();
+    for (Map.Entry<String, String> e : checkDevices(devices).entrySet()) {
+      String device = e.getKey();
+      String port = e.getValue();
+      if (checkDevice(device).isInstance(this.devices.get(port))) {
+        result.put(device, 0L);
+      } else {
+        toOpen.add(device);
+        toOpenPorts.add(port);
+      }
+    }
+    if (toOpen.isEmpty()) {
+      return result;
+    }
+    // Release the other devices on the ports before opening (a port can't be used by 2 drivers)
+    for (String port : toOpenPorts) {
+      EV3Device previous = this.devices.remove(port);
+      if (previous != null) {
+        previous.release();
+      }
+    }
+
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(toOpen.size(), new DaemonThreadFactory("DeviceOpener"));
+    List<Future<EV3Device>> futures = new ArrayList<Future<EV3Device>>(toOpen.size());
+    final long[] times = new long[toOpen.size()];
+    try {
+      for (int i = 0; i < toOpen.size(); i++) {
+        final int index = i;
+        final String device = toOpen.get(i);
+        futures.add(executor.submit(new Callable<EV3Device>() {
+          @Override
+          public EV3Device call() throws Exception {
+            long t0 = System.currentTimeMillis();
+            EV3Device d = openDevice(device, regulator);
+            times[index] = System.currentTimeMillis() - t0;
+            return d;
+          }
+        }));
+      }
+      // Wait all the devices (even in case of error, in order to release the devices opened)
+      Throwable error = null;
+      for (int i = 0; i < toOpen.size(); i++) {
+        String device = toOpen.get(i);
+        try {
+          EV3Device d = futures.get(i).get();
+          this.devices.put(toOpenPorts.get(i), d);
+          result.put(device, times[i]);
+        } catch (ExecutionException ee) {
+          if (error == null) {
+            error = ee.getCause();
+          }
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          if (error == null) {
+            error = ie;
+          }
+        }
+      }
+      if (error instanceof EV3ScriptException) {
+        throw (EV3ScriptException) error;
+      } else if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      } else if (error != null) {
+        throw new EV3ScriptException(EV3ScriptException.UNEXPECTED_ERROR, MapBuilder.buildHashMap("error", error.toString()).build());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    LOGGER.info("Devices opened in " + (System.currentTimeMillis() - start) + "ms: " + result);
+    return result;
+  }
+
   public void releaseResources() {
-    List<EV3Device> temp = new ArrayList<EV3Device>(devices.values());
+    List<EV3Device> temp = new ArrayList<EV3Device>(resources);
+    resources.clear();
+    temp.addAll(devices.values());
     devices.clear();
     for (EV3Device d : temp) {
       d.release();
     }
+    regulator.shutdown();
   }
 
   // Utility methods
+  private static String getDeviceType(String device) throws EV3ScriptException {
+    int idx = (device != null ? device.indexOf(':') : -1);
+    if (idx <= 0) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_DEVICE, MapBuilder.buildHashMap("device", String.valueOf(device)).put("types", DEVICE_TYPES).build());
+    }
+    return device.substring(0, idx);
+  }
+
+  private static String getDevicePort(String device) {
+    return device.substring(device.indexOf(':') + 1);
+  }
+
+  private static boolean isMotorDevice(String type) {
+    return type.endsWith("Motor");
+  }
+
+  /**
+   * Check the type and the port of the device without opening it (no hardware access).
+   * 
+   * @param device "type:port", see {@link #require(String...)}
+   * @return the class of the device
+   */
+  static Class<? extends EV3Device> checkDevice(String device) throws EV3ScriptException {
+    Class<? extends EV3Device> result = getDeviceClass(device, getDeviceType(device));
+    getPortName(device);
+    return result;
+  }
+
+  /**
+   * Check the devices without opening them (no hardware access): 2 different devices can't use the same port.
+   * 
+   * @return the port name of each device (in the given order, without the duplicated devices).
+   */
+  static Map<String, String> checkDevices(String... devices) throws EV3ScriptException {
+    Map<String, String> result = new LinkedHashMap<String, String>();
+    Map<String, Class<? extends EV3Device>> ports = new HashMap<String, Class<? extends EV3Device>>();
+    for (String device : devices) {
+      Class<? extends EV3Device> clazz = checkDevice(device);
+      String port = getPortName(device);
+      Class<? extends EV3Device> previous = ports.put(port, clazz);
+      if (previous == null) {
+        result.put(device, port);
+      } else if (previous != clazz) {
+        throw new EV3ScriptException(EV3ScriptException.INVALID_DEVICE, MapBuilder.buildHashMap("device", device).put("types", DEVICE_TYPES).build());
+      } // else: Same device with another port syntax (eg. "S1" and "1")
+    }
+    return result;
+  }
+
+  /**
+   * @param device "type:port", see {@link #require(String...)}
+   * @return the name of the port of the device (eg. "S1" for "ColorSensor:1"), without hardware access.
+   */
+  static String getPortName(String device) throws EV3ScriptException {
+    if (isMotorDevice(getDeviceType(device))) {
+      return getMotorPortName(getDevicePort(device));
+    } else {
+      return getSensorPortName(getDevicePort(device));
+    }
+  }
+
+  private static Class<? extends EV3Device> getDeviceClass(String device, String type) throws EV3ScriptException {
+    switch (type) {
+    case "LargeMotor":
+      return SimpleEV3LargeMotor.class;
+    case "MediumMotor":
+      return SimpleEV3MediumMotor.class;
+    case "ColorSensor":
+      return SimpleEV3ColorSensor.class;
+    case "IRSensor":
+      return SimpleEV3IRSensor.class;
+    case "TouchSensor":
+      return SimpleEV3TouchSensor.class;
+    case "UltrasonicSensor":
+      return SimpleEV3UltrasonicSensor.class;
+    case "NXTSoundSensor":
+      return SimpleNXTSoundSensor.class;
+    case "GyroSensor":
+      return SimpleEV3GyroSensor.class;
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_DEVICE, MapBuilder.buildHashMap("device", device).put("types", DEVICE_TYPES).build());
+  }
+
+  /**
+   * Open the device (can be called by several threads at the same time).
+   */
+  static EV3Device openDevice(String device, MotionRegulator regulator) throws EV3ScriptException {
+    String type = getDeviceType(device);
+    String port = getDevicePort(device);
+    switch (type) {
+    case "LargeMotor":
+      return new SimpleEV3LargeMotor(getMotorPort(port), regulator);
+    case "MediumMotor":
+      return new SimpleEV3MediumMotor(getMotorPort(port), regulator);
+    case "ColorSensor":
+      return new SimpleEV3ColorSensor(getSensorPort(port));
+    case "IRSensor":
+      return new SimpleEV3IRSensor(getSensorPort(port));
+    case "TouchSensor":
+      return new SimpleEV3TouchSensor(getSensorPort(port));
+    case "UltrasonicSensor":
+      return new SimpleEV3UltrasonicSensor(getSensorPort(port));
+    case "NXTSoundSensor":
+      return new SimpleNXTSoundSensor(getSensorPort(port));
+    case "GyroSensor":
+      return new SimpleEV3GyroSensor(getSensorPort(port));
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_DEVICE, MapBuilder.buildHashMap("device", device).put("types", DEVICE_TYPES).build());
+  }
+
+  private static void checkGridSize(int width, int height) throws EV3ScriptException {
+    if ((width < 1) || (height < 1) || ((long) width * height > SimpleEV3OccupancyGrid.MAX_CELLS)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_GRID, MapBuilder.buildHashMap("width", String.valueOf(width))
+          .put("height", String.valueOf(height)).put("maxCells", String.valueOf(SimpleEV3OccupancyGrid.MAX_CELLS)).build());
+    }
+  }
+
+  /**
+   * @return the name of the sensor port (without hardware access, contrary to {@link SensorPort}).
+   */
+  static String getSensorPortName(String p) throws EV3ScriptException {
+    if (p != null) {
+      switch (p) {
+      case "1":
+      case EV3Constants.S1:
+        return EV3Constants.S1;
+      case "2":
+      case EV3Constants.S2:
+        return EV3Constants.S2;
+      case "3":
+      case EV3Constants.S3:
+        return EV3Constants.S3;
+      case "4":
+      case EV3Constants.S4:
+        return EV3Constants.S4;
+      }
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_PORT, MapBuilder.buildHashMap("port", p).build());
+  }
+
   private static Port getSensorPort(String p) throws EV3ScriptException {
-    switch (p) {
-    case "1":
+    switch (getSensorPortName(p)) {
     case EV3Constants.S1:
       return SensorPort.S1;
-    case "2":
     case EV3Constants.S2:
       return SensorPort.S2;
-    case "3":
     case EV3Constants.S3:
       return SensorPort.S3;
-    case "4":
-    case EV3Constants.S4:
+    default:
       return SensorPort.S4;
     }
-    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_PORT, MapBuilder.buildHashMap("port", p).build());
   }
 
-  private static Port getMotorPort(String p) throws EV3ScriptException {
+  /**
+   * @return the name of the motor port (without hardware access, contrary to {@link MotorPort}).
+   */
+  static String getMotorPortName(String p) throws EV3ScriptException {
     if (p != null) {
       switch (p) {
       case EV3Constants.A:
-        return MotorPort.A;
       case EV3Constants.B:
-        return MotorPort.B;
       case EV3Constants.C:
-        return MotorPort.C;
       case EV3Constants.D:
-        return MotorPort.D;
+        return p;
       }
     }
     throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_PORT, MapBuilder.buildHashMap("port", p).build());
   }
+
+  private static Port getMotorPort(String p) throws EV3ScriptException {
+    switch (getMotorPortName(p)) {
+    case EV3Constants.A:
+      return MotorPort.A;
+    case EV3Constants.B:
+      return MotorPort.B;
+    case EV3Constants.C:
+      return MotorPort.C;
+    default:
+      return MotorPort.D;
+    }
+  }
 }
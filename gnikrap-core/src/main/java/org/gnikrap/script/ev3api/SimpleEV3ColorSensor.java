@@ -17,17 +17,20 @@
  */
 package org.gnikrap.script.ev3api;
 
+import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 import lejos.hardware.port.Port;
 import lejos.hardware.sensor.EV3ColorSensor;
 import lejos.hardware.sensor.SensorMode;
 import lejos.robotics.Color;
+import lejos.robotics.SampleProvider;
 
 final public class SimpleEV3ColorSensor implements EV3Device {
 
   private final EV3ColorSensor delegate;
   private final SensorMonitor logger;
+  private final SensorSampler sampler;
   // Reflected light mode
   private final SensorMode reflectedLightMode;
   private final float[] reflectedLightSample;
@@ -37,24 +40,48 @@ final public class SimpleEV3ColorSensor implements EV3Device {
   // Color mode
   private final SensorMode colorMode;
   private final float[] colorModeSample;
+  // RGB mode
+  private final SensorMode rgbMode;
+  private final float[] rgbModeSample;
+  private final int[] rgb = new int[3];
+  private final ColorLookupTable calibration = new ColorLookupTable();
 
   public SimpleEV3ColorSensor(Port port) {
-    delegate = new EV3ColorSensor(port);
-    logger = SensorMonitorFactory.getLogger(port);
+    this(new EV3ColorSensor(port), port.getName());
+  }
+
+  private SimpleEV3ColorSensor(EV3ColorSensor delegate, String portName) {
+    this(delegate, portName, delegate.getRedMode(), delegate.getAmbientMode(), delegate.getColorIDMode(), delegate.getRGBMode());
+  }
+
+  /**
+   * Package visibility for the tests: the modes can be provided without any sensor (the delegate is then null).
+   */
+  SimpleEV3ColorSensor(EV3ColorSensor delegate, String portName, SensorMode reflectedLightMode, SensorMode ambientLightMode, SensorMode colorMode,
+      SensorMode rgbMode) {
+    this.delegate = delegate;
+    logger = SensorMonitorFactory.getLogger(portName);
+    sampler = new SensorSampler(portName);
     // Reflected light mode
-    reflectedLightMode = delegate.getRedMode();
+    this.reflectedLightMode = reflectedLightMode;
     reflectedLightSample = new float[reflectedLightMode.sampleSize()];
     // Ambient light mode
-    ambientLightMode = delegate.getAmbientMode();
+    this.ambientLightMode = ambientLightMode;
     ambientLightSample = new float[ambientLightMode.sampleSize()];
     // Color mode
-    colorMode = delegate.getColorIDMode();
+    this.colorMode = colorMode;
     colorModeSample = new float[colorMode.sampleSize()];
+    // RGB mode
+    this.rgbMode = rgbMode;
+    rgbModeSample = new float[rgbMode.sampleSize()];
   }
 
   @Override
   public void release() {
-    delegate.close();
+    sampler.release();
+    if (delegate != null) {
+      delegate.close();
+    }
   }
 
   /**
@@ -62,7 +89,7 @@ final public class SimpleEV3ColorSensor implements EV3Device {
    */
   @ScriptApi
   public int getReflectedLight() {
-    reflectedLightMode.fetchSample(reflectedLightSample, 0);
+    sampler.fetchSample(reflectedLightMode, reflectedLightSample);
     float result = reflectedLightSample[0];
     logger.log(EV3Constants.COLOR_SENSOR_REFLECTED_LIGHT, result);
     return (int) (result * 100);
@@ -73,7 +100,7 @@ final public class SimpleEV3ColorSensor implements EV3Device {
    */
   @ScriptApi
   public int getAmbientLight() {
-    ambientLightMode.fetchSample(ambientLightSample, 0);
+    sampler.fetchSample(ambientLightMode, ambientLightSample);
     float result = ambientLightSample[0];
     logger.log(EV3Constants.COLOR_SENSOR_AMBIENT_LIGHT, result);
     return (int) (result * 100);
@@ -84,19 +111,157 @@ final public class SimpleEV3ColorSensor implements EV3Device {
    */
   @ScriptApi
   public ColorResult getColor() {
-    colorMode.fetchSample(colorModeSample, 0);
+    sampler.fetchSample(colorMode, colorModeSample);
     int temp = (int) colorModeSample[0];
     logger.log(EV3Constants.COLOR_SENSOR_COLOR, temp);
-    return new ColorResult(temp);
+    return ColorResult.valueOf(temp);
+  }
+
+  /**
+   * Note: The array returned is reused by the next call.
+   * 
+   * @return [red, green, blue], each value between 0 and 100 (normalized values in the {@link EV3ColorSensor#getRGBMode} documentation).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int[] getRGB() {
+    sampler.fetchSample(rgbMode, rgbModeSample);
+    logger.log(EV3Constants.COLOR_SENSOR_RGB, rgbModeSample[0]);
+    for (int i = 0; i < 3; i++) {
+      rgb[i] = (int) (rgbModeSample[i] * 100);
+    }
+    return rgb;
+  }
+
+  /**
+   * Read the RGB value of the color in front of the sensor (average of several samples) and add it as a reference for this color name.<br/>
+   * A color name can be calibrated several times (eg. under different lights).
+   * 
+   * @param sampleCount the number of samples to average
+   * @return the reference added: [red, green, blue]
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int[] calibrateColor(String name, int sampleCount) throws EV3ScriptException {
+    int count = Math.max(sampleCount, 1);
+    int[] sum = new int[3];
+    for (int n = 0; n < count; n++) {
+      int[] temp = getRGB();
+      for (int i = 0; i < 3; i++) {
+        sum[i] += temp[i];
+      }
+    }
+    for (int i = 0; i < 3; i++) {
+      sum[i] = (sum[i] + count / 2) / count;
+    }
+    addColorReference(name, sum[0], sum[1], sum[2]);
+    return sum;
+  }
+
+  /**
+   * Add a reference for this color name (eg. values saved from a previous calibration).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void addColorReference(String name, int red, int green, int blue) throws EV3ScriptException {
+    if (!calibration.addReference(name, red, green, blue)) {
+      throw new EV3ScriptException(EV3ScriptException.TOO_MANY_COLORS, MapBuilder.buildHashMap("max", String.valueOf(ColorLookupTable.MAX_COLORS)).build());
+    }
+  }
+
+  /**
+   * Remove all the color references.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void clearCalibration() {
+    calibration.clear();
+  }
+
+  /**
+   * @param maxDistance the max distance (in the RGB space) between a color and its nearest reference, the farther colors are unknown (default is 20).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setCalibrationMaxDistance(int maxDistance) {
+    calibration.setMaxDistance(maxDistance);
+  }
+
+  /**
+   * The references are compiled in a lookup table on the first call after a calibration change, the next calls only read the RGB value and
+   * index the table.
+   * 
+   * @return the name of the calibrated color nearest to the RGB value read, null if there is no calibrated color near enough.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public String getCalibratedColor() {
+    int[] temp = getRGB();
+    return calibration.classify(temp[0], temp[1], temp[2]);
+  }
+
+  /**
+   * Start (or restart with the new period) the background sampling of the mode: the reading of this mode will then return immediately the latest sample.
+   * 
+   * @param mode in [Reflected, Ambient, Color, RGB]
+   * @param periodInMs the sampling period
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startSampling(String mode, int periodInMs) throws EV3ScriptException {
+    sampler.start(getMode(mode), periodInMs);
+  }
+
+  /**
+   * Stop the background sampling of the mode: the reading of this mode will then be done on demand (the default).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopSampling(String mode) throws EV3ScriptException {
+    sampler.stop(getMode(mode));
+  }
+
+  /**
+   * @return the age (in ms) of the value that will be returned while reading the mode, 0 if the mode isn't sampled in background.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public long getSampleAge(String mode) throws EV3ScriptException {
+    return sampler.getAge(getMode(mode));
+  }
+
+  private SampleProvider getMode(String mode) throws EV3ScriptException {
+    if (EV3Constants.COLOR_SENSOR_REFLECTED_LIGHT.equals(mode)) {
+      return reflectedLightMode;
+    }
+    if (EV3Constants.COLOR_SENSOR_AMBIENT_LIGHT.equals(mode)) {
+      return ambientLightMode;
+    }
+    if (EV3Constants.COLOR_SENSOR_COLOR.equals(mode)) {
+      return colorMode;
+    }
+    if (EV3Constants.COLOR_SENSOR_RGB.equals(mode)) {
+      return rgbMode;
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_MODE, MapBuilder.buildHashMap("mode", String.valueOf(mode)).put("modes", "Reflected, Ambient, Color, RGB").build());
   }
 
+  /**
+   * Immutable, the instances for the color codes returned by the sensor are shared (no allocation while reading the color).
+   */
   public final static class ColorResult {
+    private static final ColorResult[] CACHE = new ColorResult[Color.BROWN - Color.NONE + 1];
+
+    static {
+      for (int i = 0; i < CACHE.length; i++) {
+        CACHE[i] = new ColorResult(i + Color.NONE);
+      }
+    }
+
     private final int value;
 
-    ColorResult(int value) {
+    private ColorResult(int value) {
       this.value = value;
     }
 
+    static ColorResult valueOf(int value) {
+      if ((value >= Color.NONE) && (value <= Color.BROWN)) {
+        return CACHE[value - Color.NONE];
+      }
+      return new ColorResult(value);
+    }
+
     @ScriptApi
     public int getValue() {
       return value;
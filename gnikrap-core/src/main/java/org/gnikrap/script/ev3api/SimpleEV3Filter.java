@@ -0,0 +1,284 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Arrays;
+
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * A streaming filter for the sensor values, each new value update the filter without any allocation.<br/>
+ * The filters are built with {@link SimpleEV3Filters}, the values can be given with {@link #update(float)} or read from a source with {@link #read()}.
+ * 
+ * <pre>
+ * var distance = ev3.getFilters().median(5).wrap(function() { return ir.getDistance(); });
+ * while(ev3.isOk()) {
+ *   var d = distance.read();
+ *   ...
+ * }
+ * </pre>
+ * 
+ * Note: NaN and infinite values (eg. sensor out of range) are ignored (the filter keeps its current value).
+ */
+public abstract class SimpleEV3Filter {
+
+  private Source source;
+  private float value;
+  private int count;
+
+  SimpleEV3Filter() {
+    // Built by SimpleEV3Filters
+  }
+
+  /**
+   * Add a new value to the filter.
+   * 
+   * @return the filtered value.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float update(float v) {
+    if (!Float.isNaN(v) && !Float.isInfinite(v)) {
+      value = compute(v);
+      count++;
+    }
+    return value;
+  }
+
+  /**
+   * @return the filtered value (0 if there is no value yet).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float get() {
+    return value;
+  }
+
+  /**
+   * @return the number of values added since the last reset.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getCount() {
+    return count;
+  }
+
+  /**
+   * Forget all the values.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void reset() {
+    value = 0;
+    count = 0;
+    clear();
+  }
+
+  /**
+   * Define where the values are read by {@link #read()}.
+   * 
+   * @param source a function returning the value, eg. <code>function() { return ir.getDistance(); }</code>.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filter wrap(Source source) {
+    this.source = source;
+    return this;
+  }
+
+  /**
+   * Read a new value from the source (see {@link #wrap(Source)}) and add it to the filter.
+   * 
+   * @return the filtered value.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float read() {
+    return (source != null ? update(source.read()) : value);
+  }
+
+  /**
+   * @return the new filtered value.
+   */
+  abstract float compute(float v);
+
+  /**
+   * Clear the internal state of the filter.
+   */
+  abstract void clear();
+
+  /**
+   * The source of the values of the filter (a script function can be used).
+   */
+  public interface Source {
+    float read();
+  }
+
+  /**
+   * Average of the last N values.
+   */
+  static final class MovingAverage extends SimpleEV3Filter {
+    private final float[] window;
+    private int next;
+    private int size;
+    private double sum;
+
+    MovingAverage(int n) {
+      window = new float[n];
+    }
+
+    @Override
+    float compute(float v) {
+      if (size == window.length) {
+        sum -= window[next];
+      } else {
+        size++;
+      }
+      window[next] = v;
+      sum += v;
+      next = (next + 1) % window.length;
+      return (float) (sum / size);
+    }
+
+    @Override
+    void clear() {
+      next = 0;
+      size = 0;
+      sum = 0;
+    }
+  }
+
+  /**
+   * Median of the last N values (remove the isolated wrong values). A sorted copy of the window is kept up to date (no sort for each value).
+   */
+  static final class Median extends SimpleEV3Filter {
+    private final float[] window;
+    private final float[] sorted;
+    private int next;
+    private int size;
+
+    Median(int n) {
+      window = new float[n];
+      sorted = new float[n];
+    }
+
+    @Override
+    float compute(float v) {
+      if (size == window.length) {
+        // Remove the oldest value from the sorted values
+        int idx = Arrays.binarySearch(sorted, 0, size, window[next]);
+        System.arraycopy(sorted, idx + 1, sorted, idx, size - idx - 1);
+        size--;
+      }
+      window[next] = v;
+      next = (next + 1) % window.length;
+      // Insert the new value
+      int idx = Arrays.binarySearch(sorted, 0, size, v);
+      if (idx < 0) {
+        idx = -idx - 1;
+      }
+      System.arraycopy(sorted, idx, sorted, idx + 1, size - idx);
+      sorted[idx] = v;
+      size++;
+
+      int middle = size / 2;
+      return ((size & 1) != 0 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2);
+    }
+
+    @Override
+    void clear() {
+      next = 0;
+      size = 0;
+    }
+  }
+
+  /**
+   * Exponential moving average: filtered = filtered + alpha * (value - filtered).
+   */
+  static final class ExponentialMovingAverage extends SimpleEV3Filter {
+    private final float alpha;
+
+    ExponentialMovingAverage(float alpha) {
+      this.alpha = alpha;
+    }
+
+    @Override
+    float compute(float v) {
+      return (getCount() == 0 ? v : get() + alpha * (v - get()));
+    }
+
+    @Override
+    void clear() {
+      // Nothing more than the value
+    }
+  }
+
+  /**
+   * 1-D Kalman filter for a value which is (almost) constant between 2 measures.
+   */
+  static final class Kalman extends SimpleEV3Filter {
+    private final float processNoise;
+    private final float measurementNoise;
+    private float errorCovariance;
+
+    Kalman(float processNoise, float measurementNoise) {
+      this.processNoise = processNoise;
+      this.measurementNoise = measurementNoise;
+    }
+
+    @Override
+    float compute(float v) {
+      if (getCount() == 0) {
+        errorCovariance = measurementNoise;
+        return v;
+      }
+      float p = errorCovariance + processNoise; // Predict
+      float gain = p / (p + measurementNoise);
+      errorCovariance = (1 - gain) * p;
+      return get() + gain * (v - get());
+    }
+
+    @Override
+    void clear() {
+      errorCovariance = 0;
+    }
+  }
+
+  /**
+   * Threshold with hysteresis: 1 when the value goes above the high threshold, 0 when the value goes below the low threshold (avoid the
+   * oscillations when the value is near of the threshold).
+   */
+  static final class Hysteresis extends SimpleEV3Filter {
+    private final float low;
+    private final float high;
+
+    Hysteresis(float low, float high) {
+      this.low = low;
+      this.high = high;
+    }
+
+    @Override
+    float compute(float v) {
+      if (v >= high) {
+        return 1;
+      } else if (v <= low) {
+        return 0;
+      }
+      return get();
+    }
+
+    @Override
+    void clear() {
+      // Nothing more than the value
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.gnikrap.utils.MapBuilder;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * Build the streaming filters for the sensor values, see {@link SimpleEV3Filter}.
+ */
+public final class SimpleEV3Filters {
+
+  /** Max number of values kept by the filters working on a window of values */
+  static final int MAX_WINDOW_SIZE = 1000;
+
+  public SimpleEV3Filters() {
+    // Nothing to initialize as there is no HW
+  }
+
+  /**
+   * @param n the number of values averaged
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filter movingAverage(int n) throws EV3ScriptException {
+    checkWindowSize("movingAverage", n);
+    return new SimpleEV3Filter.MovingAverage(n);
+  }
+
+  /**
+   * @param n the number of values from which the median is taken (an odd number is better, eg. 3, 5 or 7)
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filter median(int n) throws EV3ScriptException {
+    checkWindowSize("median", n);
+    return new SimpleEV3Filter.Median(n);
+  }
+
+  /**
+   * @param alpha the weight of the new value, in ]0, 1]: the smaller the smoother
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filter ema(float alpha) throws EV3ScriptException {
+    if (!((alpha > 0) && (alpha <= 1))) {
+      throw newInvalidFilterException("ema");
+    }
+    return new SimpleEV3Filter.ExponentialMovingAverage(alpha);
+  }
+
+  /**
+   * @param processNoise how much the real value can change between 2 measures (variance)
+   * @param measurementNoise the noise of the sensor (variance)
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filter kalman(float processNoise, float measurementNoise) throws EV3ScriptException {
+    if (!((processNoise >= 0) && (measurementNoise > 0))) {
+      throw newInvalidFilterException("kalman");
+    }
+    return new SimpleEV3Filter.Kalman(processNoise, measurementNoise);
+  }
+
+  /**
+   * @return a filter returning 1 when the value goes above <code>high</code> and 0 when the value goes below <code>low</code>.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Filter hysteresis(float low, float high) throws EV3ScriptException {
+    if (!(low <= high)) {
+      throw newInvalidFilterException("hysteresis");
+    }
+    return new SimpleEV3Filter.Hysteresis(low, high);
+  }
+
+  // Utility methods
+  private static void checkWindowSize(String filter, int n) throws EV3ScriptException {
+    if ((n < 1) || (n > MAX_WINDOW_SIZE)) {
+      throw newInvalidFilterException(filter);
+    }
+  }
+
+  private static EV3ScriptException newInvalidFilterException(String filter) {
+    return new EV3ScriptException(EV3ScriptException.INVALID_FILTER, MapBuilder.buildHashMap("filter", filter).build());
+  }
+}
@@ -0,0 +1,316 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
+import org.gnikrap.utils.MapBuilder;
+import org.gnikrap.utils.ScriptApi;
+
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3GyroSensor;
+import lejos.robotics.SampleProvider;
+
+/**
+ * Provide access to the EV3 gyro sensor.
+ * <p/>
+ * The angle can also be integrated in background from the rate: a dedicated thread reads the rate at high frequency, removes the drift (bias of the
+ * sensor measured while the robot doesn't move) and updates the angle, which is then read by the script without accessing the sensor.
+ */
+public class SimpleEV3GyroSensor implements EV3Device {
+
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3GyroSensor.class);
+
+  static final int MIN_INTEGRATION_PERIOD_IN_MS = 2;
+  /** Number of samples used to measure the initial bias */
+  static final int BIAS_CALIBRATION_SAMPLES = 50;
+
+  private final EV3GyroSensor delegate;
+  private final SensorMonitor logger;
+  private final SensorSampler sampler;
+  private final String portName;
+  // Rate mode
+  private final SampleProvider rateMode;
+  private final float[] rateSample;
+  // Angle mode
+  private final SampleProvider angleMode;
+  private final float[] angleSample;
+  // Angle and rate mode
+  private final SampleProvider angleAndRateMode;
+  private final float[] angleAndRateSample;
+  // Integration
+  private ScheduledExecutorService integrationExecutor;
+  private volatile GyroIntegrator integrator;
+
+  public SimpleEV3GyroSensor(Port port) {
+    delegate = new EV3GyroSensor(port);
+    logger = SensorMonitorFactory.getLogger(port);
+    sampler = new SensorSampler(port.getName());
+    portName = port.getName();
+    // Rate mode
+    rateMode = delegate.getRateMode();
+    rateSample = new float[rateMode.sampleSize()];
+    // Angle mode
+    angleMode = delegate.getAngleMode();
+    angleSample = new float[angleMode.sampleSize()];
+    // Angle and rate mode
+    angleAndRateMode = delegate.getAngleAndRateMode();
+    angleAndRateSample = new float[angleAndRateMode.sampleSize()];
+  }
+
+  @Override
+  public void release() {
+    stopIntegration();
+    sampler.release();
+    delegate.close();
+  }
+
+  /**
+   * Start (or restart with the new period) the background sampling of the mode: the reading of this mode will then return immediately the latest sample.
+   * 
+   * @param mode in [Rate, Angle, AngleAndRate]
+   * @param periodInMs the sampling period
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startSampling(String mode, int periodInMs) throws EV3ScriptException {
+    sampler.start(getMode(mode), periodInMs);
+  }
+
+  /**
+   * Stop the background sampling of the mode: the reading of this mode will then be done on demand (the default).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopSampling(String mode) throws EV3ScriptException {
+    sampler.stop(getMode(mode));
+  }
+
+  /**
+   * @return the age (in ms) of the value that will be returned while reading the mode, 0 if the mode isn't sampled in background.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public long getSampleAge(String mode) throws EV3ScriptException {
+    return sampler.getAge(getMode(mode));
+  }
+
+  private SampleProvider getMode(String mode) throws EV3ScriptException {
+    if (EV3Constants.GYRO_RATE.equals(mode)) {
+      return rateMode;
+    }
+    if (EV3Constants.GYRO_ANGLE.equals(mode)) {
+      return angleMode;
+    }
+    if (EV3Constants.GYRO_ANGLE_AND_RATE.equals(mode)) {
+      return angleAndRateMode;
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_MODE, MapBuilder.buildHashMap("mode", String.valueOf(mode))
+        .put("modes", "Rate, Angle, AngleAndRate").build());
+  }
+
+  /**
+   * @return the rotation speed in degrees per second. While integrating, the latest rate read by the integration (drift
+   *         removed).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getRate() {
+    GyroIntegrator i = integrator;
+    if (i != null) {
+      return i.getRate();
+    }
+    sampler.fetchSample(rateMode, rateSample);
+    float result = rateSample[0];
+    logger.log(EV3Constants.GYRO_RATE, result);
+    return result;
+  }
+
+  /**
+   * @return the angle in degrees since the last reset. While integrating, the angle computed by the integration (no sensor access).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getAngle() {
+    GyroIntegrator i = integrator;
+    if (i != null) {
+      return i.getAngle();
+    }
+    sampler.fetchSample(angleMode, angleSample);
+    float result = angleSample[0];
+    logger.log(EV3Constants.GYRO_ANGLE, result);
+    return result;
+  }
+
+  /**
+   * Read the angle and the rate with only one sensor access (the sensor doesn't switch between the angle and rate modes).
+   * 
+   * @return [angle, rate]. Note: The array is reused (updated) by the next call.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float[] getAngleAndRate() {
+    sampler.fetchSample(angleAndRateMode, angleAndRateSample);
+    logger.log(EV3Constants.GYRO_ANGLE_AND_RATE, angleAndRateSample[0]);
+    return angleAndRateSample;
+  }
+
+  /**
+   * Reset the angle to 0 (the sensor and the integration). The robot should not move while resetting.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void reset() {
+    synchronized (sampler.getFetchLock()) {
+      delegate.reset();
+    }
+    GyroIntegrator i = integrator;
+    if (i != null) {
+      i.resetAngle();
+    }
+  }
+
+  /**
+   * Start the background integration of the rate. The robot should not move during the start as the drift of the sensor is measured.
+   * 
+   * @param periodInMs the time between 2 readings of the rate (minimum 2ms)
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void startIntegration(int periodInMs) {
+    stopIntegration();
+    int period = Math.max(periodInMs, MIN_INTEGRATION_PERIOD_IN_MS);
+    // Measure the bias
+    float sum = 0;
+    float[] sample = new float[rateMode.sampleSize()];
+    for (int i = 0; i < BIAS_CALIBRATION_SAMPLES; i++) {
+      synchronized (sampler.getFetchLock()) {
+        rateMode.fetchSample(sample, 0);
+      }
+      sum += sample[0];
+      try {
+        Thread.sleep(period);
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+    final GyroIntegrator i = new GyroIntegrator(sum / BIAS_CALIBRATION_SAMPLES);
+    final float[] fetched = sample;
+    integrationExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("GyroIntegrator-" + portName));
+    integrationExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          synchronized (sampler.getFetchLock()) {
+            rateMode.fetchSample(fetched, 0);
+          }
+          i.update(fetched[0], System.nanoTime());
+        } catch (RuntimeException ex) {
+          LOGGER.log(Level.WARNING, "Error while integrating the gyro rate, sample ignored", ex);
+        }
+      }
+    }, 0, period, TimeUnit.MILLISECONDS);
+    integrator = i;
+  }
+
+  /**
+   * Stop the background integration, the angle is then read from the sensor.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void stopIntegration() {
+    integrator = null;
+    if (integrationExecutor != null) {
+      integrationExecutor.shutdownNow();
+      try {
+        integrationExecutor.awaitTermination(500, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException ie) {
+        // Ignore
+      }
+      integrationExecutor = null;
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isIntegrating() {
+    return integrator != null;
+  }
+
+  /**
+   * @return the drift of the sensor (in degrees per second) removed by the integration, 0 if not integrating.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getDrift() {
+    GyroIntegrator i = integrator;
+    return (i != null ? i.getBias() : 0);
+  }
+
+  /**
+   * Integrate the rate (trapezoidal rule) with drift compensation: the bias is measured at start, then slowly updated while the sensor doesn't
+   * move.<br/>
+   * Updated by only one thread, the values are read without lock.
+   */
+  static final class GyroIntegrator {
+    /** Rate (bias removed) under which the sensor is considered as not moving */
+    static final float STILL_THRESHOLD = 1.5f;
+    /** Weight of a new rate in the bias while the sensor doesn't move */
+    static final float BIAS_ALPHA = 0.002f;
+
+    private volatile float bias;
+    private long lastTime = -1;
+    private float lastRate;
+    private double sum;
+    private volatile float rate;
+    private volatile float angle; // Accumulated angle
+    private volatile float angleOffset; // Accumulated angle at the last reset
+
+    GyroIntegrator(float bias) {
+      this.bias = bias;
+    }
+
+    void update(float measuredRate, long nanoTime) {
+      float r = measuredRate - bias;
+      if (Math.abs(r) < STILL_THRESHOLD) {
+        bias += BIAS_ALPHA * r;
+        r = measuredRate - bias;
+      }
+      if (lastTime >= 0) {
+        double dt = (nanoTime - lastTime) / 1e9;
+        sum += (lastRate + r) * 0.5 * dt;
+        angle = (float) sum;
+      }
+      lastTime = nanoTime;
+      lastRate = r;
+      rate = r;
+    }
+
+    float getRate() {
+      return rate;
+    }
+
+    float getAngle() {
+      return angle - angleOffset;
+    }
+
+    void resetAngle() {
+      angleOffset = angle;
+    }
+
+    float getBias() {
+      return bias;
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.gnikrap.script.ev3api;
 import lejos.hardware.port.Port;
 import lejos.hardware.sensor.EV3IRSensor;
 import lejos.hardware.sensor.SensorMode;
+import lejos.robotics.SampleProvider;
 
 import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
@@ -30,7 +31,9 @@ import org.gnikrap.utils.ScriptApi;
 final public class SimpleEV3IRSensor implements EV3Device {
 
   private final EV3IRSensor delegate;
+  private final RemoteCommandSource remoteCommandSource;
   private final SensorMonitor logger;
+  private final SensorSampler sampler;
   private int channel = 0;
   // Distance mode
   private final SensorMode distanceMode;
@@ -38,22 +41,45 @@ final public class SimpleEV3IRSensor implements EV3Device {
   // Seek mode
   private final SensorMode seekMode;
   private final float[] seekSample;
+  private SeekBeaconResult reusedSeekBeaconResult;
 
   public SimpleEV3IRSensor(Port port) throws EV3ScriptException {
-    delegate = new EV3IRSensor(port);
-    logger = SensorMonitorFactory.getLogger(port);
+    this(new EV3IRSensor(port), port.getName());
+  }
+
+  private SimpleEV3IRSensor(final EV3IRSensor delegate, String portName) throws EV3ScriptException {
+    this(delegate, portName, delegate.getDistanceMode(), delegate.getSeekMode(), new RemoteCommandSource() {
+      @Override
+      public int getRemoteCommand(int chan) {
+        return delegate.getRemoteCommand(chan);
+      }
+    });
+  }
+
+  /**
+   * Package visibility for the tests: the modes can be provided without any sensor (the delegate is then null).
+   */
+  SimpleEV3IRSensor(EV3IRSensor delegate, String portName, SensorMode distanceMode, SensorMode seekMode, RemoteCommandSource remoteCommandSource)
+      throws EV3ScriptException {
+    this.delegate = delegate;
+    this.remoteCommandSource = remoteCommandSource;
+    logger = SensorMonitorFactory.getLogger(portName);
+    sampler = new SensorSampler(portName);
     setChannel(1); // Set default channel
     // Distance mode
-    distanceMode = delegate.getDistanceMode();
+    this.distanceMode = distanceMode;
     distanceSample = new float[distanceMode.sampleSize()];
     // Seek mode
-    seekMode = delegate.getSeekMode();
+    this.seekMode = seekMode;
     seekSample = new float[seekMode.sampleSize()];
   }
 
   @Override
   public void release() {
-    delegate.close();
+    sampler.release();
+    if (delegate != null) {
+      delegate.close();
+    }
   }
 
   @ScriptApi
@@ -73,14 +99,17 @@ final public class SimpleEV3IRSensor implements EV3Device {
 
   @ScriptApi
   public RemoteCommandResult getRemoteCommand() {
-    int temp = delegate.getRemoteCommand(channel - 1); // channel 0-based
+    int temp;
+    synchronized (sampler.getFetchLock()) {
+      temp = remoteCommandSource.getRemoteCommand(channel - 1); // channel 0-based
+    }
     logger.log(EV3Constants.IR_SENSOR_REMOTE, temp);
-    return new RemoteCommandResult(temp);
+    return RemoteCommandResult.valueOf(temp);
   }
 
   @ScriptApi
   public float getDistance() {
-    distanceMode.fetchSample(distanceSample, 0);
+    sampler.fetchSample(distanceMode, distanceSample);
     float result = distanceSample[0];
     logger.log(EV3Constants.IR_SENSOR_DISTANCE, result);
     return result;
@@ -88,11 +117,73 @@ final public class SimpleEV3IRSensor implements EV3Device {
 
   @ScriptApi
   public SeekBeaconResult seekBeacon() {
-    seekMode.fetchSample(seekSample, 0);
+    sampler.fetchSample(seekMode, seekSample);
     // TODO: Something to log ?!
     return new SeekBeaconResult(seekSample, channel);
   }
 
+  /**
+   * Same as {@link #seekBeacon()}, but with reuseResult, the same result object is updated and returned by each call (no allocation while seeking the
+   * beacon in a loop).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SeekBeaconResult seekBeacon(boolean reuseResult) {
+    if (reuseResult == false) {
+      return seekBeacon();
+    }
+    sampler.fetchSample(seekMode, seekSample);
+    if (reusedSeekBeaconResult == null) {
+      reusedSeekBeaconResult = new SeekBeaconResult(seekSample, channel);
+    } else {
+      reusedSeekBeaconResult.update(seekSample, channel);
+    }
+    return reusedSeekBeaconResult;
+  }
+
+  /**
+   * Start (or restart with the new period) the background sampling of the mode: the reading of this mode will then return immediately the latest sample.
+   * 
+   * @param mode in [Distance, Seek]
+   * @param periodInMs the sampling period
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startSampling(String mode, int periodInMs) throws EV3ScriptException {
+    sampler.start(getMode(mode), periodInMs);
+  }
+
+  /**
+   * Stop the background sampling of the mode: the reading of this mode will then be done on demand (the default).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopSampling(String mode) throws EV3ScriptException {
+    sampler.stop(getMode(mode));
+  }
+
+  /**
+   * @return the age (in ms) of the value that will be returned while reading the mode, 0 if the mode isn't sampled in background.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public long getSampleAge(String mode) throws EV3ScriptException {
+    return sampler.getAge(getMode(mode));
+  }
+
+  private SampleProvider getMode(String mode) throws EV3ScriptException {
+    if (EV3Constants.IR_SENSOR_DISTANCE.equals(mode)) {
+      return distanceMode;
+    }
+    if (EV3Constants.IR_SENSOR_SEEK.equals(mode)) {
+      return seekMode;
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_MODE, MapBuilder.buildHashMap("mode", String.valueOf(mode)).put("modes", "Distance, Seek").build());
+  }
+
+  /**
+   * The reading of the remote command buttons (0-based channel), see {@link EV3IRSensor#getRemoteCommand(int)}.
+   */
+  interface RemoteCommandSource {
+    int getRemoteCommand(int chan);
+  }
+
   protected static void checkChannel(int channel) throws EV3ScriptException {
     if (channel < 1 || channel > 4) {
       throw new EV3ScriptException(EV3ScriptException.INVALID_CHANNEL_VALUE, MapBuilder.buildHashMap("channel", Integer.toString(channel)).build());
@@ -100,15 +191,32 @@ final public class SimpleEV3IRSensor implements EV3Device {
   }
 
   /**
-   * Helper class to easy process the remote command buttons status
+   * Helper class to easy process the remote command buttons status.<br/>
+   * Immutable, the instances for the values returned by the sensor are shared (no allocation while reading the remote command).
    */
   public static final class RemoteCommandResult {
+    private static final int MAX_CACHED_VALUE = 11;
+    private static final RemoteCommandResult[] CACHE = new RemoteCommandResult[MAX_CACHED_VALUE + 1];
+
+    static {
+      for (int i = 0; i < CACHE.length; i++) {
+        CACHE[i] = new RemoteCommandResult(i);
+      }
+    }
+
     private final int value;
 
-    RemoteCommandResult(int value) {
+    private RemoteCommandResult(int value) {
       this.value = value;
     }
 
+    static RemoteCommandResult valueOf(int value) {
+      if ((value >= 0) && (value <= MAX_CACHED_VALUE)) {
+        return CACHE[value];
+      }
+      return new RemoteCommandResult(value);
+    }
+
     @ScriptApi
     public int getValue() {
       return value;
@@ -155,14 +263,23 @@ final public class SimpleEV3IRSensor implements EV3Device {
   }
 
   public static final class SeekBeaconResult {
-    private final float[] data;
-    private final int defaultChannel;
+    private float[] data;
+    private int defaultChannel;
 
     SeekBeaconResult(float[] values, int defaultChannel) {
+      data = new float[values.length]; // Should always be 8
+      update(values, defaultChannel);
+    }
+
+    /**
+     * Only for the result reused by {@link SimpleEV3IRSensor#seekBeacon(boolean)}.
+     */
+    void update(float[] values, int defaultChannel) {
       this.defaultChannel = defaultChannel;
-      int length = values.length; // Should always be 8
-      data = new float[length];
-      System.arraycopy(values, 0, data, 0, length);
+      if (data.length != values.length) {
+        data = new float[values.length];
+      }
+      System.arraycopy(values, 0, data, 0, values.length);
     }
 
     /**
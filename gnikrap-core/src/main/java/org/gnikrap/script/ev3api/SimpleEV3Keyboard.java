@@ -17,19 +17,37 @@
  */
 package org.gnikrap.script.ev3api;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import lejos.hardware.Button;
 import lejos.hardware.Key;
 
 import org.gnikrap.script.EV3ScriptContext;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
 import org.gnikrap.utils.ScriptApi;
 
 /**
  * Provide access to the brick keyboard and leds.
+ * <p/>
+ * The keys are read by a single listener thread which record the press/release events (with their time) in a bounded queue: a short press is
+ * never missed and the script can wait for a key without polling it.
  */
 final public class SimpleEV3Keyboard implements EV3Device {
 
-  private static final int WAIT_TIME_FOR_KEY_EVENTS = 50;
-  private static final float IS_RUNNING_WAIT_THRESHOLD = 0.02f; // 20ms
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3Keyboard.class);
+
+  /** Period used to read the keys (lejos also read the keys every 10ms) */
+  static final int KEY_SAMPLING_PERIOD_IN_MS = 10;
+  static final int MAX_QUEUED_EVENTS = 32;
+  /** Max time waiting without checking if the script is still running */
+  private static final int WAIT_SLICE_IN_MS = 500;
 
   private final SimpleEV3Button enter;
   private final SimpleEV3Button up;
@@ -39,22 +57,66 @@ final public class SimpleEV3Keyboard implements EV3Device {
   private final SimpleEV3Button escape;
   private final SimpleEV3Led led;
   private final EV3ScriptContext sc;
+  private final KeyEventQueue events = new KeyEventQueue(MAX_QUEUED_EVENTS);
+  private final List<KeyListener> listeners = new CopyOnWriteArrayList<KeyListener>();
+  private final ScheduledExecutorService listenerExecutor;
 
   public SimpleEV3Keyboard(EV3ScriptContext sc) {
     this.sc = sc;
-    enter = new SimpleEV3Button(Button.ENTER, sc);
-    up = new SimpleEV3Button(Button.UP, sc);
-    down = new SimpleEV3Button(Button.DOWN, sc);
-    left = new SimpleEV3Button(Button.LEFT, sc);
-    right = new SimpleEV3Button(Button.RIGHT, sc);
-    escape = new SimpleEV3Button(Button.ESCAPE, sc);
+    enter = new SimpleEV3Button(Button.ENTER, sc, events);
+    up = new SimpleEV3Button(Button.UP, sc, events);
+    down = new SimpleEV3Button(Button.DOWN, sc, events);
+    left = new SimpleEV3Button(Button.LEFT, sc, events);
+    right = new SimpleEV3Button(Button.RIGHT, sc, events);
+    escape = new SimpleEV3Button(Button.ESCAPE, sc, events);
     led = new SimpleEV3Led();
+
+    events.update(Button.getButtons(), System.currentTimeMillis()); // Keys already down are not events
+    events.clear();
+    listenerExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("KeyboardListener"));
+    listenerExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        readKeys();
+      }
+    }, KEY_SAMPLING_PERIOD_IN_MS, KEY_SAMPLING_PERIOD_IN_MS, TimeUnit.MILLISECONDS);
   }
 
   @Override
   public void release() {
+    listenerExecutor.shutdownNow();
+    listeners.clear();
     led.off();
-    // Does nothing for buttons: buttons are static resources of lejos
+    // Does nothing more for buttons: buttons are static resources of lejos
+  }
+
+  void readKeys() {
+    for (final SimpleEV3KeyEvent event : events.update(Button.getButtons(), System.currentTimeMillis())) {
+      if (listeners.isEmpty()) {
+        continue;
+      }
+      if (sc != null) {
+        // The listeners are script functions: called by the script thread
+        sc.runInScriptThread(new Runnable() {
+          @Override
+          public void run() {
+            callListeners(event);
+          }
+        });
+      } else {
+        try {
+          callListeners(event);
+        } catch (Exception ex) {
+          LOGGER.log(Level.WARNING, "Key listener failed", ex);
+        }
+      }
+    }
+  }
+
+  private void callListeners(SimpleEV3KeyEvent event) {
+    for (KeyListener l : listeners) {
+      l.onKeyEvent(event);
+    }
   }
 
   @ScriptApi
@@ -87,38 +149,179 @@ final public class SimpleEV3Keyboard implements EV3Device {
     return up;
   }
 
+  /**
+   * Wait for a key press (even if a key is already down).
+   * 
+   * @return the id of the key pressed, 0 if the script has been stopped.
+   */
   @ScriptApi
   public int waitForAnyPress() {
-    int button = 0;
-    while (sc.isOk() && ((button = Button.waitForAnyPress(500)) == 0)) {
-      // Does nothing
+    int count = events.getPressCount(KeyEventQueue.ANY_KEY);
+    try {
+      while (sc.isOk()) {
+        if (events.waitPress(KeyEventQueue.ANY_KEY, count, WAIT_SLICE_IN_MS)) {
+          return events.getLastPressed();
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+    return 0;
+  }
+
+  /**
+   * @return the oldest key event, null if there is no event.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3KeyEvent pollEvent() {
+    return events.poll();
+  }
+
+  /**
+   * Wait for a key event.
+   * 
+   * @return the oldest key event, null if the script has been stopped.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3KeyEvent waitEvent() {
+    return waitEvent(0);
+  }
+
+  /**
+   * Wait for a key event.
+   * 
+   * @param timeoutInMs the max time to wait, 0 for no timeout.
+   * @return the oldest key event, null after the timeout or if the script has been stopped.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3KeyEvent waitEvent(long timeoutInMs) {
+    long end = (timeoutInMs > 0 ? System.currentTimeMillis() + timeoutInMs : Long.MAX_VALUE);
+    try {
+      while (sc.isOk()) {
+        long toWait = Math.min(end - System.currentTimeMillis(), WAIT_SLICE_IN_MS);
+        if (toWait <= 0) {
+          return events.poll();
+        }
+        SimpleEV3KeyEvent event = events.poll(toWait);
+        if (event != null) {
+          return event;
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
     }
-    return button;
+    return null;
   }
 
-  // private static long getEnd(float timeout) {
-  // long lTimeout = (long) (timeout * 1000);
-  // long end;
-  // if (lTimeout < 2) {
-  // end = 0x7fffffffffffffffL;
-  // } else {
-  // end = System.currentTimeMillis() + lTimeout;
-  // }
-  // return end;
-  // }
+  /**
+   * Remove all the key events waiting.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void clearEvents() {
+    events.clear();
+  }
+
+  /**
+   * @return the number of key events lost because too many events were waiting (the oldest are lost).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getLostEventCount() {
+    return events.getLostCount();
+  }
+
+  /**
+   * Add a listener called for each key event, the events are still available with {@link #pollEvent()}.<br/>
+   * Note: The listener is called by the script thread on its next call to {@code ev3.isOk()} (never concurrently with the script), an error in the
+   * listener is then a script error.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void addKeyListener(KeyListener listener) {
+    if (listener != null) {
+      listeners.add(listener);
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void removeKeyListener(KeyListener listener) {
+    listeners.remove(listener);
+  }
 
   @ScriptApi
   public SimpleEV3Led getLed() {
     return led;
   }
 
+  /**
+   * Listener of the key events (a script function can be used).
+   */
+  public interface KeyListener {
+    void onKeyEvent(SimpleEV3KeyEvent event);
+  }
+
+  /**
+   * A key pressed or released.
+   */
+  final public static class SimpleEV3KeyEvent {
+    private static final String[] KEY_NAMES = { "Up", "Enter", "Down", "Right", "Left", "Escape" };
+
+    private final int id;
+    private final boolean pressed;
+    private final long time;
+
+    SimpleEV3KeyEvent(int id, boolean pressed, long time) {
+      this.id = id;
+      this.pressed = pressed;
+      this.time = time;
+    }
+
+    /**
+     * @return the id of the key (same value than {@link SimpleEV3Button#getId()}).
+     */
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public int getId() {
+      return id;
+    }
+
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public String getName() {
+      return KEY_NAMES[KeyEventQueue.indexOf(id)];
+    }
+
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public boolean isPressed() {
+      return pressed;
+    }
+
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public boolean isReleased() {
+      return !pressed;
+    }
+
+    /**
+     * @return the time of the event in milliseconds (same clock than System.currentTimeMillis()).
+     */
+    @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+    public long getTime() {
+      return time;
+    }
+
+    @Override
+    public String toString() {
+      return "{name: " + getName() + ", isPressed: " + pressed + ", id: " + id + ", time: " + time + "}";
+    }
+  }
+
   final public static class SimpleEV3Button {
     private final Key delegate;
     private final EV3ScriptContext sc;
+    private final KeyEventQueue events;
+    private final int index;
 
-    SimpleEV3Button(Key delegate, EV3ScriptContext sc) {
+    SimpleEV3Button(Key delegate, EV3ScriptContext sc, KeyEventQueue events) {
       this.delegate = delegate;
       this.sc = sc;
+      this.events = events;
+      this.index = KeyEventQueue.indexOf(delegate.getId());
     }
 
     @ScriptApi
@@ -133,22 +336,26 @@ final public class SimpleEV3Keyboard implements EV3Device {
 
     @ScriptApi
     public void waitForPressAndRelease() {
-      boolean wait = sc.getConfiguration().getIsOkWait() < IS_RUNNING_WAIT_THRESHOLD;
+      int count = events.getReleaseCount(index);
       waitForPress();
-      while (sc.isOk() && isDown()) {
-        if (wait) {
-          sc.sleep(WAIT_TIME_FOR_KEY_EVENTS);
+      try {
+        while (sc.isOk() && !events.waitRelease(index, count, WAIT_SLICE_IN_MS)) {
+          // Does nothing
         }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
       }
     }
 
     @ScriptApi
     public void waitForPress() {
-      boolean wait = sc.getConfiguration().getIsOkWait() < IS_RUNNING_WAIT_THRESHOLD;
-      while (sc.isOk() && isUp()) {
-        if (wait) {
-          sc.sleep(WAIT_TIME_FOR_KEY_EVENTS);
+      int count = events.getPressCount(index);
+      try {
+        while (sc.isOk() && isUp() && !events.waitPress(index, count, WAIT_SLICE_IN_MS)) {
+          // Does nothing
         }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
       }
     }
 
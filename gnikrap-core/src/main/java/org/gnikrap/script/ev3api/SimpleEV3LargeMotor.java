@@ -22,8 +22,8 @@ import lejos.hardware.port.Port;
 
 public class SimpleEV3LargeMotor extends SimpleEV3Motor {
 
-  public SimpleEV3LargeMotor(Port port) {
-    super(port, new EV3LargeRegulatedMotor(port));
+  SimpleEV3LargeMotor(Port port, MotionRegulator regulator) {
+    super(port, new EV3LargeRegulatedMotor(port), regulator);
   }
 
   /**
@@ -22,8 +22,8 @@ import lejos.hardware.port.Port;
 
 public class SimpleEV3MediumMotor extends SimpleEV3Motor {
 
-  public SimpleEV3MediumMotor(Port port) {
-    super(port, new EV3MediumRegulatedMotor(port));
+  SimpleEV3MediumMotor(Port port, MotionRegulator regulator) {
+    super(port, new EV3MediumRegulatedMotor(port), regulator);
   }
 
   /**
@@ -0,0 +1,92 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.gnikrap.utils.MapBuilder;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * A melody compiled once (the notes are converted to frequencies), in order to be played by the sound sequencer without any parsing, see
+ * {@link SimpleEV3Sound#playMelody(SimpleEV3Melody)}.
+ */
+public final class SimpleEV3Melody {
+
+  /** Notes that are rests (silence) */
+  static final String REST = "-";
+
+  private final int[] frequencies; // 0 for a rest
+  private final int[] durationsInMS;
+  private final int totalDurationInMS;
+
+  private SimpleEV3Melody(int[] frequencies, int[] durationsInMS) {
+    this.frequencies = frequencies;
+    this.durationsInMS = durationsInMS;
+    int total = 0;
+    for (int d : durationsInMS) {
+      total += d;
+    }
+    totalDurationInMS = total;
+  }
+
+  /**
+   * @param notes the notes (see {@link SimpleEV3Sound#playNote(String, float)}), "-" for a rest
+   * @param durationsInMS the duration of each note, if shorter than the notes, the last duration is used for the remaining notes
+   */
+  static SimpleEV3Melody compile(String[] notes, float[] durationsInMS) throws EV3ScriptException {
+    if ((notes == null) || (durationsInMS == null) || (durationsInMS.length == 0)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_NOTE, MapBuilder.buildHashMap("note", "null").build());
+    }
+    int[] frequencies = new int[notes.length];
+    int[] durations = new int[notes.length];
+    for (int i = 0; i < notes.length; i++) {
+      String note = notes[i];
+      if (note == null) {
+        throw new EV3ScriptException(EV3ScriptException.INVALID_NOTE, MapBuilder.buildHashMap("note", "null").build());
+      }
+      frequencies[i] = (REST.equals(note.trim()) ? 0 : SimpleEV3Sound.getFrequency(note));
+      durations[i] = Math.max(0, (int) durationsInMS[Math.min(i, durationsInMS.length - 1)]);
+    }
+    return new SimpleEV3Melody(frequencies, durations);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getNoteCount() {
+    return frequencies.length;
+  }
+
+  /**
+   * @return the duration of the melody in milliseconds (with the normal tempo).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getDuration() {
+    return totalDurationInMS;
+  }
+
+  int getFrequency(int index) {
+    return frequencies[index];
+  }
+
+  int getDuration(int index) {
+    return durationsInMS[index];
+  }
+
+  @Override
+  public String toString() {
+    return "{noteCount: " + getNoteCount() + ", duration: " + getDuration() + "}";
+  }
+}
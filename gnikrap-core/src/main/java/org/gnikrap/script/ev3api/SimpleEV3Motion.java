@@ -0,0 +1,152 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.LoggerUtils;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * A move (motion profile) queued on a motor, see {@link SimpleEV3Motor#moveTrapezoidal(int, float, float)}.<br/>
+ * Can be used to wait for the end of the move, to be notified at the end of the move or to cancel the move.
+ */
+public final class SimpleEV3Motion {
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3Motion.class);
+
+  private final MotionRegulator regulator;
+  private final MotionProfile profile;
+  private final CountDownLatch done = new CountDownLatch(1);
+  private volatile boolean cancelled;
+  // Guarded by this
+  private Runnable callback;
+
+  SimpleEV3Motion(MotionRegulator regulator, MotionProfile profile) {
+    this.regulator = regulator;
+    this.profile = profile;
+  }
+
+  MotionProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * @return the expected duration of the move in milliseconds.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getDuration() {
+    return Math.round(profile.getDuration() * 1000);
+  }
+
+  /**
+   * @return true if the move is finished (completed or cancelled).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isDone() {
+    return done.getCount() == 0;
+  }
+
+  /**
+   * @return true if the move has been cancelled.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isCancelled() {
+    return cancelled;
+  }
+
+  /**
+   * Wait for the end of the move (completed or cancelled).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void waitDone() throws InterruptedException {
+    done.await();
+  }
+
+  /**
+   * Wait for the end of the move (completed or cancelled).
+   * 
+   * @return true if the move is finished, false if the timeout elapsed before.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean waitDone(int timeoutInMs) throws InterruptedException {
+    return done.await(timeoutInMs, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Cancel the move: if the move is in progress, the motor is stopped and the next queued move (if any) starts.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void cancel() {
+    regulator.cancel(this);
+  }
+
+  /**
+   * Set the function called at the end of the move (completed or cancelled). Called immediately if the move is already finished.<br/>
+   * Note: The function is called by the script thread (not by the regulator thread), on its next call to {@code ev3.isOk()}: the script has to call
+   * it in its loop (an error in the function is then a script error).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void whenDone(Runnable callback) {
+    synchronized (this) {
+      if (!isDone()) {
+        this.callback = callback;
+        return;
+      }
+    }
+    call(callback);
+  }
+
+  /**
+   * Mark the move as finished, called by the {@link MotionRegulator}.
+   */
+  void finish(boolean cancelled) {
+    Runnable temp;
+    synchronized (this) {
+      if (isDone()) {
+        return;
+      }
+      this.cancelled = cancelled;
+      temp = callback;
+      callback = null;
+      // Queued before the end, in order to have the callback queued when isDone() returns true
+      if ((temp != null) && regulator.queueInScriptThread(temp)) {
+        temp = null;
+      }
+      done.countDown();
+    }
+    if (temp != null) {
+      call(temp);
+    }
+  }
+
+  private static void call(Runnable callback) {
+    try {
+      callback.run();
+    } catch (Exception ex) {
+      LOGGER.log(Level.WARNING, "Error in the end of move callback", ex); // Don't break the regulator
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "{duration: " + getDuration() + ", isDone: " + isDone() + ", isCancelled: " + isCancelled() + "}";
+  }
+}
@@ -20,24 +20,44 @@ package org.gnikrap.script.ev3api;
 import lejos.hardware.motor.BaseRegulatedMotor;
 import lejos.hardware.port.Port;
 
+import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 public class SimpleEV3Motor implements EV3Device {
 
   private final BaseRegulatedMotor delegate;
+  private final MotionRegulator regulator;
   private final SensorMonitor logger;
+  private final String portName;
 
-  public SimpleEV3Motor(Port port, BaseRegulatedMotor delegate) {
+  SimpleEV3Motor(Port port, BaseRegulatedMotor delegate, MotionRegulator regulator) {
     this.delegate = delegate;
+    this.regulator = regulator;
+    this.portName = port.getName();
     logger = SensorMonitorFactory.getLogger(port);
     resetTachoCount();
   }
 
   @Override
   public void release() {
+    regulator.cancelAll(delegate);
     delegate.close();
   }
 
+  /**
+   * @return the lejos motor (for the {@link SimpleEV3MotorGroup}).
+   */
+  BaseRegulatedMotor getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * @return the name of the port of the motor (for the {@link SimpleEV3MotorRecorder}).
+   */
+  String getPortName() {
+    return portName;
+  }
+
   /**
    * @return the tacho count in degree
    */
@@ -167,6 +187,45 @@ public class SimpleEV3Motor implements EV3Device {
     delegate.rotate(angle, immediateReturn);
   }
 
+  /**
+   * Queue a move with a trapezoidal speed profile (constant acceleration, cruise at the maximum speed, constant deceleration). This call immediately
+   * return, the move is executed in the background and starts at the end of the previous queued moves (if any).
+   * 
+   * @param angle the number of degree to rotate
+   * @param maxDegreePerSecond the maximum speed of the move
+   * @param acceleration the maximum acceleration (and deceleration) in degrees per second^2
+   * @return the move, in order to wait for the end of the move or to cancel it
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  final public SimpleEV3Motion moveTrapezoidal(int angle, float maxDegreePerSecond, float acceleration) throws EV3ScriptException {
+    return move(angle, maxDegreePerSecond, acceleration, false);
+  }
+
+  /**
+   * Queue a move with a S-curve speed profile (as {@link #moveTrapezoidal(int, float, float)} but the acceleration smoothly rises and falls, which
+   * avoid slip and shocks).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  final public SimpleEV3Motion moveSCurve(int angle, float maxDegreePerSecond, float acceleration) throws EV3ScriptException {
+    return move(angle, maxDegreePerSecond, acceleration, true);
+  }
+
+  private SimpleEV3Motion move(int angle, float maxDegreePerSecond, float acceleration, boolean sCurve) throws EV3ScriptException {
+    if ((maxDegreePerSecond <= 0) || (acceleration <= 0)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_MOTION_PROFILE, MapBuilder.buildHashMap("speed", String.valueOf(maxDegreePerSecond))
+          .put("acceleration", String.valueOf(acceleration)).build());
+    }
+    return regulator.queue(delegate, new MotionProfile(angle, maxDegreePerSecond, acceleration, sCurve));
+  }
+
+  /**
+   * Cancel the move in progress and the queued moves (if any), the motor is stopped and locked if a move was in progress.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  final public void cancelMoves() {
+    regulator.cancelAll(delegate);
+  }
+
   @Override
   public String toString() {
     return "{speed: " + getSpeed() + ", tachoCount: " + getTachoCount() + ", isMoving: " + isMoving() + "}";
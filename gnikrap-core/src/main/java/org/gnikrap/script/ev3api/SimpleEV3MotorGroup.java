@@ -0,0 +1,273 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Collections;
+
+import org.gnikrap.utils.MapBuilder;
+import org.gnikrap.utils.ScriptApi;
+
+import lejos.hardware.motor.BaseRegulatedMotor;
+import lejos.robotics.RegulatedMotor;
+
+/**
+ * A group of 2 to 4 motors that start, stop and rotate at the same time (with the synchronization of the lejos regulated motors).<br/>
+ * A motor of the group can still be used alone.
+ */
+public class SimpleEV3MotorGroup {
+
+  static final int MIN_MOTORS = 2;
+  static final int MAX_MOTORS = 4;
+
+  private final BaseRegulatedMotor leader;
+  private final BaseRegulatedMotor[] motors;
+  // Speed and acceleration of the motors before a rotateTogether(), restored after the move
+  private final float[] savedSpeeds;
+  private final int[] savedAccelerations;
+  private boolean saved;
+
+  SimpleEV3MotorGroup(SimpleEV3Motor... group) throws EV3ScriptException {
+    if ((group == null) || (group.length < MIN_MOTORS) || (group.length > MAX_MOTORS)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_GROUP, Collections.<String, String>emptyMap());
+    }
+    motors = new BaseRegulatedMotor[group.length];
+    for (int i = 0; i < group.length; i++) {
+      if (group[i] == null) {
+        throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_GROUP, Collections.<String, String>emptyMap());
+      }
+      motors[i] = group[i].getDelegate();
+      for (int j = 0; j < i; j++) {
+        if (motors[j] == motors[i]) {
+          throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_GROUP, Collections.<String, String>emptyMap());
+        }
+      }
+    }
+    leader = motors[0];
+    savedSpeeds = new float[motors.length];
+    savedAccelerations = new int[motors.length];
+    RegulatedMotor[] others = new RegulatedMotor[motors.length - 1];
+    System.arraycopy(motors, 1, others, 0, others.length);
+    leader.synchronizeWith(others);
+  }
+
+  /**
+   * @return the number of motors in the group.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getSize() {
+    return motors.length;
+  }
+
+  /**
+   * All the motors rotate forward until {@link #stop()}. This call immediately return.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void forward() {
+    restoreSpeeds();
+    leader.startSynchronization();
+    for (BaseRegulatedMotor m : motors) {
+      m.forward();
+    }
+    leader.endSynchronization();
+  }
+
+  /**
+   * All the motors rotate backward until {@link #stop()}. This call immediately return.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void backward() {
+    restoreSpeeds();
+    leader.startSynchronization();
+    for (BaseRegulatedMotor m : motors) {
+      m.backward();
+    }
+    leader.endSynchronization();
+  }
+
+  /**
+   * Stop and lock all the motors.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stop() {
+    stop(true);
+  }
+
+  /**
+   * @param lockMotor are the motors locked at the end of the stop ?
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stop(boolean lockMotor) {
+    leader.startSynchronization();
+    for (BaseRegulatedMotor m : motors) {
+      if (lockMotor) {
+        m.stop(true);
+      } else {
+        m.flt(true);
+      }
+    }
+    leader.endSynchronization();
+  }
+
+  /**
+   * @return true if at least one motor of the group is moving.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isMoving() {
+    for (BaseRegulatedMotor m : motors) {
+      if (m.isMoving()) {
+        return true;
+      }
+    }
+    restoreSpeeds();
+    return false;
+  }
+
+  /**
+   * Wait until all the motors of the group have finished their move.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void waitComplete() {
+    for (BaseRegulatedMotor m : motors) {
+      m.waitComplete();
+    }
+    restoreSpeeds();
+  }
+
+  /**
+   * Set the speed of all the motors (in degrees per second).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setSpeed(float degreePerSecond) {
+    restoreSpeeds();
+    for (BaseRegulatedMotor m : motors) {
+      m.setSpeed(degreePerSecond);
+    }
+  }
+
+  /**
+   * All the motors rotate the given number of degree (each motor with its own speed).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void rotate(int angle, boolean immediateReturn) {
+    restoreSpeeds();
+    leader.startSynchronization();
+    for (BaseRegulatedMotor m : motors) {
+      m.rotate(angle, true);
+    }
+    leader.endSynchronization();
+    if (immediateReturn == false) {
+      waitComplete();
+    }
+  }
+
+  /**
+   * Each motor rotate its own number of degree (each motor with its own speed).
+   * 
+   * @param angles one angle by motor (in the group order)
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void rotateEach(int[] angles, boolean immediateReturn) throws EV3ScriptException {
+    checkAngles(angles);
+    restoreSpeeds();
+    startRotateEach(angles, immediateReturn);
+  }
+
+  private void startRotateEach(int[] angles, boolean immediateReturn) {
+    leader.startSynchronization();
+    for (int i = 0; i < motors.length; i++) {
+      motors[i].rotate(angles[i], true);
+    }
+    leader.endSynchronization();
+    if (immediateReturn == false) {
+      waitComplete();
+    }
+  }
+
+  /**
+   * Each motor rotate its own number of degree, the speed (and acceleration) of each motor is adjusted in order to have all the motors arriving
+   * together.<br/>
+   * Note: The speed and acceleration of the motors are restored when the move is seen as complete ({@link #waitComplete()} or {@link #isMoving()}
+   * returning false), or at the start of the next move of the group.
+   * 
+   * @param angles one angle by motor (in the group order)
+   * @param degreePerSecond the speed of the motor with the biggest angle, the other motors are slower.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void rotateTogether(int[] angles, float degreePerSecond, boolean immediateReturn) throws EV3ScriptException {
+    checkAngles(angles);
+    float[] ratios = getRatios(angles);
+    if (ratios == null) {
+      return; // Nothing to do
+    }
+    saveSpeeds();
+    int acceleration = savedAccelerations[0]; // The one of the leader
+    for (int i = 0; i < motors.length; i++) {
+      motors[i].setSpeed(degreePerSecond * ratios[i]);
+      motors[i].setAcceleration(Math.max(1, (int) (acceleration * ratios[i])));
+    }
+    startRotateEach(angles, immediateReturn);
+  }
+
+  /**
+   * @return for each angle, its ratio to the biggest (absolute) angle, null if all the angles are 0.
+   */
+  static float[] getRatios(int[] angles) {
+    int maxAngle = 0;
+    for (int a : angles) {
+      maxAngle = Math.max(maxAngle, Math.abs(a));
+    }
+    if (maxAngle == 0) {
+      return null;
+    }
+    float[] result = new float[angles.length];
+    for (int i = 0; i < angles.length; i++) {
+      result[i] = Math.abs(angles[i]) / (float) maxAngle;
+    }
+    return result;
+  }
+
+  /**
+   * Save the speeds and accelerations, if not already done (keep the ones set by the user when rotateTogether() are chained).
+   */
+  private void saveSpeeds() {
+    if (saved == false) {
+      for (int i = 0; i < motors.length; i++) {
+        savedSpeeds[i] = motors[i].getSpeed();
+        savedAccelerations[i] = motors[i].getAcceleration();
+      }
+      saved = true;
+    }
+  }
+
+  private void restoreSpeeds() {
+    if (saved) {
+      saved = false;
+      for (int i = 0; i < motors.length; i++) {
+        motors[i].setSpeed(savedSpeeds[i]);
+        motors[i].setAcceleration(savedAccelerations[i]);
+      }
+    }
+  }
+
+  private void checkAngles(int[] angles) throws EV3ScriptException {
+    if ((angles == null) || (angles.length != motors.length)) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_MOTOR_GROUP_ANGLES,
+          MapBuilder.buildHashMap("expected", Integer.toString(motors.length)).put("actual", (angles == null ? "0" : Integer.toString(angles.length))).build());
+    }
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import lejos.hardware.motor.BaseRegulatedMotor;
+
+import org.gnikrap.script.EV3ScriptContext;
+import org.gnikrap.script.JsonMessageFields;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * Record the tacho count and the speed of some motors at a fixed rate, in order to tune the motors behavior without slowing down the script.<br/>
+ * The samples are taken by a background thread and stored in ring buffers (when full, the oldest samples are overwritten). The recording can be
+ * retrieved as arrays by the script or streamed to the browser as binary chunks.
+ * <p/>
+ * Binary chunk format (big endian):
+ * <ul>
+ * <li>byte: {@link JsonMessageFields#BINARY_MESSAGE_MOTOR_TELEMETRY}</li>
+ * <li>byte: the number of motors</li>
+ * <li>short: the number of samples</li>
+ * <li>for each motor: byte: the port name (ASCII)</li>
+ * <li>for each sample: int: the time (ms since the start of the recording), then for each motor: int: tacho count, short: speed (degrees per second)</li>
+ * </ul>
+ */
+public final class SimpleEV3MotorRecorder implements EV3Device {
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3MotorRecorder.class);
+
+  /** Maximum rate: the rate of the {@link MotionRegulator} */
+  static final int MIN_PERIOD_IN_MS = MotionRegulator.PERIOD_IN_MS;
+  static final int MAX_CAPACITY = 100000;
+  /** Time between 2 chunks while streaming */
+  static final int STREAMING_PERIOD_IN_MS = 250;
+  private static final int MAX_SAMPLES_BY_CHUNK = 1000;
+
+  private final EV3ScriptContext sc;
+  private final String[] names;
+  private final BaseRegulatedMotor[] motors;
+  private final int periodInMs;
+  private final int capacity;
+  // Ring buffers, guarded by this
+  private final int[] times;
+  private final int[][] tachoCounts;
+  private final int[][] speeds;
+  private long count; // Number of samples taken since the last clear
+  private long streamedCount; // Number of samples already streamed
+  // Sampling
+  private ScheduledExecutorService executor;
+  private ScheduledFuture<?> future;
+  private volatile long startTime;
+  private volatile long lastStreamTime;
+  private volatile boolean streaming;
+
+  SimpleEV3MotorRecorder(EV3ScriptContext sc, String[] names, BaseRegulatedMotor[] motors, int periodInMs, int capacity) {
+    this.sc = sc;
+    this.names = names;
+    this.motors = motors;
+    this.periodInMs = Math.max(periodInMs, MIN_PERIOD_IN_MS);
+    this.capacity = Math.min(Math.max(capacity, 1), MAX_CAPACITY);
+    times = new int[this.capacity];
+    tachoCounts = new int[motors.length][this.capacity];
+    speeds = new int[motors.length][this.capacity];
+  }
+
+  @Override
+  public void release() {
+    stop();
+  }
+
+  /**
+   * Start (or restart) the recording, the previous samples are kept.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void start() {
+    if (future == null) {
+      if (executor == null) {
+        executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("MotorRecorder", Thread.MAX_PRIORITY));
+      }
+      if (count == 0) {
+        startTime = System.currentTimeMillis();
+      }
+      // Each run has its own buffers: after a quick stop/start, the task of the previous run can still be running
+      future = executor.scheduleAtFixedRate(new Runnable() {
+        private final int[] tachoSample = new int[motors.length];
+        private final int[] speedSample = new int[motors.length];
+
+        @Override
+        public void run() {
+          try {
+            sample(tachoSample, speedSample);
+          } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error while recording the motors", ex);
+          }
+        }
+      }, 0, periodInMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stop the recording, the samples not yet streamed are sent to the browser if streaming.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stop() {
+    synchronized (this) {
+      if (future != null) {
+        future.cancel(false);
+        future = null;
+      }
+      if (executor != null) {
+        executor.shutdown();
+        executor = null;
+      }
+    }
+    if (streaming) {
+      sendToBrowser();
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized boolean isRecording() {
+    return future != null;
+  }
+
+  /**
+   * Remove all the samples.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void clear() {
+    count = 0;
+    streamedCount = 0;
+    startTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Periodically send the new samples to the browser (in binary chunks).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startStreaming() {
+    streaming = true;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopStreaming() {
+    streaming = false;
+  }
+
+  /**
+   * Send the samples not yet sent to the browser.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void sendToBrowser() {
+    ByteBuffer chunk;
+    while ((chunk = nextChunk()) != null) {
+      sc.sendBinaryMessage(chunk);
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getPeriod() {
+    return periodInMs;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * @return the number of samples available (the oldest samples are lost once the capacity is reached).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized int getSize() {
+    return (int) Math.min(count, capacity);
+  }
+
+  /**
+   * @return the time of the samples (in ms since the start of the recording), oldest first.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized int[] getTimes() {
+    return copy(times);
+  }
+
+  /**
+   * @param index the index of the motor (in the order given at the creation of the recorder)
+   * @return the tacho counts of the motor, oldest first.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized int[] getTachoCounts(int index) {
+    return copy(tachoCounts[index]);
+  }
+
+  /**
+   * @param index the index of the motor (in the order given at the creation of the recorder)
+   * @return the speeds of the motor (in degrees per second), oldest first.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized int[] getSpeeds(int index) {
+    return copy(speeds[index]);
+  }
+
+  private int[] copy(int[] ring) {
+    int size = getSize();
+    int[] result = new int[size];
+    int first = (int) ((count - size) % capacity);
+    int firstPart = Math.min(size, capacity - first);
+    System.arraycopy(ring, first, result, 0, firstPart);
+    System.arraycopy(ring, 0, result, firstPart, size - firstPart);
+    return result;
+  }
+
+  private void sample(int[] tachoSample, int[] speedSample) {
+    // Read the motors out of the lock: the script can read the recording meanwhile
+    for (int i = 0; i < motors.length; i++) {
+      tachoSample[i] = motors[i].getTachoCount();
+      speedSample[i] = motors[i].getRotationSpeed();
+    }
+    long now = System.currentTimeMillis();
+    record((int) (now - startTime), tachoSample, speedSample);
+    if (streaming && (now - lastStreamTime >= STREAMING_PERIOD_IN_MS)) {
+      lastStreamTime = now;
+      sendToBrowser();
+    }
+  }
+
+  synchronized void record(int time, int[] tachoSample, int[] speedSample) {
+    int index = (int) (count % capacity);
+    times[index] = time;
+    for (int i = 0; i < tachoSample.length; i++) {
+      tachoCounts[i][index] = tachoSample[i];
+      speeds[i][index] = speedSample[i];
+    }
+    count++;
+  }
+
+  /**
+   * @return the next chunk of samples not yet streamed, null if there is no more samples to stream.
+   */
+  synchronized ByteBuffer nextChunk() {
+    long first = Math.max(streamedCount, count - capacity); // Samples overwritten before having been streamed are lost
+    int size = (int) Math.min(count - first, MAX_SAMPLES_BY_CHUNK);
+    if (size <= 0) {
+      return null;
+    }
+    ByteBuffer result = ByteBuffer.allocate(4 + names.length + size * (4 + names.length * 6));
+    result.put(JsonMessageFields.BINARY_MESSAGE_MOTOR_TELEMETRY);
+    result.put((byte) names.length);
+    result.putShort((short) size);
+    for (String name : names) {
+      result.put((byte) name.charAt(0));
+    }
+    for (long n = first; n < first + size; n++) {
+      int index = (int) (n % capacity);
+      result.putInt(times[index]);
+      for (int i = 0; i < names.length; i++) {
+        result.putInt(tachoCounts[i][index]);
+        result.putShort((short) speeds[i][index]);
+      }
+    }
+    streamedCount = first + size;
+    result.flip();
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "{period: " + periodInMs + ", capacity: " + capacity + ", size: " + getSize() + ", isRecording: " + isRecording() + "}";
+  }
+}
@@ -0,0 +1,314 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Arrays;
+
+import lejos.hardware.lcd.Image;
+
+import org.gnikrap.script.ev3api.SimpleEV3Screen.SimpleEV3Image;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * A map of the obstacles built from distance readings (IR or ultrasonic sensor) and the pose of the robot.<br/>
+ * Each cell stores its log-odds of being occupied in one byte: the memory used is fixed at creation (1 byte per cell). Each reading makes the
+ * cells crossed by the ray more free and the cell at the measured distance more occupied.
+ * <p/>
+ * The coordinates use the unit of the cell size (eg. cm), (0, 0) is at the center of the grid, x to the right and y to the top. The angles are
+ * in degrees, counterclockwise (0 is the x axis), like {@link SimpleEV3Odometry}.
+ */
+public final class SimpleEV3OccupancyGrid {
+
+  static final int MAX_CELLS = 512 * 512;
+
+  static final int STATE_UNKNOWN = -1;
+  static final int STATE_FREE = 0;
+  static final int STATE_OCCUPIED = 1;
+
+  // Quantized log-odds (1 unit is 0.1)
+  static final byte LOG_ODDS_HIT = 9; // ~ p=0.71
+  static final byte LOG_ODDS_MISS = -4; // ~ p=0.40
+  static final int LOG_ODDS_MAX = 100;
+  static final int OCCUPIED_THRESHOLD = 15;
+  static final int FREE_THRESHOLD = -10;
+
+  // Ray walk modes
+  private static final int MODE_CAST = 0;
+  private static final int MODE_UPDATE_HIT = 1;
+  private static final int MODE_UPDATE_MISS = 2;
+
+  private final int width;
+  private final int height;
+  private final float cellSize;
+  private final byte[] cells;
+
+  SimpleEV3OccupancyGrid(int width, int height, float cellSize) {
+    this.width = width;
+    this.height = height;
+    this.cellSize = cellSize;
+    cells = new byte[width * height];
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getWidth() {
+    return width;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getHeight() {
+    return height;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getCellSize() {
+    return cellSize;
+  }
+
+  /**
+   * Forget all the readings (all the cells are unknown).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void clear() {
+    Arrays.fill(cells, (byte) 0);
+  }
+
+  // //////////////////////////////////////////////////////////////////////////
+  // Update
+
+  /**
+   * Add a distance reading.
+   * 
+   * @param x the position of the sensor
+   * @param y the position of the sensor
+   * @param angle the direction of the sensor in degrees (heading of the robot + angle of the sensor on the robot)
+   * @param distance the distance measured
+   * @param maxRange the maximum range of the sensor: if the distance is greater or equals, no obstacle has been detected
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void addReading(float x, float y, float angle, float distance, float maxRange) {
+    if (Float.isNaN(distance) || (distance < 0)) {
+      return;
+    }
+    boolean hit = distance < maxRange;
+    walk(x, y, angle, Math.min(distance, maxRange), hit ? MODE_UPDATE_HIT : MODE_UPDATE_MISS);
+  }
+
+  /**
+   * Mark the cell containing the point as occupied (eg. touch sensor pressed) or free.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setState(float x, float y, boolean occupied) {
+    int col = toColumn(x);
+    int row = toRow(y);
+    if (isInside(col, row)) {
+      cells[row * width + col] = (byte) (occupied ? LOG_ODDS_MAX : -LOG_ODDS_MAX);
+    }
+  }
+
+  private void update(int index, int delta) {
+    int v = cells[index] + delta;
+    cells[index] = (byte) Math.max(-LOG_ODDS_MAX, Math.min(LOG_ODDS_MAX, v));
+  }
+
+  // //////////////////////////////////////////////////////////////////////////
+  // Queries
+
+  /**
+   * @return the state of the cell containing the point: 1 if occupied, 0 if free, -1 if unknown (or outside of the grid).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getState(float x, float y) {
+    return getCellState(toColumn(x), toRow(y));
+  }
+
+  /**
+   * @return the state of the cell: 1 if occupied, 0 if free, -1 if unknown (or outside of the grid). The row 0 is at the bottom of the grid.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getCellState(int column, int row) {
+    if (!isInside(column, row)) {
+      return STATE_UNKNOWN;
+    }
+    int v = cells[row * width + column];
+    if (v >= OCCUPIED_THRESHOLD) {
+      return STATE_OCCUPIED;
+    }
+    return (v <= FREE_THRESHOLD ? STATE_FREE : STATE_UNKNOWN);
+  }
+
+  /**
+   * @return the probability (between 0 and 1) that the cell containing the point is occupied, 0.5 if unknown.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getProbability(float x, float y) {
+    int col = toColumn(x);
+    int row = toRow(y);
+    if (!isInside(col, row)) {
+      return 0.5f;
+    }
+    return (float) (1 - 1 / (1 + Math.exp(cells[row * width + col] / 10.0)));
+  }
+
+  /**
+   * @return the distance from the point to the nearest occupied cell (center of the cell), -1 if there is no occupied cell within the maximum
+   *         distance.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getNearestObstacleDistance(float x, float y, float maxDistance) {
+    int col = toColumn(x);
+    int row = toRow(y);
+    int maxRing = (int) Math.ceil(maxDistance / cellSize);
+    double best = Double.MAX_VALUE;
+    // Search ring by ring around the cell, stop when the ring is farther than the best distance found
+    for (int ring = 0; (ring <= maxRing) && ((ring - 1) * cellSize < best); ring++) {
+      for (int r = row - ring; r <= row + ring; r++) {
+        if ((r < 0) || (r >= height)) {
+          continue;
+        }
+        boolean fullRow = (r == row - ring) || (r == row + ring);
+        int step = (fullRow ? 1 : 2 * ring);
+        for (int c = col - ring; c <= col + ring; c += step) {
+          if ((c >= 0) && (c < width) && (cells[r * width + c] >= OCCUPIED_THRESHOLD)) {
+            double dx = toX(c) - x;
+            double dy = toY(r) - y;
+            best = Math.min(best, Math.sqrt(dx * dx + dy * dy));
+          }
+        }
+      }
+    }
+    return (best <= maxDistance ? (float) best : -1);
+  }
+
+  /**
+   * @return the distance from the point to the first occupied cell in the given direction (in degrees), -1 if there is no occupied cell within the
+   *         maximum distance.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float castRay(float x, float y, float angle, float maxDistance) {
+    return walk(x, y, angle, maxDistance, MODE_CAST);
+  }
+
+  /**
+   * @return an image of the grid (1 pixel per cell), the occupied cells are black. The image can be drawn on the screen.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Image toImage() {
+    int bytesByLine = (width + 7) / 8;
+    byte[] data = new byte[bytesByLine * height];
+    for (int row = 0; row < height; row++) {
+      int offset = (height - 1 - row) * bytesByLine; // The first line of the image is the top of the grid
+      for (int col = 0; col < width; col++) {
+        if (cells[row * width + col] >= OCCUPIED_THRESHOLD) {
+          data[offset + (col >> 3)] |= (byte) (1 << (col & 7));
+        }
+      }
+    }
+    return new SimpleEV3Image(new Image(width, height, data));
+  }
+
+  // //////////////////////////////////////////////////////////////////////////
+  // Utility methods
+
+  /**
+   * Walk through the cells crossed by the ray (Amanatides & Woo traversal, no allocation).
+   * 
+   * @return for {@link #MODE_CAST}, the distance to the first occupied cell or -1.
+   */
+  private float walk(float x, float y, float angle, float length, int mode) {
+    double a = Math.toRadians(angle);
+    double dx = Math.cos(a);
+    double dy = Math.sin(a);
+    // In cell units
+    double gx = x / cellSize + width / 2;
+    double gy = y / cellSize + height / 2;
+    double l = length / cellSize;
+    int col = (int) Math.floor(gx);
+    int row = (int) Math.floor(gy);
+    int stepCol = (dx > 0 ? 1 : -1);
+    int stepRow = (dy > 0 ? 1 : -1);
+    double deltaCol = (dx != 0 ? Math.abs(1 / dx) : Double.MAX_VALUE);
+    double deltaRow = (dy != 0 ? Math.abs(1 / dy) : Double.MAX_VALUE);
+    double nextCol = (dx != 0 ? (dx > 0 ? col + 1 - gx : gx - col) * deltaCol : Double.MAX_VALUE);
+    double nextRow = (dy != 0 ? (dy > 0 ? row + 1 - gy : gy - row) * deltaRow : Double.MAX_VALUE);
+    double t = 0; // Distance (in cell units) at the entry of the current cell
+
+    while (isInside(col, row)) {
+      int index = row * width + col;
+      double exit = Math.min(nextCol, nextRow);
+      if (mode == MODE_CAST) {
+        if (cells[index] >= OCCUPIED_THRESHOLD) {
+          return (float) (t * cellSize);
+        }
+        if (exit >= l) {
+          return -1;
+        }
+      } else if (exit >= l) {
+        // Last cell
+        update(index, mode == MODE_UPDATE_HIT ? LOG_ODDS_HIT : LOG_ODDS_MISS);
+        return 0;
+      } else {
+        update(index, LOG_ODDS_MISS);
+      }
+      t = exit;
+      if (nextCol < nextRow) {
+        col += stepCol;
+        nextCol += deltaCol;
+      } else {
+        row += stepRow;
+        nextRow += deltaRow;
+      }
+    }
+    return -1;
+  }
+
+  private boolean isInside(int col, int row) {
+    return (col >= 0) && (col < width) && (row >= 0) && (row < height);
+  }
+
+  /**
+   * @return the column of the cell containing the x coordinate (eg. for a {@link SimpleEV3PathPlanner}).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int toColumn(float x) {
+    return (int) Math.floor(x / cellSize + width / 2);
+  }
+
+  /**
+   * @return the row of the cell containing the y coordinate (eg. for a {@link SimpleEV3PathPlanner}).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int toRow(float y) {
+    return (int) Math.floor(y / cellSize + height / 2);
+  }
+
+  /**
+   * @return the x coordinate of the center of the cells of the column.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float toX(int column) {
+    return (column - width / 2 + 0.5f) * cellSize;
+  }
+
+  /**
+   * @return the y coordinate of the center of the cells of the row.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float toY(int row) {
+    return (row - height / 2 + 0.5f) * cellSize;
+  }
+}
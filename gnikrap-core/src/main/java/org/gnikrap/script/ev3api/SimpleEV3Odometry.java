@@ -0,0 +1,301 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import lejos.hardware.motor.BaseRegulatedMotor;
+
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * Compute the position (x, y, heading) of a differential drive robot from the tacho count of the 2 wheel motors.<br/>
+ * A background thread reads the motors at a fixed rate and updates the pose, the heading can be fused with a gyro sensor (the gyro is better
+ * than the wheels for the heading as the wheels slip while turning). The script reads the latest pose without accessing the motors.
+ * <p/>
+ * The distances use the unit of the wheel diameter and track width (eg. cm). The heading is in degrees, counterclockwise (0 is the x axis).
+ * <p/>
+ * Note: The tacho count of the motors should not be reset while the odometry is running.
+ */
+public final class SimpleEV3Odometry implements EV3Device {
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3Odometry.class);
+
+  static final int MIN_PERIOD_IN_MS = 5;
+
+  private final BaseRegulatedMotor left;
+  private final BaseRegulatedMotor right;
+  private final int periodInMs;
+  private final PoseIntegrator integrator; // Guarded by itself
+  private volatile Pose pose; // Published by the integrator updates, read without lock
+  private final float[] poseArray = new float[3];
+  private volatile SimpleEV3GyroSensor gyro;
+  private ScheduledExecutorService executor;
+
+  SimpleEV3Odometry(BaseRegulatedMotor left, BaseRegulatedMotor right, float wheelDiameter, float trackWidth, int periodInMs) {
+    this.left = left;
+    this.right = right;
+    this.periodInMs = Math.max(periodInMs, MIN_PERIOD_IN_MS);
+    integrator = new PoseIntegrator(wheelDiameter, trackWidth);
+    pose = integrator.getPose();
+  }
+
+  @Override
+  public void release() {
+    stop();
+  }
+
+  /**
+   * Start (or restart) the computation of the pose, the pose is kept.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void start() {
+    if (executor == null) {
+      synchronized (integrator) {
+        integrator.restart();
+      }
+      executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("Odometry", Thread.MAX_PRIORITY));
+      executor.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            update();
+          } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error while computing the odometry", ex);
+          }
+        }
+      }, 0, periodInMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Stop the computation of the pose.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void stop() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized boolean isRunning() {
+    return executor != null;
+  }
+
+  void update() {
+    int l = left.getTachoCount();
+    int r = right.getTachoCount();
+    SimpleEV3GyroSensor g = gyro;
+    float gyroAngle = (g != null ? g.getAngle() : Float.NaN);
+    synchronized (integrator) {
+      integrator.update(l, r, gyroAngle);
+      pose = integrator.getPose();
+    }
+  }
+
+  /**
+   * Fuse the heading with the angle of the gyro (the gyro should be integrating, see {@link SimpleEV3GyroSensor#startIntegration(int)}).
+   * 
+   * @param weight the weight of the gyro in the heading changes, in [0, 1], 1 means that only the gyro is used for the heading.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setGyro(SimpleEV3GyroSensor gyro, float weight) {
+    synchronized (integrator) {
+      integrator.setGyroWeight(gyro != null ? Math.min(Math.max(weight, 0), 1) : 0);
+    }
+    this.gyro = gyro;
+  }
+
+  /**
+   * Set the current pose.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setPose(float x, float y, float headingInDegrees) {
+    synchronized (integrator) {
+      integrator.setPose(x, y, headingInDegrees);
+      pose = integrator.getPose();
+    }
+  }
+
+  /**
+   * Set the current pose to (0, 0, 0).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void reset() {
+    setPose(0, 0, 0);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getX() {
+    return pose.x;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getY() {
+    return pose.y;
+  }
+
+  /**
+   * @return the heading in degrees, in ]-180, 180].
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getHeading() {
+    return pose.heading;
+  }
+
+  /**
+   * @return the distance traveled by the center of the robot (backward moves are subtracted).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float getDistance() {
+    return pose.distance;
+  }
+
+  /**
+   * @return [x, y, heading] read at the same time. Note: The array is reused (updated) by the next call.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float[] getPose() {
+    Pose p = pose;
+    poseArray[0] = p.x;
+    poseArray[1] = p.y;
+    poseArray[2] = p.heading;
+    return poseArray;
+  }
+
+  @Override
+  public String toString() {
+    Pose p = pose;
+    return "{x: " + p.x + ", y: " + p.y + ", heading: " + p.heading + "}";
+  }
+
+  /**
+   * A pose computed by the {@link PoseIntegrator} (immutable, so the script can read it without lock).
+   */
+  static final class Pose {
+    final float x;
+    final float y;
+    final float heading; // Degrees
+    final float distance;
+
+    Pose(float x, float y, float heading, float distance) {
+      this.x = x;
+      this.y = y;
+      this.heading = heading;
+      this.distance = distance;
+    }
+  }
+
+  /**
+   * The odometry computation (not thread safe).
+   */
+  static final class PoseIntegrator {
+    private final double degreesToDistance; // Distance traveled by a wheel for 1 degree
+    private final double trackWidth;
+    private double gyroWeight;
+    private boolean started;
+    private int lastLeft;
+    private int lastRight;
+    private float lastGyroAngle = Float.NaN;
+    private double x;
+    private double y;
+    private double heading; // Radians
+    private double distance;
+
+    PoseIntegrator(float wheelDiameter, float trackWidth) {
+      this.degreesToDistance = Math.PI * wheelDiameter / 360.0;
+      this.trackWidth = trackWidth;
+    }
+
+    void setGyroWeight(double gyroWeight) {
+      this.gyroWeight = gyroWeight;
+      lastGyroAngle = Float.NaN;
+    }
+
+    /**
+     * The next update only initialize the tacho counts (the motors may have moved while the odometry was stopped).
+     */
+    void restart() {
+      started = false;
+    }
+
+    void update(int leftTacho, int rightTacho, float gyroAngle) {
+      if (started) {
+        double dl = (leftTacho - lastLeft) * degreesToDistance;
+        double dr = (rightTacho - lastRight) * degreesToDistance;
+        double dCenter = (dl + dr) / 2;
+        double dHeading = (dr - dl) / trackWidth;
+        if ((gyroWeight > 0) && !Float.isNaN(gyroAngle) && !Float.isNaN(lastGyroAngle)) {
+          dHeading = (1 - gyroWeight) * dHeading + gyroWeight * Math.toRadians(gyroAngle - lastGyroAngle);
+        }
+        double middleHeading = heading + dHeading / 2;
+        x += dCenter * Math.cos(middleHeading);
+        y += dCenter * Math.sin(middleHeading);
+        heading = normalize(heading + dHeading);
+        distance += dCenter;
+      }
+      started = true;
+      lastLeft = leftTacho;
+      lastRight = rightTacho;
+      lastGyroAngle = gyroAngle;
+    }
+
+    void setPose(float x, float y, float headingInDegrees) {
+      this.x = x;
+      this.y = y;
+      this.heading = normalize(Math.toRadians(headingInDegrees));
+    }
+
+    private static double normalize(double angle) {
+      double result = angle % (2 * Math.PI);
+      if (result <= -Math.PI) {
+        result += 2 * Math.PI;
+      } else if (result > Math.PI) {
+        result -= 2 * Math.PI;
+      }
+      return result;
+    }
+
+    float getX() {
+      return (float) x;
+    }
+
+    float getY() {
+      return (float) y;
+    }
+
+    float getHeading() {
+      return (float) Math.toDegrees(heading);
+    }
+
+    float getDistance() {
+      return (float) distance;
+    }
+
+    Pose getPose() {
+      return new Pose(getX(), getY(), getHeading(), getDistance());
+    }
+  }
+}
@@ -0,0 +1,271 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * Find the shortest path between 2 cells of a grid (eg. a maze) with A* (or Dijkstra), the grid being 4-connected (default) or 8-connected.<br/>
+ * The search only uses int arrays allocated once (cell indexes, no boxing): the costs, the parents, the cells already seen/closed (stamped with a
+ * search number, so nothing is cleared between 2 searches) and a binary heap.
+ * <p/>
+ * The cost of a straight move is 10, the cost of a diagonal move is 14 (the diagonal moves can't cut the corners of the walls).
+ */
+public final class SimpleEV3PathPlanner {
+
+  private static final int STRAIGHT_COST = 10;
+  private static final int DIAGONAL_COST = 14;
+  private static final int[] NEIGHBOURS_COL = { 1, -1, 0, 0, 1, 1, -1, -1 };
+  private static final int[] NEIGHBOURS_ROW = { 0, 0, 1, -1, 1, -1, 1, -1 };
+
+  private final int width;
+  private final int height;
+  private final int[] walls; // 1 bit per cell
+  private boolean eightConnected;
+  private boolean dijkstra;
+  // Search data (reused from one search to the other)
+  private final int[] costs;
+  private final int[] parents;
+  private final int[] seen; // Search number when the cell has been seen
+  private final int[] closed; // Search number when the cell has been closed
+  private final IntMinHeap open;
+  private int searchNumber;
+  private int lastCost = -1;
+
+  /**
+   * @param walls the walls, 1 bit per cell (row by row, bit <code>i % 32</code> of <code>walls[i / 32]</code> is the cell <code>i</code>).
+   */
+  SimpleEV3PathPlanner(int width, int height, int[] walls) {
+    this.width = width;
+    this.height = height;
+    this.walls = walls;
+    int n = width * height;
+    costs = new int[n];
+    parents = new int[n];
+    seen = new int[n];
+    closed = new int[n];
+    open = new IntMinHeap(Math.min(n, 1024));
+  }
+
+  /**
+   * @param rows one string by row of the grid (like {@link SimpleEV3Screen#buildImage(String...)}), the spaces and the dots are free cells, the other
+   *          characters are walls. All the rows should have the same length.
+   */
+  static SimpleEV3PathPlanner fromRows(String[] rows) {
+    int width = rows[0].length();
+    int[] walls = new int[(width * rows.length + 31) / 32];
+    for (int row = 0; row < rows.length; row++) {
+      String line = rows[row];
+      for (int col = 0; col < width; col++) {
+        char c = line.charAt(col);
+        if ((c != ' ') && (c != '.')) {
+          int i = row * width + col;
+          walls[i >>> 5] |= 1 << (i & 31);
+        }
+      }
+    }
+    return new SimpleEV3PathPlanner(width, rows.length, walls);
+  }
+
+  /**
+   * The occupied cells of the grid are the walls (the unknown cells are free). The row 0 is the bottom of the grid.
+   */
+  static SimpleEV3PathPlanner fromGrid(SimpleEV3OccupancyGrid grid) {
+    int width = grid.getWidth();
+    int height = grid.getHeight();
+    int[] walls = new int[(width * height + 31) / 32];
+    for (int row = 0; row < height; row++) {
+      for (int col = 0; col < width; col++) {
+        if (grid.getCellState(col, row) == SimpleEV3OccupancyGrid.STATE_OCCUPIED) {
+          int i = row * width + col;
+          walls[i >>> 5] |= 1 << (i & 31);
+        }
+      }
+    }
+    return new SimpleEV3PathPlanner(width, height, walls);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getWidth() {
+    return width;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @param eightConnected true to allow the diagonal moves
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3PathPlanner setEightConnected(boolean eightConnected) {
+    this.eightConnected = eightConnected;
+    return this;
+  }
+
+  /**
+   * @param dijkstra true to use Dijkstra (explore all the directions) instead of A* (explore in the direction of the goal first)
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3PathPlanner setDijkstra(boolean dijkstra) {
+    this.dijkstra = dijkstra;
+    return this;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isWall(int column, int row) {
+    if ((column < 0) || (column >= width) || (row < 0) || (row >= height)) {
+      return true;
+    }
+    int i = row * width + column;
+    return (walls[i >>> 5] & (1 << (i & 31))) != 0;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setWall(int column, int row, boolean wall) {
+    if ((column >= 0) && (column < width) && (row >= 0) && (row < height)) {
+      int i = row * width + column;
+      if (wall) {
+        walls[i >>> 5] |= 1 << (i & 31);
+      } else {
+        walls[i >>> 5] &= ~(1 << (i & 31));
+      }
+    }
+  }
+
+  /**
+   * @return the cost of the last path found (10 by straight move, 14 by diagonal move), -1 if no path has been found.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getLastPathCost() {
+    return lastCost;
+  }
+
+  /**
+   * Find the shortest path.
+   * 
+   * @return the waypoints [column0, row0, column1, row1, ...] from the start to the goal: only the cells where the direction changes are given
+   *         (the robot goes straight between 2 waypoints). Empty if there is no path.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int[] findPath(int startColumn, int startRow, int goalColumn, int goalRow) {
+    lastCost = -1;
+    if (isWall(startColumn, startRow) || isWall(goalColumn, goalRow)) {
+      return new int[0];
+    }
+    int start = startRow * width + startColumn;
+    int goal = goalRow * width + goalColumn;
+    int search = ++searchNumber;
+    int neighbourCount = (eightConnected ? 8 : 4);
+
+    open.clear();
+    costs[start] = 0;
+    parents[start] = -1;
+    seen[start] = search;
+    open.push(start, heuristic(startColumn, startRow, goalColumn, goalRow));
+    while (!open.isEmpty()) {
+      int current = open.pop();
+      if (closed[current] == search) {
+        continue; // Outdated entry of the heap
+      }
+      if (current == goal) {
+        lastCost = costs[goal];
+        return buildWaypoints(goal);
+      }
+      closed[current] = search;
+      int col = current % width;
+      int row = current / width;
+      for (int k = 0; k < neighbourCount; k++) {
+        int c = col + NEIGHBOURS_COL[k];
+        int r = row + NEIGHBOURS_ROW[k];
+        if (isWall(c, r)) {
+          continue;
+        }
+        int moveCost = STRAIGHT_COST;
+        if (k >= 4) {
+          if (isWall(c, row) || isWall(col, r)) {
+            continue; // Don't cut the corners
+          }
+          moveCost = DIAGONAL_COST;
+        }
+        int next = r * width + c;
+        if (closed[next] == search) {
+          continue;
+        }
+        int cost = costs[current] + moveCost;
+        if ((seen[next] != search) || (cost < costs[next])) {
+          seen[next] = search;
+          costs[next] = cost;
+          parents[next] = current;
+          open.push(next, cost + heuristic(c, r, goalColumn, goalRow));
+        }
+      }
+    }
+    return new int[0];
+  }
+
+  private int heuristic(int col, int row, int goalCol, int goalRow) {
+    if (dijkstra) {
+      return 0;
+    }
+    int dx = Math.abs(col - goalCol);
+    int dy = Math.abs(row - goalRow);
+    if (eightConnected) {
+      return STRAIGHT_COST * (dx + dy) + (DIAGONAL_COST - 2 * STRAIGHT_COST) * Math.min(dx, dy); // Octile distance
+    }
+    return STRAIGHT_COST * (dx + dy); // Manhattan distance
+  }
+
+  /**
+   * @return the direction of the move between the 2 cells, in [0, 8]
+   */
+  private int direction(int from, int to) {
+    return 3 * (to / width - from / width + 1) + (to % width - from % width + 1);
+  }
+
+  private int[] buildWaypoints(int goal) {
+    // Count the waypoints: start, goal and the cells where the direction changes
+    int count = 1;
+    int lastDirection = Integer.MIN_VALUE;
+    for (int i = goal; parents[i] >= 0; i = parents[i]) {
+      int direction = direction(parents[i], i);
+      if ((direction != lastDirection) && (lastDirection != Integer.MIN_VALUE)) {
+        count++;
+      }
+      lastDirection = direction;
+    }
+    count += (lastDirection != Integer.MIN_VALUE ? 1 : 0);
+
+    int[] result = new int[2 * count];
+    int idx = result.length;
+    lastDirection = Integer.MIN_VALUE;
+    int i = goal;
+    for (; parents[i] >= 0; i = parents[i]) {
+      int direction = direction(parents[i], i);
+      if (direction != lastDirection) {
+        result[--idx] = i / width;
+        result[--idx] = i % width;
+      }
+      lastDirection = direction;
+    }
+    result[--idx] = i / width;
+    result[--idx] = i % width;
+    return result;
+  }
+}
@@ -18,35 +18,80 @@
 package org.gnikrap.script.ev3api;
 
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import lejos.hardware.BrickFinder;
 import lejos.hardware.lcd.Font;
 import lejos.hardware.lcd.GraphicsLCD;
 import lejos.hardware.lcd.Image;
 
+import org.gnikrap.script.EV3ScriptContext;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
 import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 import org.gnikrap.utils.Utils;
 
 /**
  * Note: Accessing to the screen API create an extra-thread in order to refresh the screen in background.
+ * <p/>
+ * The images loaded, decoded or built are kept in a cache (shared by all the scripts), so that doing it again (typically in a loop) is free.
+ * <p/>
+ * In buffered mode, the drawings are done in an off-screen image and only displayed by {@link #flush()}: no flickering while redrawing the screen,
+ * and only the region modified since the last flush is copied to the screen.
+ * <p/>
+ * The screen can be mirrored in the browser: only the rows changed since the previous capture are sent (see {@link ScreenDiffEncoder}).
  */
 final public class SimpleEV3Screen implements EV3Device {
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3Screen.class);
 
   static final String DATA_FORMAT_RFG = "image/rgf";
 
   public static final int COLOR_BLACK = GraphicsLCD.BLACK; // 0x000000;
   public static final int COLOR_WHITE = GraphicsLCD.WHITE; // 0xFFFFFF;
 
+  static final int MIN_AUTO_FLUSH_PERIOD_IN_MS = 20;
+  static final int MIN_MIRRORING_PERIOD_IN_MS = 100;
+  static final int ANIMATION_PERIOD_IN_MS = 10;
+  private static final ImageCache IMAGE_CACHE = new ImageCache(256 * 1024);
+
   private final GraphicsLCD graphicsLCD;
   private int color;
-
-  public SimpleEV3Screen() {
+  private Font font;
+  // Buffered mode
+  private GraphicsLCD g; // Where the drawings are done: the screen or the off-screen image
+  private Image offScreen;
+  private final DirtyRegion dirty = new DirtyRegion();
+  private ScheduledExecutorService autoFlushExecutor;
+  // Sprites
+  private final List<SimpleEV3Sprite> sprites = new ArrayList<SimpleEV3Sprite>();
+  private ScheduledExecutorService animationExecutor;
+  private ScheduledFuture<?> animationFuture;
+  // Mirroring
+  private final EV3ScriptContext sc;
+  private ScreenDiffEncoder mirrorEncoder;
+  private ScheduledExecutorService mirrorExecutor;
+  private int mirrorBrowserConnections;
+
+  public SimpleEV3Screen(EV3ScriptContext sc) {
+    this.sc = sc;
     graphicsLCD = BrickFinder.getLocal().getGraphicsLCD();
+    g = graphicsLCD;
     resetToDefault();
   }
 
@@ -57,6 +102,19 @@ final public class SimpleEV3Screen implements EV3Device {
 
   @Override
   public void release() {
+    synchronized (this) {
+      for (SimpleEV3Sprite sprite : sprites) {
+        sprite.stop();
+      }
+      sprites.clear();
+      if (animationExecutor != null) {
+        animationExecutor.shutdown();
+        animationExecutor = null;
+        animationFuture = null;
+      }
+      stopMirroring();
+    }
+    setBuffered(false);
     graphicsLCD.clear();
     resetToDefault();
   }
@@ -65,8 +123,134 @@ final public class SimpleEV3Screen implements EV3Device {
    * Clear the screen
    */
   @ScriptApi
-  public void clear() {
-    graphicsLCD.clear();
+  public synchronized void clear() {
+    g.clear();
+    dirty.addAll();
+  }
+
+  /**
+   * Switch to/from the buffered mode. When switching to the buffered mode, the off-screen image is blank. When switching back to the direct mode,
+   * the pending drawings are flushed.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void setBuffered(boolean buffered) {
+    if (buffered == isBuffered()) {
+      return;
+    }
+    if (buffered) {
+      int width = graphicsLCD.getWidth();
+      int height = graphicsLCD.getHeight();
+      offScreen = new Image(width, height, new byte[(width + 7) / 8 * height]);
+      g = offScreen.getGraphics();
+      g.setColor(color);
+      g.setFont(font);
+      dirty.clear(width, height);
+    } else {
+      setAutoFlush(0);
+      flush();
+      g = graphicsLCD;
+      offScreen = null;
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized boolean isBuffered() {
+    return offScreen != null;
+  }
+
+  /**
+   * Display the region of the off-screen image modified since the last flush (in buffered mode only).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void flush() {
+    if ((offScreen != null) && !dirty.isEmpty()) {
+      graphicsLCD.bitBlt(offScreen.getData(), offScreen.getWidth(), offScreen.getHeight(), dirty.minX, dirty.minY, dirty.minX, dirty.minY, //
+          dirty.getWidth(), dirty.getHeight(), GraphicsLCD.ROP_COPY);
+      graphicsLCD.refresh();
+      dirty.clear(offScreen.getWidth(), offScreen.getHeight());
+    }
+  }
+
+  /**
+   * Automatically flush the drawings in the background (in buffered mode only).
+   * 
+   * @param periodInMs the time between 2 flushes (minimum 20ms), 0 to stop the automatic flush.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void setAutoFlush(int periodInMs) {
+    if (autoFlushExecutor != null) {
+      autoFlushExecutor.shutdown();
+      autoFlushExecutor = null;
+    }
+    if ((periodInMs > 0) && isBuffered()) {
+      autoFlushExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ScreenAutoFlush"));
+      int period = Math.max(periodInMs, MIN_AUTO_FLUSH_PERIOD_IN_MS);
+      autoFlushExecutor.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      }, period, period, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Mirror the screen in the browser: the screen is captured periodically and the rows changed since the previous capture are sent to the browser.
+   * 
+   * @param periodInMs the time between 2 captures (minimum 100ms).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void startMirroring(int periodInMs) {
+    stopMirroring();
+    if (sc == null) {
+      return;
+    }
+    mirrorEncoder = new ScreenDiffEncoder(graphicsLCD.getWidth(), graphicsLCD.getHeight());
+    mirrorBrowserConnections = sc.getBrowserConnections();
+    mirrorExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ScreenMirror"));
+    int period = Math.max(periodInMs, MIN_MIRRORING_PERIOD_IN_MS);
+    mirrorExecutor.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          sendMirrorFrame();
+        } catch (Exception ex) {
+          LOGGER.log(Level.WARNING, "Error while mirroring the screen", ex);
+        }
+      }
+    }, 0, period, TimeUnit.MILLISECONDS);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void stopMirroring() {
+    if (mirrorExecutor != null) {
+      mirrorExecutor.shutdown();
+      mirrorExecutor = null;
+      mirrorEncoder = null;
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized boolean isMirroring() {
+    return mirrorExecutor != null;
+  }
+
+  private void sendMirrorFrame() {
+    ByteBuffer message;
+    synchronized (this) { // Don't capture a drawing in progress
+      if (mirrorEncoder == null) {
+        return;
+      }
+      int connections = sc.getBrowserConnections();
+      if (connections != mirrorBrowserConnections) { // The new browser needs all the rows
+        mirrorBrowserConnections = connections;
+        mirrorEncoder.requestKeyframe();
+      }
+      message = mirrorEncoder.encode(graphicsLCD.getDisplay());
+    }
+    if (message != null) {
+      sc.sendBinaryMessage(message);
+    }
   }
 
   /**
@@ -90,16 +274,14 @@ final public class SimpleEV3Screen implements EV3Device {
    */
   @ScriptApi(versionAdded = "0.4.0")
   public int getFontHeight() {
-    Font f = graphicsLCD.getFont();
-    return (f != null ? f.getHeight() : 0);
+    return (font != null ? font.getHeight() : 0);
   }
 
   /**
    * @param size available size: [S, M, L] for [Small, Medium, Large]. Default size is 'M'
    */
   @ScriptApi(versionAdded = "0.4.0")
-  public void setFont(String size) {
-    Font font;
+  public synchronized void setFont(String size) {
     if ("S".equalsIgnoreCase(size)) {
       font = Font.getSmallFont();
     } else if ("L".equalsIgnoreCase(size)) {
@@ -108,6 +290,7 @@ final public class SimpleEV3Screen implements EV3Device {
       font = Font.getDefaultFont();
     }
     graphicsLCD.setFont(font);
+    g.setFont(font);
   }
 
   /**
@@ -116,9 +299,10 @@ final public class SimpleEV3Screen implements EV3Device {
    * @param color The #RRGGBB color as an integer. All the values that are not black will be displayed as white.
    */
   @ScriptApi(versionAdded = "TBD", isIncubating = true)
-  public void setColor(int color) {
+  public synchronized void setColor(int color) {
     this.color = color;
     graphicsLCD.setColor(color);
+    g.setColor(color);
   }
 
   /**
@@ -138,58 +322,133 @@ final public class SimpleEV3Screen implements EV3Device {
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void drawText(Object txt, int x, int y, boolean inverted) {
+  public synchronized void drawText(Object txt, int x, int y, boolean inverted) {
     String textToDraw = String.valueOf(txt);
     if (inverted) {
-      graphicsLCD.drawString(textToDraw, x, y, 0, inverted);
+      g.drawString(textToDraw, x, y, 0, inverted);
     } else {
-      graphicsLCD.drawString(textToDraw, x, y, 0);
+      g.drawString(textToDraw, x, y, 0);
+    }
+    if (font != null) {
+      dirty.add(x, y, font.stringWidth(textToDraw), font.getHeight());
+    } else {
+      dirty.addAll();
     }
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void drawLine(int x1, int y1, int x2, int y2) {
-    graphicsLCD.drawLine(x1, y1, x2, y2);
+  public synchronized void drawLine(int x1, int y1, int x2, int y2) {
+    g.drawLine(x1, y1, x2, y2);
+    dirty.add(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x2 - x1) + 1, Math.abs(y2 - y1) + 1);
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void drawRectangle(int x, int y, int width, int height) {
-    graphicsLCD.drawRect(x, y, width, height);
+  public synchronized void drawRectangle(int x, int y, int width, int height) {
+    g.drawRect(x, y, width, height);
+    dirty.add(x, y, width + 1, height + 1);
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void fillRectangle(int x, int y, int width, int height) {
-    graphicsLCD.fillRect(x, y, width, height);
+  public synchronized void fillRectangle(int x, int y, int width, int height) {
+    g.fillRect(x, y, width, height);
+    dirty.add(x, y, width, height);
   }
 
   @ScriptApi(versionAdded = "0.4.0")
   public void drawCircle(int x, int y, int r) {
     int d = 2 * r;
-    graphicsLCD.drawArc(x - r, y - r, d, d, 0, 360);
+    drawArc(x - r, y - r, d, d, 0, 360);
   }
 
   @ScriptApi(versionAdded = "0.4.0")
   public void fillCircle(int x, int y, int r) {
     int d = 2 * r;
-    graphicsLCD.fillArc(x - r, y - r, d, d, 0, 360);
+    fillArc(x - r, y - r, d, d, 0, 360);
   }
 
   /**
    * TODO: Don't work
    */
   @ScriptApi(versionAdded = "TBD", isIncubating = true)
-  public void drawPoint(int x, int y) {
-    graphicsLCD.setPixel(x, y, color);
+  public synchronized void drawPoint(int x, int y) {
+    g.setPixel(x, y, color);
+    dirty.add(x, y, 1, 1);
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
-    graphicsLCD.drawArc(x, y, width, height, startAngle, arcAngle);
+  public synchronized void drawArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+    g.drawArc(x, y, width, height, startAngle, arcAngle);
+    dirty.add(x, y, width + 1, height + 1);
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
-    graphicsLCD.fillArc(x, y, width, height, startAngle, arcAngle);
+  public synchronized void fillArc(int x, int y, int width, int height, int startAngle, int arcAngle) {
+    g.fillArc(x, y, width, height, startAngle, arcAngle);
+    dirty.add(x, y, width + 1, height + 1);
+  }
+
+  /**
+   * Execute several drawings with only one call. The commands are given in a flat array: the name of the command followed by its parameters (the
+   * parameters of the function with the same name), eg.: <code>["clear", "drawText", "Hello", 0, 0, "drawLine", 0, 10, 177, 10]</code>.<br/>
+   * Available commands: clear, drawText, drawLine, drawRectangle, fillRectangle, drawCircle, fillCircle, drawPoint, drawArc, fillArc, drawImage.
+   * In buffered mode, the screen is not flushed.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void draw(Object... commands) throws EV3ScriptException {
+    if (commands == null) {
+      return;
+    }
+    int i = 0;
+    while (i < commands.length) {
+      int start = i;
+      String command = String.valueOf(commands[i++]);
+      try {
+        switch (command) {
+        case "clear":
+          clear();
+          break;
+        case "drawText":
+          drawText(commands[i++], toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "drawLine":
+          drawLine(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "drawRectangle":
+          drawRectangle(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "fillRectangle":
+          fillRectangle(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "drawCircle":
+          drawCircle(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "fillCircle":
+          fillCircle(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "drawPoint":
+          drawPoint(toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "drawArc":
+          drawArc(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "fillArc":
+          fillArc(toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        case "drawImage":
+          drawImage((SimpleEV3Image) commands[i++], toInt(commands[i++]), toInt(commands[i++]));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown command");
+        }
+      } catch (RuntimeException ex) { // Unknown command, missing or bad parameters
+        throw new EV3ScriptException(EV3ScriptException.INVALID_DRAW_COMMAND, MapBuilder.buildHashMap("command", command).put("index", String.valueOf(start))
+            .build());
+      }
+    }
+  }
+
+  private static int toInt(Object value) {
+    return ((Number) value).intValue();
   }
 
   /**
@@ -209,14 +468,23 @@ final public class SimpleEV3Screen implements EV3Device {
       throw new EV3ScriptException(EV3ScriptException.CANT_READ_FILE, MapBuilder.buildHashMap("filename", String.valueOf(name)).put("error", "name is null").build());
     }
 
-    try (DataInputStream in = new DataInputStream(new FileInputStream(name))) {
+    File file = new File(name);
+    Object key = Arrays.asList("file", file.getAbsolutePath(), Long.valueOf(file.lastModified()), Long.valueOf(file.length()));
+    SimpleEV3Image result = IMAGE_CACHE.get(key);
+    if (result != null) {
+      return result;
+    }
+
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
       int width = in.readUnsignedByte();
       int height = in.readUnsignedByte();
       byte[] ev3ImageData = new byte[(width + 7) / 8 * height]; // + 7 in order to have a full number of bytes
       if (in.read(ev3ImageData) != ev3ImageData.length) {
         throw new EV3ScriptException(EV3ScriptException.IMAGE_CORRUPTED, MapBuilder.buildHashMap("filename", name).build());
       }
-      return new SimpleEV3Image(new Image(width, height, ev3ImageData));
+      result = new SimpleEV3Image(new Image(width, height, ev3ImageData));
+      IMAGE_CACHE.put(key, 2 * file.getAbsolutePath().length(), result);
+      return result;
     } catch (IOException e) {
       throw new EV3ScriptException(EV3ScriptException.CANT_READ_FILE, MapBuilder.buildHashMap("filename", name).put("error", e.toString()).build());
     }
@@ -231,10 +499,17 @@ final public class SimpleEV3Screen implements EV3Device {
       throw new EV3ScriptException(EV3ScriptException.CANT_DECODE_IMAGE, MapBuilder.buildHashMap("reason", "data is null").build());
     }
 
+    SimpleEV3Image result = IMAGE_CACHE.get(data);
+    if (result != null) {
+      return result;
+    }
+
     try {
       Utils.Base64DataURI dataURI = Utils.decodeBase64DataURI(data);
       if (DATA_FORMAT_RFG.equals(dataURI.getMimeType())) {
-        return decodeRgfImage(dataURI.getData());
+        result = decodeRgfImage(dataURI.getData());
+        IMAGE_CACHE.put(data, 2 * data.length(), result);
+        return result;
       } else {
         throw new EV3ScriptException(EV3ScriptException.CANT_DECODE_IMAGE_INVALID_TYPE, MapBuilder.buildHashMap("type", dataURI.getMimeType()).build());
       }
@@ -276,6 +551,11 @@ final public class SimpleEV3Screen implements EV3Device {
     } else {
       throw new EV3ScriptException(EV3ScriptException.BAD_IMAGE_DATA, Collections.<String, String> emptyMap());
     }
+    Object key = Arrays.asList(data.clone());
+    SimpleEV3Image result = IMAGE_CACHE.get(key);
+    if (result != null) {
+      return result;
+    }
 
     // Build image
     byte[] ev3ImageData = new byte[(width + 7) / 8 * height]; // + 7 in order to have a full number of bytes
@@ -300,13 +580,118 @@ final public class SimpleEV3Screen implements EV3Device {
       }
     }
 
-    return new SimpleEV3Image(new Image(width, height, ev3ImageData));
+    result = new SimpleEV3Image(new Image(width, height, ev3ImageData));
+    IMAGE_CACHE.put(key, 2 * width * height, result);
+    return result;
   }
 
   @ScriptApi(versionAdded = "0.4.0")
-  public void drawImage(SimpleEV3Image img, int x, int y) {
+  public synchronized void drawImage(SimpleEV3Image img, int x, int y) {
     if (img != null) {
-      graphicsLCD.drawImage(img.getImage(), x, y, 0);
+      g.drawImage(img.getImage(), x, y, 0);
+      dirty.add(x, y, img.getWidth(), img.getHeight());
+    }
+  }
+
+  /**
+   * Erase (fill in white) the given region.
+   */
+  synchronized void erase(int x, int y, int width, int height) {
+    g.setColor(COLOR_WHITE);
+    fillRectangle(x, y, width, height);
+    g.setColor(color);
+  }
+
+  /**
+   * @return a new sprite with the given frames (see {@link SimpleEV3Sprite}), the sprite is not displayed until {@link SimpleEV3Sprite#play(int, boolean)}
+   *         or {@link SimpleEV3Sprite#show()} is called.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Sprite newSprite(SimpleEV3Image... frames) throws EV3ScriptException {
+    if ((frames == null) || (frames.length == 0) || Arrays.asList(frames).contains(null)) {
+      throw new EV3ScriptException(EV3ScriptException.BAD_IMAGE_DATA, Collections.<String, String> emptyMap());
+    }
+    return new SimpleEV3Sprite(this, frames.clone());
+  }
+
+  /**
+   * Called by the sprite when it starts playing.
+   */
+  synchronized void startAnimation(SimpleEV3Sprite sprite) {
+    if (!sprites.contains(sprite)) {
+      sprites.add(sprite);
+    }
+    if (animationFuture == null) {
+      if (animationExecutor == null) {
+        animationExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ScreenAnimation"));
+      }
+      animationFuture = animationExecutor.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          animate(System.currentTimeMillis());
+        }
+      }, ANIMATION_PERIOD_IN_MS, ANIMATION_PERIOD_IN_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * One step of animation: display the next frame of the sprites that need it.
+   */
+  synchronized void animate(long now) {
+    boolean drawn = false;
+    for (Iterator<SimpleEV3Sprite> it = sprites.iterator(); it.hasNext();) {
+      SimpleEV3Sprite sprite = it.next();
+      drawn |= sprite.animate(now);
+      if (!sprite.isPlaying()) {
+        it.remove();
+      }
+    }
+    if (drawn) {
+      flush();
+    }
+    if (sprites.isEmpty() && (animationFuture != null)) {
+      animationFuture.cancel(false);
+      animationFuture = null;
+    }
+  }
+
+  /**
+   * The region modified since the last flush.
+   */
+  static final class DirtyRegion {
+    int minX, minY, maxX, maxY; // max are exclusive
+    private int width, height;
+
+    void clear(int width, int height) {
+      this.width = width;
+      this.height = height;
+      minX = width;
+      minY = height;
+      maxX = 0;
+      maxY = 0;
+    }
+
+    void addAll() {
+      add(0, 0, width, height);
+    }
+
+    void add(int x, int y, int w, int h) {
+      minX = Math.max(0, Math.min(minX, x));
+      minY = Math.max(0, Math.min(minY, y));
+      maxX = Math.min(width, Math.max(maxX, x + w));
+      maxY = Math.min(height, Math.max(maxY, y + h));
+    }
+
+    boolean isEmpty() {
+      return (minX >= maxX) || (minY >= maxY);
+    }
+
+    int getWidth() {
+      return maxX - minX;
+    }
+
+    int getHeight() {
+      return maxY - minY;
     }
   }
 
@@ -0,0 +1,428 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.gnikrap.utils.MapBuilder;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * Read a set of device values with only one call from the script (each call from the script to Java has a cost).<br/>
+ * The values are declared once (with a name), then each {@link #read()} reads each device once (a value declared with several names is read once)
+ * and stores all the values in reused arrays: the integer values (eg. tacho count) are kept in an int array (a float can't represent exactly the
+ * integers greater than 2^24), all the values are also available in a float array. The names are only used to retrieve (once) the index of the
+ * values in the arrays.
+ * 
+ * <pre>
+ * var snapshot = ev3.getBrick().newSnapshot().addTachoCount("left", leftMotor).addReflectedLight("light", colorSensor);
+ * var values = snapshot.getIntValues(), light = snapshot.getIndex("light");
+ * while(ev3.isOk()) {
+ *   snapshot.read();
+ *   var l = values[light];
+ *   ...
+ * }
+ * </pre>
+ */
+public final class SimpleEV3Snapshot {
+
+  private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+  private String[] names = new String[0];
+  private DeviceReader[] valueReaders = new DeviceReader[0];
+  private int[] valueKinds = new int[0];
+  private DeviceReader[] devices = new DeviceReader[0];
+  private float[] values = new float[0];
+  private int[] intValues = new int[0];
+  private long timestamp;
+
+  SimpleEV3Snapshot() {
+    // Built by SimpleEV3Brick
+  }
+
+  // //////////////////////////////////////////////////////////////////////////
+  // Values declaration
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addTachoCount(String name, SimpleEV3Motor motor) {
+    return add(name, getMotorReader(motor), MotorReader.TACHO_COUNT);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addSpeed(String name, SimpleEV3Motor motor) {
+    return add(name, getMotorReader(motor), MotorReader.SPEED);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addIsMoving(String name, SimpleEV3Motor motor) {
+    return add(name, getMotorReader(motor), MotorReader.IS_MOVING);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addReflectedLight(String name, SimpleEV3ColorSensor sensor) {
+    return add(name, getColorReader(sensor), ColorReader.REFLECTED_LIGHT);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addAmbientLight(String name, SimpleEV3ColorSensor sensor) {
+    return add(name, getColorReader(sensor), ColorReader.AMBIENT_LIGHT);
+  }
+
+  /**
+   * The value is the color code (see {@link SimpleEV3ColorSensor.ColorResult#getValue()}).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addColor(String name, SimpleEV3ColorSensor sensor) {
+    return add(name, getColorReader(sensor), ColorReader.COLOR);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addDistance(String name, SimpleEV3IRSensor sensor) {
+    return add(name, getIRReader(sensor), IRReader.DISTANCE);
+  }
+
+  /**
+   * The value is the remote command code (see {@link SimpleEV3IRSensor.RemoteCommandResult#getValue()}).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addRemoteCommand(String name, SimpleEV3IRSensor sensor) {
+    return add(name, getIRReader(sensor), IRReader.REMOTE_COMMAND);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addDistance(String name, final SimpleEV3UltrasonicSensor sensor) {
+    DeviceReader reader = findReader(sensor);
+    if (reader == null) {
+      reader = new DeviceReader(sensor, 1, 1) {
+        @Override
+        void fetch() {
+          intSample[0] = sensor.getDistance();
+        }
+      };
+    }
+    return add(name, reader, 0);
+  }
+
+  /**
+   * The angle and the rate are read with only one sensor access when both are declared.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addAngle(String name, SimpleEV3GyroSensor sensor) {
+    return add(name, getGyroReader(sensor), GyroReader.ANGLE);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addRate(String name, SimpleEV3GyroSensor sensor) {
+    return add(name, getGyroReader(sensor), GyroReader.RATE);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot addIsPushed(String name, final SimpleEV3TouchSensor sensor) {
+    DeviceReader reader = findReader(sensor);
+    if (reader == null) {
+      reader = new DeviceReader(sensor, 1, 1) {
+        @Override
+        void fetch() {
+          intSample[0] = (sensor.isPushed() ? 1 : 0);
+        }
+      };
+    }
+    return add(name, reader, 0);
+  }
+
+  private DeviceReader findReader(Object device) {
+    for (DeviceReader r : devices) {
+      if (r.device == device) {
+        return r;
+      }
+    }
+    return null;
+  }
+
+  private DeviceReader getMotorReader(SimpleEV3Motor motor) {
+    DeviceReader result = findReader(motor);
+    return (result != null ? result : new MotorReader(motor));
+  }
+
+  private DeviceReader getColorReader(SimpleEV3ColorSensor sensor) {
+    DeviceReader result = findReader(sensor);
+    return (result != null ? result : new ColorReader(sensor));
+  }
+
+  private DeviceReader getIRReader(SimpleEV3IRSensor sensor) {
+    DeviceReader result = findReader(sensor);
+    return (result != null ? result : new IRReader(sensor));
+  }
+
+  private DeviceReader getGyroReader(SimpleEV3GyroSensor sensor) {
+    DeviceReader result = findReader(sensor);
+    return (result != null ? result : new GyroReader(sensor));
+  }
+
+  /**
+   * Add (or replace if the name is already used) a value.
+   */
+  SimpleEV3Snapshot add(String name, DeviceReader reader, int kind) {
+    Integer index = indexes.get(name);
+    int i;
+    if (index != null) {
+      i = index.intValue();
+    } else {
+      i = names.length;
+      indexes.put(name, Integer.valueOf(i));
+      names = Arrays.copyOf(names, i + 1);
+      names[i] = name;
+      valueReaders = Arrays.copyOf(valueReaders, i + 1);
+      valueKinds = Arrays.copyOf(valueKinds, i + 1);
+      values = Arrays.copyOf(values, i + 1);
+      intValues = Arrays.copyOf(intValues, i + 1);
+    }
+    valueReaders[i] = reader;
+    valueKinds[i] = kind;
+    updateDevices();
+    return this;
+  }
+
+  /**
+   * Compute the devices to read and the values needed for each device (a replaced value can be no more needed).
+   */
+  private void updateDevices() {
+    List<DeviceReader> temp = new ArrayList<DeviceReader>();
+    for (DeviceReader r : valueReaders) {
+      r.needed = 0;
+      if (!temp.contains(r)) {
+        temp.add(r);
+      }
+    }
+    for (int i = 0; i < valueReaders.length; i++) {
+      valueReaders[i].needed |= (1 << valueKinds[i]);
+    }
+    devices = temp.toArray(new DeviceReader[temp.size()]);
+  }
+
+  // //////////////////////////////////////////////////////////////////////////
+  // Reading
+
+  /**
+   * Read all the declared values: each device is read once.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Snapshot read() {
+    timestamp = System.currentTimeMillis();
+    for (DeviceReader d : devices) {
+      d.fetch();
+    }
+    DeviceReader[] r = valueReaders;
+    int[] k = valueKinds;
+    float[] v = values;
+    int[] iv = intValues;
+    for (int i = 0; i < r.length; i++) {
+      if (r[i].isInt(k[i])) {
+        iv[i] = r[i].intSample[k[i]];
+        v[i] = iv[i];
+      } else {
+        v[i] = r[i].sample[k[i]];
+        iv[i] = (int) v[i];
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @return the time (in ms, see {@link System#currentTimeMillis()}) of the last {@link #read()}, 0 if never read.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  /**
+   * @return the index of the value (declaration order), usable with {@link #getValues()} and {@link #getIntValues()}. To be called once, before the
+   *         loop reading the values.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getIndex(String name) throws EV3ScriptException {
+    Integer index = indexes.get(name);
+    if (index == null) {
+      throw new EV3ScriptException(EV3ScriptException.INVALID_SNAPSHOT_VALUE_NAME, MapBuilder.buildHashMap("name", String.valueOf(name)).build());
+    }
+    return index.intValue();
+  }
+
+  /**
+   * @return all the values (in the declaration order). Note: The array is reused (updated) by the next {@link #read()}, but a new array is created
+   *         when a value is declared.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public float[] getValues() {
+    return values;
+  }
+
+  /**
+   * @return all the values as integers (in the declaration order), exact for the integer values (the decimal values are truncated). Note: The
+   *         array is reused (updated) by the next {@link #read()}, but a new array is created when a value is declared.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int[] getIntValues() {
+    return intValues;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder("{timestamp: ").append(timestamp);
+    for (int i = 0; i < names.length; i++) {
+      sb.append(", ").append(names[i]).append(": ");
+      if (valueReaders[i].isInt(valueKinds[i])) {
+        sb.append(intValues[i]);
+      } else {
+        sb.append(values[i]);
+      }
+    }
+    return sb.append("}").toString();
+  }
+
+  /**
+   * Read the values of one device, each kind of value (eg. tacho count) is stored at its index in {@link #sample} (or {@link #intSample} for the
+   * integer kinds). Only the needed kinds should be read.
+   */
+  abstract static class DeviceReader {
+    final Object device;
+    final float[] sample;
+    final int[] intSample;
+    private final int intKinds; // One bit by kind
+    int needed; // One bit by kind
+
+    DeviceReader(Object device, int kindCount, int intKinds) {
+      this.device = device;
+      this.sample = new float[kindCount];
+      this.intSample = new int[kindCount];
+      this.intKinds = intKinds;
+    }
+
+    final boolean isNeeded(int kind) {
+      return (needed & (1 << kind)) != 0;
+    }
+
+    final boolean isInt(int kind) {
+      return (intKinds & (1 << kind)) != 0;
+    }
+
+    abstract void fetch();
+  }
+
+  static final class MotorReader extends DeviceReader {
+    static final int TACHO_COUNT = 0;
+    static final int SPEED = 1;
+    static final int IS_MOVING = 2;
+    private final SimpleEV3Motor motor;
+
+    MotorReader(SimpleEV3Motor motor) {
+      super(motor, 3, (1 << TACHO_COUNT) | (1 << IS_MOVING));
+      this.motor = motor;
+    }
+
+    @Override
+    void fetch() {
+      if (isNeeded(TACHO_COUNT)) {
+        intSample[TACHO_COUNT] = motor.getTachoCount();
+      }
+      if (isNeeded(SPEED)) {
+        sample[SPEED] = motor.getSpeed();
+      }
+      if (isNeeded(IS_MOVING)) {
+        intSample[IS_MOVING] = (motor.isMoving() ? 1 : 0);
+      }
+    }
+  }
+
+  static final class ColorReader extends DeviceReader {
+    static final int REFLECTED_LIGHT = 0;
+    static final int AMBIENT_LIGHT = 1;
+    static final int COLOR = 2;
+    private final SimpleEV3ColorSensor sensor;
+
+    ColorReader(SimpleEV3ColorSensor sensor) {
+      super(sensor, 3, 7);
+      this.sensor = sensor;
+    }
+
+    @Override
+    void fetch() {
+      if (isNeeded(REFLECTED_LIGHT)) {
+        intSample[REFLECTED_LIGHT] = sensor.getReflectedLight();
+      }
+      if (isNeeded(AMBIENT_LIGHT)) {
+        intSample[AMBIENT_LIGHT] = sensor.getAmbientLight();
+      }
+      if (isNeeded(COLOR)) {
+        intSample[COLOR] = sensor.getColor().getValue();
+      }
+    }
+  }
+
+  static final class IRReader extends DeviceReader {
+    static final int DISTANCE = 0;
+    static final int REMOTE_COMMAND = 1;
+    private final SimpleEV3IRSensor sensor;
+
+    IRReader(SimpleEV3IRSensor sensor) {
+      super(sensor, 2, 1 << REMOTE_COMMAND);
+      this.sensor = sensor;
+    }
+
+    @Override
+    void fetch() {
+      if (isNeeded(DISTANCE)) {
+        sample[DISTANCE] = sensor.getDistance();
+      }
+      if (isNeeded(REMOTE_COMMAND)) {
+        intSample[REMOTE_COMMAND] = sensor.getRemoteCommand().getValue();
+      }
+    }
+  }
+
+  static final class GyroReader extends DeviceReader {
+    static final int ANGLE = 0;
+    static final int RATE = 1;
+    private final SimpleEV3GyroSensor sensor;
+
+    GyroReader(SimpleEV3GyroSensor sensor) {
+      super(sensor, 2, 0);
+      this.sensor = sensor;
+    }
+
+    @Override
+    void fetch() {
+      if (isNeeded(ANGLE) && isNeeded(RATE) && !sensor.isIntegrating()) {
+        float[] angleAndRate = sensor.getAngleAndRate(); // Only one sensor access
+        sample[ANGLE] = angleAndRate[0];
+        sample[RATE] = angleAndRate[1];
+        return;
+      }
+      if (isNeeded(ANGLE)) {
+        sample[ANGLE] = sensor.getAngle();
+      }
+      if (isNeeded(RATE)) {
+        sample[RATE] = sensor.getRate();
+      }
+    }
+  }
+}
@@ -17,28 +17,74 @@
  */
 package org.gnikrap.script.ev3api;
 
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
 import lejos.hardware.Audio;
 import lejos.hardware.BrickFinder;
 import lejos.hardware.Sounds;
 
+import org.gnikrap.httphandler.FilesAccessObject;
+import org.gnikrap.utils.DaemonThreadFactory;
+import org.gnikrap.utils.LoggerUtils;
 import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 /**
  * Enable the play sounds with the HW.
+ * <p/>
+ * The melodies are played in the background by a sequencer thread (one melody after the other, with a bounded queue of melodies waiting).
+ * <p/>
+ * The WAV files are played in the background, streamed chunk by chunk from the sounds folder (the memory used doesn't depend on the file length).
  */
 final public class SimpleEV3Sound implements EV3Device {
+  private static final Logger LOGGER = LoggerUtils.getLogger(SimpleEV3Sound.class);
+
+  static final int MAX_QUEUED_MELODIES = 16;
+  /** Number of samples sent to the audio device at once */
+  static final int FILE_CHUNK_SIZE = 1024;
 
   private final Audio audio;
+  private final String soundsFolder;
   private int volume;
+  // File player, guarded by this
+  private FilePlayer filePlayer;
+  // Sequencer
+  private ThreadPoolExecutor sequencer;
+  private final AtomicInteger playing = new AtomicInteger(); // Number of melodies queued or in progress
+  private volatile int generation; // Incremented on stop: the melodies of the previous generations are cancelled
+  private volatile float tempoCoef = 1; // Applied on the durations
 
-  public SimpleEV3Sound() {
+  /**
+   * @param soundsFolder the folder of the files played by {@link #playFile(String)}
+   */
+  public SimpleEV3Sound(String soundsFolder) {
     audio = BrickFinder.getLocal().getAudio();
+    this.soundsFolder = soundsFolder;
   }
 
   @Override
   public void release() {
-    // Does nothing, Sound is a static API within lejos
+    // Sound is a static API within lejos, just stop the melodies and the file
+    stopMelodies();
+    stopFile();
+    synchronized (this) {
+      if (sequencer != null) {
+        sequencer.shutdown();
+        sequencer = null;
+      }
+    }
+    tempoCoef = 1;
   }
 
   /**
@@ -72,16 +118,108 @@ final public class SimpleEV3Sound implements EV3Device {
   // audio.playTone(frequency, durationInMS, vol);
   // }
 
-  // Currently not part of the ScriptAPI
+  /**
+   * Play the WAV file (in the sounds folder) in the background with the volume defined with {{@link #setVolume(int)}. This call immediately return.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
   public void playFile(String filename) throws EV3ScriptException {
     playFile(filename, volume);
   }
 
-  // Currently not part of the ScriptAPI
-  public void playFile(String filename, int volume) throws EV3ScriptException {
-    // TODO: implement
-    // Sound.playSample(file, vol)
-    throw new EV3ScriptException(EV3ScriptException.API_NOT_IMPLEMENTED, MapBuilder.buildHashMap("function", "playFile()").build());
+  /**
+   * Play the WAV file (in the sounds folder) in the background, the file in progress (if any) is stopped. This call immediately return.<br/>
+   * Supported files: uncompressed PCM, 8 or 16 bits, mono or stereo (played in 8 bits mono).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void playFile(String filename, int volume) throws EV3ScriptException {
+    stopFile();
+    WavStreamDecoder decoder;
+    InputStream in = null;
+    try {
+      FilesAccessObject fao = new FilesAccessObject(soundsFolder);
+      in = new BufferedInputStream(new FileInputStream(fao.getFile(filename, true)));
+      decoder = new WavStreamDecoder(in);
+    } catch (IOException ioe) {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException ignore) {
+          // Nothing more to do, already in error
+        }
+      }
+      throw new EV3ScriptException(EV3ScriptException.CANT_READ_FILE, MapBuilder.buildHashMap("filename", String.valueOf(filename)).put("error", ioe.toString())
+          .build());
+    }
+    filePlayer = new FilePlayer(decoder, volume);
+    Thread t = new Thread(filePlayer, "SoundFilePlayer");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /**
+   * Stop the file in progress (if any).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized void stopFile() {
+    if (filePlayer != null) {
+      filePlayer.stop();
+      filePlayer = null;
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public synchronized boolean isFilePlaying() {
+    return (filePlayer != null) && filePlayer.isPlaying();
+  }
+
+  /**
+   * Stream the samples to the audio device chunk by chunk.
+   */
+  final class FilePlayer implements Runnable {
+    private final WavStreamDecoder decoder;
+    private final int volume;
+    private volatile boolean playing = true;
+
+    FilePlayer(WavStreamDecoder decoder, int volume) {
+      this.decoder = decoder;
+      this.volume = volume;
+    }
+
+    void stop() {
+      playing = false;
+    }
+
+    boolean isPlaying() {
+      return playing;
+    }
+
+    @Override
+    public void run() {
+      byte[] chunk = new byte[FILE_CHUNK_SIZE];
+      try {
+        int count;
+        while (playing && ((count = decoder.read(chunk)) > 0)) {
+          int offset = 0;
+          while (playing && (offset < count)) {
+            int queued = audio.playSample(chunk, offset, count - offset, decoder.getSampleRate(), volume);
+            if (queued > 0) {
+              offset += queued;
+            } else {
+              Thread.sleep(10); // Audio device buffer full
+            }
+          }
+        }
+      } catch (Exception ex) {
+        LOGGER.log(Level.WARNING, "Error while playing a sound file", ex);
+      } finally {
+        playing = false;
+        try {
+          decoder.close();
+        } catch (IOException ignore) {
+          // Nothing more to do
+        }
+      }
+    }
   }
 
   /**
@@ -115,6 +253,110 @@ final public class SimpleEV3Sound implements EV3Device {
     }
   }
 
+  /**
+   * Compile a melody once, in order to play it (several times) with {@link #playMelody(SimpleEV3Melody)}.
+   * 
+   * @param notes the notes (see {@link #playNote(String, float)}), "-" for a rest
+   * @param durationInMS the duration of each note
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Melody newMelody(String[] notes, float durationInMS) throws EV3ScriptException {
+    return SimpleEV3Melody.compile(notes, new float[] { durationInMS });
+  }
+
+  /**
+   * @param durationsInMS the duration of each note
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public SimpleEV3Melody newMelody(String[] notes, float[] durationsInMS) throws EV3ScriptException {
+    return SimpleEV3Melody.compile(notes, durationsInMS);
+  }
+
+  /**
+   * Play the melody in the background (after the melodies already queued). This call immediately return.
+   * 
+   * @return false if the melody can't be queued (too many melodies waiting).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean playMelody(final SimpleEV3Melody melody) {
+    if (melody == null) {
+      return false;
+    }
+    final int melodyGeneration = generation;
+    playing.incrementAndGet();
+    try {
+      getSequencer().execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            play(melody, melodyGeneration);
+          } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error while playing a melody", ex);
+          } finally {
+            playing.decrementAndGet();
+          }
+        }
+      });
+      return true;
+    } catch (RejectedExecutionException ree) {
+      playing.decrementAndGet();
+      return false;
+    }
+  }
+
+  /**
+   * Stop the melody in progress (at the end of the current note) and remove the melodies waiting.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopMelodies() {
+    generation++;
+    synchronized (this) {
+      if (sequencer != null) {
+        playing.addAndGet(-sequencer.getQueue().drainTo(new ArrayList<Runnable>()));
+      }
+    }
+  }
+
+  /**
+   * @return true if a melody is in progress or waiting.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isMelodyPlaying() {
+    return playing.get() > 0;
+  }
+
+  /**
+   * @param percent the speed of the melodies: 100 is the normal speed, 200 is twice faster (applied immediately, even on the melody in progress).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setTempoPercent(int percent) {
+    tempoCoef = 100f / Math.min(Math.max(percent, 10), 1000);
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getTempoPercent() {
+    return Math.round(100 / tempoCoef);
+  }
+
+  private synchronized ThreadPoolExecutor getSequencer() {
+    if (sequencer == null) {
+      sequencer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_MELODIES), new DaemonThreadFactory("SoundSequencer"));
+    }
+    return sequencer;
+  }
+
+  private void play(SimpleEV3Melody melody, int melodyGeneration) throws InterruptedException {
+    for (int i = 0; (i < melody.getNoteCount()) && (melodyGeneration == generation); i++) {
+      int duration = (int) (melody.getDuration(i) * tempoCoef);
+      int frequency = melody.getFrequency(i);
+      if (frequency > 0) {
+        audio.playNote(Sounds.PIANO, frequency, duration);
+      } else {
+        Thread.sleep(duration);
+      }
+    }
+  }
+
   // Data on notes from http://fr.wikipedia.org/wiki/Fr%C3%A9quences_des_touches_du_piano
 
   static final float[] OCTAVE3 = {
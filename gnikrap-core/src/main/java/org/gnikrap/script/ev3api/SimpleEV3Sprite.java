@@ -0,0 +1,196 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.gnikrap.script.ev3api.SimpleEV3Screen.SimpleEV3Image;
+import org.gnikrap.utils.ScriptApi;
+
+/**
+ * A sprite: a sequence of images (frames) displayed at a given position on the screen.<br/>
+ * While playing, the frames are displayed at a fixed frame rate by the screen animation thread (the script thread is free). In buffered mode, the
+ * screen is flushed each time a frame is displayed.
+ * <p/>
+ * Note: The sprite state is guarded by the screen lock.
+ */
+public final class SimpleEV3Sprite {
+
+  private final SimpleEV3Screen screen;
+  private final SimpleEV3Image[] frames;
+  private int x, y;
+  private int frameIndex;
+  private boolean visible;
+  // Animation
+  private boolean playing;
+  private boolean loop;
+  private int periodInMs;
+  private long nextFrameTime;
+  // Region where the last frame was drawn (in order to erase it)
+  private int drawnX, drawnY, drawnWidth, drawnHeight;
+
+  SimpleEV3Sprite(SimpleEV3Screen screen, SimpleEV3Image[] frames) {
+    this.screen = screen;
+    this.frames = frames;
+  }
+
+  /**
+   * @return the number of frames of the sprite.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getFrameCount() {
+    return frames.length;
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public int getFrame() {
+    synchronized (screen) {
+      return frameIndex;
+    }
+  }
+
+  /**
+   * Select the frame to display (redrawn immediately if the sprite is visible).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void setFrame(int index) {
+    synchronized (screen) {
+      frameIndex = Math.min(Math.max(index, 0), frames.length - 1);
+      if (visible) {
+        draw();
+      }
+    }
+  }
+
+  /**
+   * Move the sprite, x and y are the top left corner of the frames (redrawn immediately if the sprite is visible).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void moveTo(int x, int y) {
+    synchronized (screen) {
+      this.x = x;
+      this.y = y;
+      if (visible) {
+        draw();
+      }
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void show() {
+    synchronized (screen) {
+      visible = true;
+      draw();
+    }
+  }
+
+  /**
+   * Erase the sprite from the screen and stop playing.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void hide() {
+    synchronized (screen) {
+      playing = false;
+      visible = false;
+      erase();
+    }
+  }
+
+  /**
+   * Display the sprite and play the frames in the background.
+   * 
+   * @param framesPerSecond the frame rate
+   * @param loop true to restart at the first frame once the last frame is displayed, false to stop on the last frame
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void play(int framesPerSecond, boolean loop) {
+    synchronized (screen) {
+      this.loop = loop;
+      periodInMs = Math.max(1000 / Math.max(framesPerSecond, 1), SimpleEV3Screen.ANIMATION_PERIOD_IN_MS);
+      nextFrameTime = System.currentTimeMillis() + periodInMs;
+      playing = true;
+      show();
+      screen.startAnimation(this);
+    }
+  }
+
+  /**
+   * Stop playing, the current frame stay displayed.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stop() {
+    synchronized (screen) {
+      playing = false;
+    }
+  }
+
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public boolean isPlaying() {
+    synchronized (screen) {
+      return playing;
+    }
+  }
+
+  /**
+   * Display the next frame if it is time to, called by the screen animation thread (with the screen lock).
+   * 
+   * @return true if a frame has been drawn.
+   */
+  boolean animate(long now) {
+    if (!playing || (now < nextFrameTime)) {
+      return false;
+    }
+    if (frameIndex + 1 < frames.length) {
+      frameIndex++;
+    } else if (loop) {
+      frameIndex = 0;
+    } else {
+      playing = false;
+      return false;
+    }
+    nextFrameTime += periodInMs;
+    if (nextFrameTime <= now) { // Late (the screen was busy): don't try to catch up
+      nextFrameTime = now + periodInMs;
+    }
+    draw();
+    return true;
+  }
+
+  private void draw() {
+    SimpleEV3Image frame = frames[frameIndex];
+    if ((drawnX != x) || (drawnY != y) || (drawnWidth != frame.getWidth()) || (drawnHeight != frame.getHeight())) {
+      erase();
+    }
+    screen.drawImage(frame, x, y);
+    drawnX = x;
+    drawnY = y;
+    drawnWidth = frame.getWidth();
+    drawnHeight = frame.getHeight();
+  }
+
+  private void erase() {
+    if ((drawnWidth > 0) && (drawnHeight > 0)) {
+      screen.erase(drawnX, drawnY, drawnWidth, drawnHeight);
+      drawnWidth = 0;
+      drawnHeight = 0;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "{frame: " + getFrame() + ", frameCount: " + getFrameCount() + ", isPlaying: " + isPlaying() + "}";
+  }
+}
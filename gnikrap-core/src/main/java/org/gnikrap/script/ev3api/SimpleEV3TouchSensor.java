@@ -20,7 +20,9 @@ package org.gnikrap.script.ev3api;
 import lejos.hardware.port.Port;
 import lejos.hardware.sensor.EV3TouchSensor;
 import lejos.hardware.sensor.SensorMode;
+import lejos.robotics.SampleProvider;
 
+import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 /**
@@ -32,6 +34,7 @@ final public class SimpleEV3TouchSensor implements EV3Device {
 
   private final EV3TouchSensor delegate;
   private final SensorMonitor logger;
+  private final SensorSampler sampler;
   // Touch mode
   private final SensorMode touchMode;
   private final float[] touchSample;
@@ -39,6 +42,7 @@ final public class SimpleEV3TouchSensor implements EV3Device {
   public SimpleEV3TouchSensor(Port port) {
     delegate = new EV3TouchSensor(port);
     logger = SensorMonitorFactory.getLogger(port);
+    sampler = new SensorSampler(port.getName());
     // Touch mode
     touchMode = delegate.getTouchMode();
     touchSample = new float[touchMode.sampleSize()];
@@ -46,12 +50,47 @@ final public class SimpleEV3TouchSensor implements EV3Device {
 
   @Override
   public void release() {
+    sampler.release();
     delegate.close();
   }
 
+  /**
+   * Start (or restart with the new period) the background sampling of the mode: the reading of this mode will then return immediately the latest sample.
+   * 
+   * @param mode in [Touch]
+   * @param periodInMs the sampling period
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startSampling(String mode, int periodInMs) throws EV3ScriptException {
+    sampler.start(getMode(mode), periodInMs);
+  }
+
+  /**
+   * Stop the background sampling of the mode: the reading of this mode will then be done on demand (the default).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopSampling(String mode) throws EV3ScriptException {
+    sampler.stop(getMode(mode));
+  }
+
+  /**
+   * @return the age (in ms) of the value that will be returned while reading the mode, 0 if the mode isn't sampled in background.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public long getSampleAge(String mode) throws EV3ScriptException {
+    return sampler.getAge(getMode(mode));
+  }
+
+  private SampleProvider getMode(String mode) throws EV3ScriptException {
+    if (EV3Constants.TOUCH_SENSOR_TOUCH.equals(mode)) {
+      return touchMode;
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_MODE, MapBuilder.buildHashMap("mode", String.valueOf(mode)).put("modes", "Touch").build());
+  }
+
   @ScriptApi
   public boolean isPushed() {
-    touchMode.fetchSample(touchSample, 0);
+    sampler.fetchSample(touchMode, touchSample);
     float result = touchSample[0];
     logger.log(result);
     return (result > 0.99);
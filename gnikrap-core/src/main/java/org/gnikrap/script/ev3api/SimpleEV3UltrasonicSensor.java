@@ -17,6 +17,7 @@
  */
 package org.gnikrap.script.ev3api;
 
+import org.gnikrap.utils.MapBuilder;
 import org.gnikrap.utils.ScriptApi;
 
 import lejos.hardware.port.Port;
@@ -32,6 +33,7 @@ public class SimpleEV3UltrasonicSensor implements EV3Device {
 
   private final EV3UltrasonicSensor delegate;
   private final SensorMonitor logger;
+  private final SensorSampler sampler;
   // Distance mode
   private final SampleProvider distanceMode;
   private final float[] distanceSample;
@@ -42,6 +44,7 @@ public class SimpleEV3UltrasonicSensor implements EV3Device {
   public SimpleEV3UltrasonicSensor(Port port) {
     delegate = new EV3UltrasonicSensor(port);
     logger = SensorMonitorFactory.getLogger(port);
+    sampler = new SensorSampler(port.getName());
     // Distance mode
     distanceMode = delegate.getDistanceMode();
     distanceSample = new float[distanceMode.sampleSize()];
@@ -52,16 +55,54 @@ public class SimpleEV3UltrasonicSensor implements EV3Device {
 
   @Override
   public void release() {
+    sampler.release();
     delegate.disable();
     delegate.close();
   }
 
+  /**
+   * Start (or restart with the new period) the background sampling of the mode: the reading of this mode will then return immediately the latest sample.
+   * 
+   * @param mode in [Distance, Presence]
+   * @param periodInMs the sampling period
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void startSampling(String mode, int periodInMs) throws EV3ScriptException {
+    sampler.start(getMode(mode), periodInMs);
+  }
+
+  /**
+   * Stop the background sampling of the mode: the reading of this mode will then be done on demand (the default).
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public void stopSampling(String mode) throws EV3ScriptException {
+    sampler.stop(getMode(mode));
+  }
+
+  /**
+   * @return the age (in ms) of the value that will be returned while reading the mode, 0 if the mode isn't sampled in background.
+   */
+  @ScriptApi(versionAdded = "0.6.0", isIncubating = true)
+  public long getSampleAge(String mode) throws EV3ScriptException {
+    return sampler.getAge(getMode(mode));
+  }
+
+  private SampleProvider getMode(String mode) throws EV3ScriptException {
+    if (EV3Constants.ULTRASONIC_DISTANCE.equals(mode)) {
+      return distanceMode;
+    }
+    if (EV3Constants.ULTRASONIC_PRESENCE.equals(mode)) {
+      return listenMode;
+    }
+    throw new EV3ScriptException(EV3ScriptException.INVALID_SENSOR_MODE, MapBuilder.buildHashMap("mode", String.valueOf(mode)).put("modes", "Distance, Presence").build());
+  }
+
   /**
    * @return The distance detected in cm.
    */
   @ScriptApi(isIncubating = true, versionAdded = "0.5.0")
   public int getDistance() {
-    distanceMode.fetchSample(distanceSample, 0);
+    sampler.fetchSample(distanceMode, distanceSample);
     float result = distanceSample[0];
     logger.log(EV3Constants.ULTRASONIC_DISTANCE, result);
     return (int) (result * 100);
@@ -72,7 +113,7 @@ public class SimpleEV3UltrasonicSensor implements EV3Device {
    */
   @ScriptApi(isIncubating = true, versionAdded = "0.5.0")
   public boolean isUltrasonicDetected() {
-    listenMode.fetchSample(listenSample, 0);
+    sampler.fetchSample(listenMode, listenSample);
     float result = listenSample[0];
     logger.log(EV3Constants.ULTRASONIC_PRESENCE, result);
     return (result > 0.9999); // 1 in documentation, but always take in account epsilon while working with float
@@ -0,0 +1,187 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decode a PCM WAV stream chunk by chunk (only the current chunk is in memory, whatever the length of the sound).<br/>
+ * The samples are converted to the format supported by the EV3: 8 bits unsigned, mono.
+ * <p/>
+ * Supported WAV files: uncompressed PCM, 8 or 16 bits, 1 or 2 channels. The chunks before the 'data' chunk which are not 'fmt ' are skipped.
+ */
+final class WavStreamDecoder implements Closeable {
+
+  private static final int WAVE_FORMAT_PCM = 1;
+
+  private final InputStream in;
+  private final int sampleRate;
+  private final int channels;
+  private final int bitsPerSample;
+  private final int frameSize; // Bytes by sample (all channels)
+  private final long dataLength;
+  private long remaining;
+  private byte[] raw; // Reused from chunk to chunk
+
+  WavStreamDecoder(InputStream in) throws IOException {
+    this.in = in;
+    if ((readId() != 0x52494646) || (skipAndReadId(4) != 0x57415645)) { // "RIFF" <length> "WAVE"
+      throw new IOException("Not a WAV file");
+    }
+    int rate = 0, nbChannels = 0, bits = 0;
+    boolean fmtFound = false;
+    while (true) {
+      int id = readId();
+      long length = readLittleEndian(4) & 0xFFFFFFFFL;
+      if (id == 0x666D7420) { // "fmt "
+        if ((readLittleEndian(2) != WAVE_FORMAT_PCM) || (length < 16)) {
+          throw new IOException("Only PCM WAV files are supported");
+        }
+        nbChannels = readLittleEndian(2);
+        rate = readLittleEndian(4);
+        skip(6); // Byte rate and block align
+        bits = readLittleEndian(2);
+        skip(length - 16 + (length & 1));
+        fmtFound = true;
+      } else if (id == 0x64617461) { // "data"
+        if (!fmtFound) {
+          throw new IOException("'fmt ' chunk missing");
+        }
+        dataLength = length;
+        break;
+      } else {
+        skip(length + (length & 1)); // Chunks are word aligned
+      }
+    }
+    if (((bits != 8) && (bits != 16)) || (nbChannels < 1) || (nbChannels > 2) || (rate <= 0)) {
+      throw new IOException("Unsupported WAV format: " + bits + " bits, " + nbChannels + " channels, " + rate + " Hz");
+    }
+    sampleRate = rate;
+    channels = nbChannels;
+    bitsPerSample = bits;
+    frameSize = channels * bitsPerSample / 8;
+    remaining = dataLength - (dataLength % frameSize);
+  }
+
+  int getSampleRate() {
+    return sampleRate;
+  }
+
+  int getChannels() {
+    return channels;
+  }
+
+  int getBitsPerSample() {
+    return bitsPerSample;
+  }
+
+  /**
+   * @return the number of samples (mono) of the sound.
+   */
+  long getSampleCount() {
+    return dataLength / frameSize;
+  }
+
+  /**
+   * Decode the next chunk of samples.
+   * 
+   * @param samples where to store the samples (8 bits unsigned, mono), at most samples.length samples are decoded
+   * @return the number of samples decoded, -1 at the end of the sound.
+   */
+  int read(byte[] samples) throws IOException {
+    if (remaining <= 0) {
+      return -1;
+    }
+    int count = (int) Math.min(samples.length, remaining / frameSize);
+    int rawLength = count * frameSize;
+    if ((raw == null) || (raw.length < rawLength)) {
+      raw = new byte[rawLength];
+    }
+    readFully(raw, rawLength);
+    remaining -= rawLength;
+
+    for (int i = 0, r = 0; i < count; i++) {
+      int sum = 0;
+      for (int c = 0; c < channels; c++) {
+        if (bitsPerSample == 8) {
+          sum += (raw[r++] & 0xFF) - 128;
+        } else {
+          sum += raw[r + 1]; // High byte of the little endian signed 16 bits sample
+          r += 2;
+        }
+      }
+      samples[i] = (byte) (sum / channels + 128);
+    }
+    return count;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  // Utility methods
+  private int readId() throws IOException {
+    int result = 0;
+    for (int i = 0; i < 4; i++) {
+      result = (result << 8) | readByte();
+    }
+    return result;
+  }
+
+  private int skipAndReadId(int toSkip) throws IOException {
+    skip(toSkip);
+    return readId();
+  }
+
+  private int readLittleEndian(int nbBytes) throws IOException {
+    int result = 0;
+    for (int i = 0; i < nbBytes; i++) {
+      result |= readByte() << (8 * i);
+    }
+    return result;
+  }
+
+  private int readByte() throws IOException {
+    int b = in.read();
+    if (b < 0) {
+      throw new EOFException("Unexpected end of WAV file");
+    }
+    return b;
+  }
+
+  private void readFully(byte[] buf, int length) throws IOException {
+    int offset = 0;
+    while (offset < length) {
+      int n = in.read(buf, offset, length - offset);
+      if (n < 0) {
+        throw new EOFException("Unexpected end of WAV file");
+      }
+      offset += n;
+    }
+  }
+
+  private void skip(long n) throws IOException {
+    for (long i = 0; i < n; i++) {
+      readByte();
+    }
+  }
+}
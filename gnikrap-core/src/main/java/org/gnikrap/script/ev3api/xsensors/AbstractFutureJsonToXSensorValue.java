@@ -21,6 +21,10 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.LoggerUtils;
 
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
@@ -28,10 +32,21 @@ import com.eclipsesource.json.JsonValue;
 /**
  * The aim is to have the computation performed only if the {@link #get()} was called. <br/>
  * If {@link #get()} wasn't called, no computation was done.
+ * <p/>
+ * A raw value can also be a delta (see {@link JSonXSensorMessageFields#IS_DELTA}): in this case, the value is built on top of the previous value of the XSensor (the previous value is also
+ * computed only when needed).
  */
 abstract class AbstractFutureJsonToXSensorValue implements Future<XSensorValue> {
+  private static final Logger LOGGER = LoggerUtils.getLogger(AbstractFutureJsonToXSensorValue.class);
+
+  // Maximum number of delta that can wait to be computed (the browser send a full value at least each 20 messages)
+  private static final int MAX_PENDING_DELTAS = 32;
+
   private JsonValue rawValue;
   private XSensorValue value;
+  // The previous value of the XSensor, only kept for delta
+  private Future<XSensorValue> previous;
+  private int pendingDeltas;
 
   protected AbstractFutureJsonToXSensorValue(JsonValue rawValue) {
     this.rawValue = rawValue;
@@ -42,13 +57,55 @@ abstract class AbstractFutureJsonToXSensorValue implements Future<XSensorValue>
    */
   protected abstract XSensorValue buildValue(JsonObject rawValue);
 
+  /**
+   * Build the value of the XSensor from a delta and the previous value. Default implementation ignore the previous value.
+   * 
+   * @param previous the previous value of the XSensor, can be null (no previous value, previous value in error, etc.)
+   */
+  protected XSensorValue buildValue(JsonObject rawValue, XSensorValue previous) {
+    return buildValue(rawValue);
+  }
+
+  /**
+   * Set the value that was set on the XSensor before this one. Only used (and kept) if the raw value is a delta.
+   */
+  synchronized void setPrevious(Future<XSensorValue> previousValue) {
+    if ((rawValue != null) && rawValue.isObject() && rawValue.asObject().getBoolean(JSonXSensorMessageFields.IS_DELTA, false)) {
+      previous = previousValue;
+      if (previousValue instanceof AbstractFutureJsonToXSensorValue) {
+        AbstractFutureJsonToXSensorValue p = (AbstractFutureJsonToXSensorValue) previousValue;
+        pendingDeltas = p.getPendingDeltas() + 1;
+        if (pendingDeltas > MAX_PENDING_DELTAS) {
+          // Avoid a never ending chain of values if the script don't read the value
+          p.get();
+          pendingDeltas = 1;
+        }
+      }
+    }
+  }
+
+  private synchronized int getPendingDeltas() {
+    return (value == null ? pendingDeltas : 0);
+  }
+
   /**
    * Construct the value only when needed
    */
   @Override
   public synchronized XSensorValue get() {
     if (value == null) {
-      value = buildValue(rawValue.asObject());
+      if (previous != null) {
+        XSensorValue previousValue = null;
+        try {
+          previousValue = previous.get();
+        } catch (Exception ex) {
+          LOGGER.log(Level.WARNING, "Previous XSensor value not available, delta is applied on an empty value", ex);
+        }
+        value = buildValue(rawValue.asObject(), previousValue);
+        previous = null;
+      } else {
+        value = buildValue(rawValue.asObject());
+      }
       rawValue = null;
     }
     return value;
@@ -18,17 +18,18 @@
 package org.gnikrap.script.ev3api.xsensors;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
 import org.gnikrap.utils.JsonUtils;
+import org.gnikrap.utils.ScriptApi;
 
 import com.eclipsesource.json.JsonObject;
 import com.eclipsesource.json.JsonValue;
 
 /**
- * Convert the json to a {@link Map}<{@link String}, {@link Object}> {@link XSensorValue}.
+ * Convert the json to a {@link Map}<{@link String}, {@link Object}> {@link XSensorValue}.<br/>
+ * The map is a read-only view on the json: a field is converted only while accessed.
  */
 public class FutureJsonToMapValue extends AbstractFutureJsonToXSensorValue {
 
@@ -43,11 +44,40 @@ public class FutureJsonToMapValue extends AbstractFutureJsonToXSensorValue {
 
   public static final class MapXSensorValue extends XSensorValue implements Map<String, Object> {
 
+    private final JsonObject raw;
     private final Map<String, Object> delegate;
 
     MapXSensorValue(JsonObject raw) {
       super(raw.get(JSonXSensorMessageFields.IS_STARTED).asBoolean());
-      delegate = Collections.unmodifiableMap((Map) JsonUtils.toObject(raw)); // JsonObject is converted to a Map
+      this.raw = raw;
+      delegate = JsonUtils.asMap(raw); // Lazy view: no conversion done here
+    }
+
+    /**
+     * @return the value of the field as an int, defaultValue if the field doesn't exist or is not a number.
+     */
+    @ScriptApi(versionAdded = "0.6.0")
+    public int getInt(String name, int defaultValue) {
+      JsonValue v = raw.get(name);
+      return ((v != null) && v.isNumber() ? (int) v.asDouble() : defaultValue); // asDouble() work for both integer and decimal numbers
+    }
+
+    /**
+     * @return the value of the field as a float, defaultValue if the field doesn't exist or is not a number.
+     */
+    @ScriptApi(versionAdded = "0.6.0")
+    public float getFloat(String name, float defaultValue) {
+      JsonValue v = raw.get(name);
+      return ((v != null) && v.isNumber() ? v.asFloat() : defaultValue);
+    }
+
+    /**
+     * @return the value of the field as a boolean, defaultValue if the field doesn't exist or is not a boolean.
+     */
+    @ScriptApi(versionAdded = "0.6.0")
+    public boolean getBoolean(String name, boolean defaultValue) {
+      JsonValue v = raw.get(name);
+      return ((v != null) && v.isBoolean() ? v.asBoolean() : defaultValue);
     }
 
     @Override
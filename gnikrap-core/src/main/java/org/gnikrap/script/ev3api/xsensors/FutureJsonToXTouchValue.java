@@ -37,15 +37,35 @@ public class FutureJsonToXTouchValue extends AbstractFutureJsonToXSensorValue {
 
   @Override
   protected XSensorValue buildValue(JsonObject rawValue) {
-    return new XTouchValue(rawValue);
+    return new XTouchValue(rawValue, null);
+  }
+
+  @Override
+  protected XSensorValue buildValue(JsonObject rawValue, XSensorValue previous) {
+    return new XTouchValue(rawValue, (previous instanceof XTouchValue ? (XTouchValue) previous : null));
   }
 
   public static final class XTouchValue extends XSensorValue {
     private final Map<String, XTouch> touches = new HashMap<String, XTouch>();
 
-    XTouchValue(JsonObject raw) {
+    /**
+     * @param previous the value on which the delta is applied (only used if the raw value is a delta), can be null.
+     */
+    XTouchValue(JsonObject raw, XTouchValue previous) {
       super(raw.get(JSonXSensorMessageFields.IS_STARTED).asBoolean());
       if (isStarted()) {
+        if (raw.getBoolean(JSonXSensorMessageFields.IS_DELTA, false)) {
+          // Unchanged touches are immutable => shared with the previous value
+          if (previous != null) {
+            touches.putAll(previous.touches);
+          }
+          JsonValue removed = raw.get(JSonXSensorMessageFields.DELTA_REMOVED);
+          if (removed != null) {
+            for (JsonValue t : removed.asArray()) {
+              touches.remove(t.asString());
+            }
+          }
+        }
         JsonObject rawTouchs = raw.get(JSonXSensorMessageFields.XTOUCH_TOUCHS).asObject();
         for (String t : rawTouchs.names()) {
           touches.put(t, new XTouch(t, rawTouchs.get(t).asInt()));
@@ -37,7 +37,12 @@ public class FutureJsonToXVideoValue extends AbstractFutureJsonToXSensorValue {
 
   @Override
   protected XSensorValue buildValue(JsonObject rawValue) {
-    return new XVideoValue(rawValue);
+    return new XVideoValue(rawValue, null);
+  }
+
+  @Override
+  protected XSensorValue buildValue(JsonObject rawValue, XSensorValue previous) {
+    return new XVideoValue(rawValue, (previous instanceof XVideoValue ? (XVideoValue) previous : null));
   }
 
   public static final class XVideoValue extends XSensorValue {
@@ -48,9 +53,24 @@ public class FutureJsonToXVideoValue extends AbstractFutureJsonToXSensorValue {
 
     private final Map<String, XVisibleObject> objects = new HashMap<String, XVisibleObject>();
 
-    XVideoValue(JsonObject raw) {
+    /**
+     * @param previous the value on which the delta is applied (only used if the raw value is a delta), can be null.
+     */
+    XVideoValue(JsonObject raw, XVideoValue previous) {
       super(raw.get(JSonXSensorMessageFields.IS_STARTED).asBoolean());
       if (isStarted()) {
+        if (raw.getBoolean(JSonXSensorMessageFields.IS_DELTA, false)) {
+          // Unchanged objects are immutable => shared with the previous value
+          if (previous != null) {
+            objects.putAll(previous.objects);
+          }
+          JsonValue removed = raw.get(JSonXSensorMessageFields.DELTA_REMOVED);
+          if (removed != null) {
+            for (JsonValue o : removed.asArray()) {
+              objects.remove(o.asString());
+            }
+          }
+        }
         JsonObject rawObjects = raw.get(JSonXSensorMessageFields.XVIDEO_OBJECTS).asObject();
         for (String o : rawObjects.names()) {
           objects.put(o, new XVisibleObject(o, rawObjects.get(o).asObject()));
@@ -31,6 +31,10 @@ public final class JSonXSensorMessageFields {
   // Field(s) common to all XSensors
   public static final String IS_STARTED = "isStarted";
 
+  // Fields for delta values (only for XSensors which value is a set of named items: XTouch and XVideo)
+  public static final String IS_DELTA = "isDelta";
+  public static final String DELTA_REMOVED = "removed";
+
   // Fields for XGyro
   public static final String XGYRO_X_AXIS = "x";
   public static final String XGYRO_Y_AXIS = "y";
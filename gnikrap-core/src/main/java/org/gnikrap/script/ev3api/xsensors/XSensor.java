@@ -35,7 +35,7 @@ public class XSensor {
 
   private final String name;
 
-  private Future<XSensorValue> value;
+  private volatile Future<XSensorValue> value;
 
   private static final XSensorValue DEFAULT_XSENSOR_VALUE = new XSensorValue(false);
 
@@ -49,6 +49,9 @@ public class XSensor {
   }
 
   public void setFutureValue(Future<XSensorValue> futureSensorValue) {
+    if (futureSensorValue instanceof AbstractFutureJsonToXSensorValue) {
+      ((AbstractFutureJsonToXSensorValue) futureSensorValue).setPrevious(value); // In case of delta
+    }
     this.value = futureSensorValue;
   }
 
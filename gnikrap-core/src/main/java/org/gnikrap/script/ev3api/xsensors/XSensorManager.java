@@ -17,27 +17,88 @@
  */
 package org.gnikrap.script.ev3api.xsensors;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.LoggerUtils;
+
+import com.eclipsesource.json.JsonValue;
 
 /**
  * Manage the external sensors values.</br>
  * 
- * This class is thread safe (2 threads can access: the script/reading and the Java/writing).
+ * This class is thread safe (2 threads can access: the script/reading and the Java/writing). Lookups are lock-free in order to avoid any contention between the IO thread and the script thread.
  */
 public class XSensorManager {
+  private static final Logger LOGGER = LoggerUtils.getLogger(XSensorManager.class);
 
-  private final Map<String, XSensor> sensors = new HashMap<String, XSensor>();
+  private final ConcurrentMap<String, XSensor> sensors = new ConcurrentHashMap<String, XSensor>(8, 0.75f, 2);
+  private volatile XSensorStreamRecorder recorder;
 
   /**
    * Returns the sensor object for the given name. (Note: Sensor object can be locally kept).
    */
-  public synchronized XSensor getSensor(String name) {
+  public XSensor getSensor(String name) {
     XSensor s = sensors.get(name);
     if (s == null) {
-      s = new XSensor(name);
-      sensors.put(name, s);
+      XSensor newSensor = new XSensor(name);
+      s = sensors.putIfAbsent(name, newSensor);
+      if (s == null) {
+        s = newSensor;
+      }
     }
     return s;
   }
+
+  /**
+   * Record all the values received from now with the given recorder (replace the current recorder if any).
+   */
+  public void startRecording(XSensorStreamRecorder recorder) {
+    XSensorStreamRecorder old = this.recorder;
+    this.recorder = recorder;
+    closeRecorder(old);
+  }
+
+  /**
+   * Stop the recording in progress if any.
+   * 
+   * @return the number of values recorded, 0 if there was no recording in progress.
+   */
+  public int stopRecording() {
+    XSensorStreamRecorder old = this.recorder;
+    this.recorder = null;
+    return closeRecorder(old);
+  }
+
+  /**
+   * Record the value if a recording is in progress, do nothing otherwise.
+   */
+  public void record(String sensorName, String sensorType, JsonValue rawValue) {
+    XSensorStreamRecorder r = recorder; // Get locally to avoid race condition issues
+    if (r != null) {
+      try {
+        r.record(sensorName, sensorType, rawValue);
+      } catch (IOException ioe) {
+        LOGGER.log(Level.WARNING, "Error while recording XSensor values, recording stopped", ioe);
+        if (recorder == r) {
+          stopRecording();
+        }
+      }
+    }
+  }
+
+  private static int closeRecorder(XSensorStreamRecorder r) {
+    if (r == null) {
+      return 0;
+    }
+    try {
+      r.close();
+    } catch (IOException ioe) {
+      LOGGER.log(Level.WARNING, "Exception ignored", ioe);
+    }
+    return r.getRecordCount();
+  }
 }
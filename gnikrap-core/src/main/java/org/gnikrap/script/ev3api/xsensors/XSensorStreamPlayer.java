@@ -0,0 +1,160 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api.xsensors;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.gnikrap.utils.LoggerUtils;
+
+import com.eclipsesource.json.Json;
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Replay a stream recorded with {@link XSensorStreamRecorder}: the values are set on the XSensors of the {@link XSensorManager} as if they were coming from
+ * the browser.<br/>
+ * The replay is done at the original timing, accelerated/slowed down with the speed factor, or as fast as possible (speed &lt;= 0).
+ */
+public class XSensorStreamPlayer implements Runnable {
+  private static final Logger LOGGER = LoggerUtils.getLogger(XSensorStreamPlayer.class);
+
+  private final DataInputStream in;
+  private final XSensorManager target;
+  private final ValueSetter setter;
+  private final float speed;
+  // Index is the sensor index in the stream
+  private final List<XSensor> sensors = new ArrayList<XSensor>();
+  private final List<String> sensorTypes = new ArrayList<String>();
+  private volatile boolean playing = true;
+  private int replayedCount;
+
+  /**
+   * Set the values replayed directly on the XSensors.
+   */
+  public XSensorStreamPlayer(InputStream is, XSensorManager target, float speed) throws IOException {
+    this(is, target, speed, new ValueSetter() {
+      @Override
+      public void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value) {
+        sensor.setFutureValue(value);
+      }
+    });
+  }
+
+  /**
+   * @param setter how to set the values replayed (eg. the same way than the values coming from the browser).
+   */
+  public XSensorStreamPlayer(InputStream is, XSensorManager target, float speed, ValueSetter setter) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(is, 8192));
+    this.target = target;
+    this.speed = speed;
+    this.setter = setter;
+    boolean valid = false;
+    try {
+      valid = (in.readInt() == XSensorStreamRecorder.MAGIC) && (in.readByte() == XSensorStreamRecorder.VERSION);
+    } finally {
+      if (!valid) {
+        in.close();
+      }
+    }
+    if (!valid) {
+      throw new IOException("Not a XSensor record stream (or unsupported version)");
+    }
+  }
+
+  @Override
+  public void run() {
+    long startTime = System.nanoTime();
+    try {
+      while (playing) {
+        int timeInMs;
+        try {
+          timeInMs = in.readInt();
+        } catch (EOFException eof) {
+          break; // End of the stream
+        }
+        int index = in.readUnsignedShort();
+        if (index == sensors.size()) {
+          sensors.add(target.getSensor(in.readUTF()));
+          sensorTypes.add(in.readUTF());
+        } else if (index > sensors.size()) {
+          throw new IOException("Invalid sensor index: " + index);
+        }
+        byte[] value = new byte[in.readInt()];
+        in.readFully(value);
+
+        if (speed > 0) {
+          long waitInMs = (long) (timeInMs / speed) - (System.nanoTime() - startTime) / 1000000L;
+          if (waitInMs > 0) {
+            Thread.sleep(waitInMs);
+          }
+        }
+        JsonValue rawValue = Json.parse(new String(value, StandardCharsets.UTF_8));
+        setter.setXSensorFutureValue(sensors.get(index), XSensorValueFactory.newFutureValue(sensorTypes.get(index), rawValue));
+        replayedCount++;
+      }
+    } catch (InterruptedException ie) {
+      // Stop requested
+    } catch (Exception ex) {
+      LOGGER.log(Level.WARNING, "Error while replaying XSensor values, replay stopped", ex);
+    } finally {
+      playing = false;
+      try {
+        in.close();
+      } catch (IOException ioe) {
+        LOGGER.log(Level.WARNING, "Exception ignored", ioe);
+      }
+    }
+  }
+
+  /**
+   * Stop the replay (the value currently replayed, if any, is still set).
+   */
+  public void stop() {
+    playing = false;
+  }
+
+  /**
+   * @return true while the replay is not finished.
+   */
+  public boolean isPlaying() {
+    return playing;
+  }
+
+  /**
+   * @return the number of values replayed (only accurate once the replay is finished).
+   */
+  public int getReplayedCount() {
+    return replayedCount;
+  }
+
+  /**
+   * Set a value replayed on a XSensor.
+   */
+  public interface ValueSetter {
+    void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api.xsensors;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Record the XSensor values received from the browser (with their arrival time) in a compact binary stream.<br/>
+ * The stream can be replayed later with {@link XSensorStreamPlayer}.
+ * 
+ * Stream format (big endian, see {@link DataOutputStream}):
+ * <ul>
+ * <li>Header: magic number (int), version (byte)</li>
+ * <li>Records: arrival time in ms since the start of the recording (int), sensor index (short), [only the first time an index is used: sensor name (UTF),
+ * sensor type (UTF)], value length (int), value as UTF-8 json (bytes)</li>
+ * </ul>
+ * 
+ * This class is thread safe.
+ */
+public class XSensorStreamRecorder implements Closeable {
+
+  static final int MAGIC = 0x474E5853; // "GNXS"
+  static final byte VERSION = 1;
+
+  private final DataOutputStream out;
+  private final long startTime;
+  // Key is sensor type + ':' + sensor name
+  private final Map<String, Integer> sensorIndexes = new HashMap<String, Integer>();
+  private int recordCount;
+  private boolean closed;
+
+  public XSensorStreamRecorder(OutputStream os) throws IOException {
+    out = new DataOutputStream(new BufferedOutputStream(os, 8192));
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    startTime = System.nanoTime();
+  }
+
+  /**
+   * Record the value with the current time as arrival time.
+   */
+  public void record(String sensorName, String sensorType, JsonValue rawValue) throws IOException {
+    record((int) ((System.nanoTime() - startTime) / 1000000L), sensorName, sensorType, rawValue);
+  }
+
+  synchronized void record(int timeInMs, String sensorName, String sensorType, JsonValue rawValue) throws IOException {
+    if (closed) {
+      return;
+    }
+    String type = (sensorType == null ? "" : sensorType);
+    String key = type + ':' + sensorName;
+    Integer index = sensorIndexes.get(key);
+    out.writeInt(timeInMs);
+    if (index == null) {
+      index = Integer.valueOf(sensorIndexes.size());
+      sensorIndexes.put(key, index);
+      out.writeShort(index.intValue());
+      out.writeUTF(sensorName);
+      out.writeUTF(type);
+    } else {
+      out.writeShort(index.intValue());
+    }
+    byte[] value = rawValue.toString().getBytes(StandardCharsets.UTF_8);
+    out.writeInt(value.length);
+    out.write(value);
+    recordCount++;
+  }
+
+  /**
+   * @return the number of values recorded so far.
+   */
+  public synchronized int getRecordCount() {
+    return recordCount;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (closed == false) {
+      closed = true;
+      out.close();
+    }
+  }
+}
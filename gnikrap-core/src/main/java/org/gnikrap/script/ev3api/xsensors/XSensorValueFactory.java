@@ -0,0 +1,49 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api.xsensors;
+
+import java.util.concurrent.Future;
+
+import com.eclipsesource.json.JsonValue;
+
+/**
+ * Build the {@link XSensorValue} (lazily converted from the json) matching the type of the XSensor.
+ */
+public final class XSensorValueFactory {
+
+  private XSensorValueFactory() {
+  }
+
+  /**
+   * @param sensorType the type of the XSensor (see XSENSOR_TYPE_* in {@link JSonXSensorMessageFields}), unknown types are managed as a map.
+   * @param rawValue the json value as received from the browser
+   */
+  public static Future<XSensorValue> newFutureValue(String sensorType, JsonValue rawValue) {
+    if (JSonXSensorMessageFields.XSENSOR_TYPE_XGYRO.equals(sensorType)) {
+      return new FutureJsonToXGyroValue(rawValue);
+    } else if (JSonXSensorMessageFields.XSENSOR_TYPE_XVIDEO.equals(sensorType)) {
+      return new FutureJsonToXVideoValue(rawValue);
+    } else if (JSonXSensorMessageFields.XSENSOR_TYPE_XTOUCH.equals(sensorType)) {
+      return new FutureJsonToXTouchValue(rawValue);
+    } else if (JSonXSensorMessageFields.XSENSOR_TYPE_XGEO.equals(sensorType)) {
+      return new FutureJsonToXGeoValue(rawValue);
+    } else {
+      return new FutureJsonToMapValue(rawValue);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.utils;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Create the daemon threads (they don't prevent the JVM to exit) of the background tasks, with a name helping to identify them in the thread
+ * dumps.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+
+  private final String name;
+  private final int priority;
+
+  public DaemonThreadFactory(String name) {
+    this(name, Thread.NORM_PRIORITY);
+  }
+
+  /**
+   * @param priority use {@link Thread#MAX_PRIORITY} for the time sensitive tasks (eg. motor regulation).
+   */
+  public DaemonThreadFactory(String name, int priority) {
+    this.name = name;
+    this.priority = priority;
+  }
+
+  @Override
+  public Thread newThread(Runnable r) {
+    Thread t = new Thread(r, name);
+    t.setDaemon(true);
+    t.setPriority(priority);
+    return t;
+  }
+}
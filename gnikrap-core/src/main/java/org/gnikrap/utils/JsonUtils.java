@@ -20,11 +20,16 @@ package org.gnikrap.utils;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.lang.reflect.Array;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -147,6 +152,128 @@ public final class JsonUtils {
     // }
   }
 
+  /**
+   * Same as {@link #toObject(JsonValue)} but the {@link JsonObject} and {@link JsonArray} are not deeply converted: a read-only {@link Map} or {@link List} view is returned instead, each value of
+   * the view is converted only while accessed.
+   */
+  public static Object toLazyObject(JsonValue json) {
+    if (json != null) {
+      if (json.isObject()) {
+        return new JsonObjectMapView(json.asObject());
+      }
+      if (json.isArray()) {
+        return new JsonArrayListView(json.asArray());
+      }
+    }
+    return toObject(json);
+  }
+
+  /**
+   * Returns a read-only {@link Map} view on the {@link JsonObject}, values are converted (see {@link #toLazyObject(JsonValue)}) only while accessed.
+   */
+  public static Map<String, Object> asMap(JsonObject json) {
+    return new JsonObjectMapView(json);
+  }
+
+  /**
+   * Read-only {@link Map} on a {@link JsonObject}. Note: Modification methods throw {@link UnsupportedOperationException}.
+   */
+  private static final class JsonObjectMapView extends AbstractMap<String, Object> {
+    private final JsonObject json;
+
+    JsonObjectMapView(JsonObject json) {
+      this.json = json;
+    }
+
+    @Override
+    public int size() {
+      return json.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return json.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return (key instanceof String) && (json.get((String) key) != null);
+    }
+
+    @Override
+    public Object get(Object key) {
+      return (key instanceof String ? toLazyObject(json.get((String) key)) : null);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+      throw new UnsupportedOperationException("Read only");
+    }
+
+    @Override
+    public Object remove(Object key) {
+      throw new UnsupportedOperationException("Read only");
+    }
+
+    @Override
+    public void clear() {
+      throw new UnsupportedOperationException("Read only");
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      return new AbstractSet<Map.Entry<String, Object>>() {
+        @Override
+        public int size() {
+          return json.size();
+        }
+
+        @Override
+        public Iterator<Map.Entry<String, Object>> iterator() {
+          final Iterator<JsonObject.Member> it = json.iterator();
+          return new Iterator<Map.Entry<String, Object>>() {
+            @Override
+            public boolean hasNext() {
+              return it.hasNext();
+            }
+
+            @Override
+            public Map.Entry<String, Object> next() {
+              JsonObject.Member m = it.next();
+              return new AbstractMap.SimpleImmutableEntry<String, Object>(m.getName(), toLazyObject(m.getValue()));
+            }
+
+            @Override
+            public void remove() {
+              throw new UnsupportedOperationException("Read only");
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /**
+   * Read-only {@link List} on a {@link JsonArray}.
+   */
+  private static final class JsonArrayListView extends AbstractList<Object> {
+    private final JsonArray json;
+
+    JsonArrayListView(JsonArray json) {
+      this.json = json;
+    }
+
+    @Override
+    public Object get(int index) {
+      return toLazyObject(json.get(index));
+    }
+
+    @Override
+    public int size() {
+      return json.size();
+    }
+  }
+
   /**
    * Build JsonValue from simple types ({@link String}, {@link Boolean}, {@link Float}, {@link Double}, {@link Long} or {@link Integer}) or complex types ({@link Map}, {@link Collection} or arrays).
    */
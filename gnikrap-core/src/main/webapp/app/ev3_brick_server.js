@@ -30,6 +30,15 @@ function EV3BrickServer(appContext) {
         timeoutID: undefined
       }; 
     self.XSENSOR_STREAM_FREQUENCY = 50; // in ms => Maximum of 20 message by second by xSensor
+    self.xSensorDeltas = {}; // Last value sent for the xSensors that can be sent as delta
+    self.XSENSOR_DELTA_FIELDS = { // xSensor types which value is a set of named items (can be sent as delta)
+        "Vid1": "objects",
+        "Tch1": "touchs"
+      };
+    self.XSENSOR_KEYFRAME_PERIOD = 20; // Send a full value at least each 20 messages (<=> 1s while streaming) in order to resync the EV3 brick
+    self.motorTelemetry = {}; // Motor telemetry received (binary messages), by motors ports (eg. "AC")
+    self.MOTOR_TELEMETRY_MAX_SAMPLES = 20000; // Keep only the last samples by motors ports
+    self.screenMirror = undefined; // The EV3 screen mirrored (binary messages): { width, height, context, imageData }
   }
 
   self.initialize = function() {
@@ -37,6 +46,7 @@ function EV3BrickServer(appContext) {
       var wsURI = "ws://" + location.host + "/ws/gnikrap/script";
       try {
         self.ws = new WebSocket(wsURI);
+        self.ws.binaryType = "arraybuffer";
         self.ws.onopen = function(evt) { self.__onWSOpen(evt); };
         self.ws.onclose = function(evt) { self.__onWSClose(evt); };
         self.ws.onmessage = function(evt) { self.__onWSMessage(evt); };
@@ -53,10 +63,15 @@ function EV3BrickServer(appContext) {
   };
 
   self.__onWSOpen = function(evt) {
+    self.xSensorDeltas = {}; // New connection => Next xSensor values have to be sent in full
     self.context.messageLogVM.addMessage(false, i18n.t("ev3brick.ev3ConnectionOk"));
   };
 
   self.__onWSMessage = function(evt) {
+    if(evt.data instanceof ArrayBuffer) {
+      self.__onWSBinaryMessage(new DataView(evt.data));
+      return;
+    }
     var received_msg = evt.data;
     var received_data = JSON.parse(received_msg);
     var msgType = received_data.msgTyp;
@@ -82,6 +97,131 @@ function EV3BrickServer(appContext) {
     }
   };
 
+  // Binary messages: the first byte is the message type
+  self.__onWSBinaryMessage = function(data) {
+    var msgType = data.getUint8(0);
+    if(msgType == 1) { // Motor telemetry, see SimpleEV3MotorRecorder
+      self.__onMotorTelemetry(data);
+    } else if(msgType == 2) { // Screen mirroring, see ScreenDiffEncoder
+      self.__onScreenMirror(data);
+    } else if(msgType == 3) { // Published values, see PublishedValues
+      self.__onPublishedValues(data);
+    } else {
+      console.warn("Unknown binary message type: " + msgType);
+    }
+  };
+
+  self.__onMotorTelemetry = function(data) {
+    var motorCount = data.getUint8(1), sampleCount = data.getUint16(2);
+    var ports = "";
+    for(var i = 0; i < motorCount; i++) {
+      ports += String.fromCharCode(data.getUint8(4 + i));
+    }
+    var telemetry = self.motorTelemetry[ports];
+    if(telemetry == undefined) {
+      telemetry = { times: [], tachoCounts: [], speeds: [] };
+      for(var i = 0; i < motorCount; i++) {
+        telemetry.tachoCounts.push([]);
+        telemetry.speeds.push([]);
+      }
+      self.motorTelemetry[ports] = telemetry;
+    }
+    var offset = 4 + motorCount;
+    for(var n = 0; n < sampleCount; n++) {
+      telemetry.times.push(data.getInt32(offset));
+      offset += 4;
+      for(var i = 0; i < motorCount; i++) {
+        telemetry.tachoCounts[i].push(data.getInt32(offset));
+        telemetry.speeds[i].push(data.getInt16(offset + 4));
+        offset += 6;
+      }
+    }
+    var toRemove = telemetry.times.length - self.MOTOR_TELEMETRY_MAX_SAMPLES;
+    if(toRemove > 0) {
+      telemetry.times.splice(0, toRemove);
+      for(var i = 0; i < motorCount; i++) {
+        telemetry.tachoCounts[i].splice(0, toRemove);
+        telemetry.speeds[i].splice(0, toRemove);
+      }
+    }
+    console.log("Motor telemetry received for '" + ports + "': " + sampleCount + " samples");
+  };
+
+  // Update the rows of the EV3 screen received (1 bit by pixel, lsb is the leftmost pixel). Each row is run-length encoded ((count, value) pairs),
+  // or raw when the high bit of the row index is set
+  self.__onScreenMirror = function(data) {
+    var width = data.getUint16(1), height = data.getUint16(3), rowCount = data.getUint16(5);
+    var mirror = self.screenMirror;
+    if(mirror == undefined || mirror.width != width || mirror.height != height) {
+      var canvas = $("#ev3ScreenMirror");
+      canvas.attr({ width: width, height: height });
+      canvas.show();
+      var context = canvas[0].getContext("2d");
+      mirror = { width: width, height: height, context: context, imageData: context.createImageData(width, height) };
+      self.screenMirror = mirror;
+    }
+    var pixels = mirror.imageData.data;
+    var stride = (width + 7) >> 3, offset = 7;
+    function setByte(row, i, value) {
+      for(var bit = 0; bit < 8; bit++) {
+        var x = 8 * i + bit;
+        if(x < width) {
+          var p = 4 * (row * width + x);
+          var c = ((value >> bit) & 1 ? 0 : 255); // 1 is a black pixel
+          pixels[p] = pixels[p + 1] = pixels[p + 2] = c;
+          pixels[p + 3] = 255;
+        }
+      }
+    }
+    for(var n = 0; n < rowCount; n++) {
+      var row = data.getUint16(offset);
+      offset += 2;
+      if(row & 0x8000) { // Raw row
+        row &= 0x7FFF;
+        for(var i = 0; i < stride; i++) {
+          setByte(row, i, data.getUint8(offset++));
+        }
+      } else {
+        for(var i = 0; i < stride; ) {
+          var count = data.getUint8(offset), value = data.getUint8(offset + 1);
+          offset += 2;
+          for(var k = 0; k < count; k++, i++) {
+            setByte(row, i, value);
+          }
+        }
+      }
+    }
+    mirror.context.putImageData(mirror.imageData, 0, 0);
+  };
+
+  // Values published by the script: (name, type, value) for each value changed
+  self.__onPublishedValues = function(data) {
+    function readText(offset, length) {
+      var bytes = new Uint8Array(data.buffer, data.byteOffset + offset, length);
+      return decodeURIComponent(escape(String.fromCharCode.apply(null, bytes))); // UTF-8 decoding
+    }
+    var count = data.getUint16(1), offset = 3, values = {};
+    for(var n = 0; n < count; n++) {
+      var nameLength = data.getUint16(offset);
+      var name = readText(offset + 2, nameLength);
+      offset += 2 + nameLength;
+      if(data.getUint8(offset) == 0) { // Number
+        values[name] = data.getFloat64(offset + 1);
+        offset += 9;
+      } else { // Text
+        var textLength = data.getUint16(offset + 1);
+        values[name] = readText(offset + 3, textLength);
+        offset += 3 + textLength;
+      }
+    }
+    self.context.messageLogVM.updatePublishedValues(values);
+  };
+
+  // Returns the motor telemetry received for the given motors ports (eg. "AC"): { times: [], tachoCounts: [[]], speeds: [[]] }
+  self.getMotorTelemetry = function(ports) {
+    return self.motorTelemetry[ports];
+  };
+
   self.__onWSClose = function(evt) {
     self.context.messageLogVM.addMessage(true, i18n.t("ev3brick.errors.ev3ConnectionNok"));
     self.__doWSReconnection();
@@ -138,6 +278,8 @@ function EV3BrickServer(appContext) {
       // console.log("runScript - " + jsonMsg);
       if(self.__doWSSend(jsonMsg) == false) {
         self.context.messageLogVM.addMessage(true, i18n.t("ev3brick.errors.cantRunScriptEV3ConnectionNok"));
+      } else {
+        self.context.messageLogVM.publishedValues.removeAll(); // The values of the previous script are outdated
       }
     }
   };
@@ -174,16 +316,51 @@ function EV3BrickServer(appContext) {
         act: "setXSnsValue",
         xSnsNam: sensorName,
         xSnsTyp: sensorType,
-        xSnsVal: sensorValue
+        xSnsVal: self.__computeXSensorDelta(sensorName, sensorType, sensorValue)
       });
   };
-  
+
+  // Returns only the items added/moved/removed since the last value sent if possible, the full value otherwise.
+  // Note: sensorValue should not be modified by the caller once given (it is kept as the reference for the next delta)
+  self.__computeXSensorDelta = function(sensorName, sensorType, sensorValue) {
+    var itemsField = self.XSENSOR_DELTA_FIELDS[sensorType];
+    if(itemsField == undefined) {
+      return sensorValue;
+    }
+
+    var last = self.xSensorDeltas[sensorName];
+    var result = sensorValue;
+    if(last && last.value.isStarted && sensorValue.isStarted && (last.deltaCount < self.XSENSOR_KEYFRAME_PERIOD)) {
+      var lastItems = last.value[itemsField] || {}, items = sensorValue[itemsField] || {};
+      var changed = {}, removed = [];
+      Object.keys(items).forEach(function(name) {
+        if(JSON.stringify(items[name]) != JSON.stringify(lastItems[name])) {
+          changed[name] = items[name];
+        }
+      });
+      Object.keys(lastItems).forEach(function(name) {
+        if(items[name] == undefined) {
+          removed.push(name);
+        }
+      });
+      result = { isStarted: true, isDelta: true, removed: removed };
+      result[itemsField] = changed;
+      last.deltaCount++;
+    } else {
+      last = { deltaCount: 0 }; // Keyframe
+    }
+    last.value = sensorValue;
+    self.xSensorDeltas[sensorName] = last;
+    return result;
+  };
+
   // Instantaneously send the sensor value
   self.sendXSensorValue = function(sensorName, sensorType, sensorValue) {
     var jsonMsg = self.__buildXSensorMessage(sensorName, sensorType, sensorValue);
     console.log("send xSensorValue - " + jsonMsg);
     if(self.__doWSSend(jsonMsg) == false) {
       // In case of connection lost: switch to stream behaviour (only the last event will be keep)
+      delete self.xSensorDeltas[sensorName]; // Not sent => Don't use it as delta reference
       self.streamXSensorValue(sensorName, sensorType, sensorValue);
     }
   };
@@ -191,22 +368,24 @@ function EV3BrickServer(appContext) {
   // Stream the xSensor values in order to avoid flood the EV3 brick
   self.streamXSensorValue = function(sensorName, sensorType, sensorValue) {
     var sensor = self.xSensorStream.sensors[sensorName];
-    var jsonMsg = self.__buildXSensorMessage(sensorName, sensorType, sensorValue);
+    var jsonValue = JSON.stringify(sensorValue);
     if(sensor == undefined) {
       self.xSensorStream.sensors[sensorName] = {
         streamLifetime: 1, // Will be initialized at the right value in __doStreamXSensorValue
+        sensorType: sensorType,
         lastJsonSent: undefined,
-        currentJson: jsonMsg
+        currentJson: jsonValue
       };
     } else {
-      if(jsonMsg == sensor.lastJsonSent) {
-        jsonMsg = undefined;
+      if(jsonValue == sensor.lastJsonSent) {
+        jsonValue = undefined;
       } else {
-        sensor.currentJson = jsonMsg;
+        sensor.sensorType = sensorType;
+        sensor.currentJson = jsonValue;
       }
     }
     
-    if(jsonMsg && (self.xSensorStream.timeoutID == undefined)) {
+    if(jsonValue && (self.xSensorStream.timeoutID == undefined)) {
       self.xSensorStream.timeoutID = setTimeout(self.__doStreamXSensorValue, self.XSENSOR_STREAM_FREQUENCY / 2); // No send planned => send rather quickly. Real "message rate" is done in __doStreamXSensorValue.
     }
   };
@@ -219,9 +398,13 @@ function EV3BrickServer(appContext) {
       Object.keys(self.xSensorStream.sensors).forEach(function(sensorName) {
         var sensor = self.xSensorStream.sensors[sensorName];
         if(sensor.currentJson) {
-          console.log("send xSensorValue - " + sensor.currentJson);
+          // Parse the JSON again in order to work on a copy of the value (safe to keep as delta reference)
+          var jsonMsg = self.__buildXSensorMessage(sensorName, sensor.sensorType, JSON.parse(sensor.currentJson));
+          console.log("send xSensorValue - " + jsonMsg);
           messageSent = true;
-          self.__doWSSend(sensor.currentJson);
+          if(self.__doWSSend(jsonMsg) == false) {
+            delete self.xSensorDeltas[sensorName];
+          }
           sensor.lastJsonSent = sensor.currentJson;
           sensor.currentJson = undefined;
           sensor.streamLifetime = 6000; // At least 4 minutes of lifetime (6000/60/25)
@@ -28,6 +28,8 @@ function MessageLogViewModel(appContext) { // appContext not used for MessageLog
     self.messages.extend({ rateLimit: 200 }); // Accept lower refresh rate
     self.keepOnlyLastMessages = ko.observable(true);
     self.MESSAGES_TO_KEEP = 15;
+    self.publishedValues = ko.observableArray(); // Values published by the script (ev3.publish()): [{ name, value }]
+    self.publishedValues.extend({ rateLimit: 200 });
 
     // Register events
     self.context.events.resize.add(function(workAreaHeight, usefullWorkAreaHeight) {
@@ -60,6 +62,24 @@ function MessageLogViewModel(appContext) { // appContext not used for MessageLog
 
   self.onResetMessages = function() {
     self.messages.removeAll();
+    self.publishedValues.removeAll();
+  };
+
+  // Update the published values with the given values: { name: value }
+  self.updatePublishedValues = function(values) {
+    var current = self.publishedValues();
+    for(var i = 0; i < current.length; i++) {
+      var name = current[i].name;
+      if(values.hasOwnProperty(name)) {
+        current[i].value(values[name]);
+        delete values[name];
+      }
+    }
+    for(var name in values) {
+      if(values.hasOwnProperty(name)) {
+        self.publishedValues.push({ name: name, value: ko.observable(values[name]) });
+      }
+    }
   };
 
   self.onKeepOnlyLastMessages = function() {
@@ -0,0 +1,130 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class PublishedValuesTest {
+
+  /**
+   * Decode the message as the browser does.
+   */
+  private static Map<String, Object> decode(ByteBuffer message) {
+    Map<String, Object> result = new LinkedHashMap<String, Object>();
+    Assert.assertEquals(message.get(), JsonMessageFields.BINARY_MESSAGE_PUBLISHED_VALUES);
+    int count = message.getShort();
+    for (int n = 0; n < count; n++) {
+      byte[] name = new byte[message.getShort()];
+      message.get(name);
+      if (message.get() == PublishedValues.TYPE_NUMBER) {
+        result.put(new String(name, StandardCharsets.UTF_8), message.getDouble());
+      } else {
+        byte[] text = new byte[message.getShort()];
+        message.get(text);
+        result.put(new String(name, StandardCharsets.UTF_8), new String(text, StandardCharsets.UTF_8));
+      }
+    }
+    Assert.assertEquals(message.remaining(), 0);
+    return result;
+  }
+
+  @Test
+  public void testChangedValues() {
+    PublishedValues values = new PublishedValues();
+    Assert.assertNull(values.nextFrame(false));
+
+    values.publish("speed", 10);
+    values.publish("state", "Running");
+    values.publish("speed", 12.5);
+    Assert.assertEquals(decode(values.nextFrame(false)).toString(), "{speed=12.5, state=Running}");
+    Assert.assertNull(values.nextFrame(false));
+
+    // Same values: nothing to send
+    values.publish("speed", 12.5f);
+    values.publish("state", "Running");
+    Assert.assertNull(values.nextFrame(false));
+
+    values.publish("state", "Stopped");
+    values.publish("ok", true);
+    Assert.assertEquals(decode(values.nextFrame(false)).toString(), "{state=Stopped, ok=true}");
+    Assert.assertEquals(decode(values.nextFrame(true)).toString(), "{speed=12.5, state=Stopped, ok=true}");
+
+    // Number -> text -> number
+    values.publish("speed", "n/a");
+    values.publish("speed", 0);
+    Assert.assertEquals(decode(values.nextFrame(false)).toString(), "{speed=0.0}");
+    Assert.assertEquals(values.size(), 3);
+  }
+
+  @Test
+  public void testPrimitiveAndBoxedNumbers() {
+    PublishedValues values = new PublishedValues();
+    values.publish("int", 3);
+    values.publish("double", 0.25);
+    values.publish("boxed", (Object) Integer.valueOf(3));
+    Assert.assertEquals(decode(values.nextFrame(false)).toString(), "{int=3.0, double=0.25, boxed=3.0}");
+
+    // Same value through the other overloads: nothing to send
+    values.publish("int", (Object) Double.valueOf(3));
+    values.publish("double", (Object) Float.valueOf(0.25f));
+    values.publish("boxed", 3.0);
+    Assert.assertNull(values.nextFrame(false));
+
+    // Text -> primitive number
+    values.publish("int", "n/a");
+    values.publish("int", 4);
+    Assert.assertEquals(decode(values.nextFrame(false)).toString(), "{int=4.0}");
+  }
+
+  @Test
+  public void testMaxValues() {
+    PublishedValues values = new PublishedValues();
+    for (int i = 0; i < PublishedValues.MAX_VALUES; i++) {
+      Assert.assertTrue(values.publish("v" + i, i), "Should be published");
+    }
+    Assert.assertTrue(values.publish("v0", -1), "Should be published (existing name)");
+    Assert.assertTrue(!values.publish("other", 0), "Should not be published");
+    Assert.assertEquals(decode(values.nextFrame(false)).size(), PublishedValues.MAX_VALUES);
+  }
+
+  @Test
+  public void testClear() {
+    PublishedValues values = new PublishedValues();
+    for (int i = 0; i < PublishedValues.MAX_VALUES; i++) {
+      values.publish("v" + i, i);
+    }
+    values.clear();
+    Assert.assertEquals(values.size(), 0);
+    Assert.assertNull(values.nextFrame(true));
+
+    // The previous names are forgotten (not resent with the keyframes, no more counted)
+    Assert.assertTrue(values.publish("other", "x"), "Should be published");
+    Assert.assertTrue(values.publish("v0", 1), "Should be published");
+    Assert.assertEquals(decode(values.nextFrame(true)).toString(), "{other=x, v0=1.0}");
+    for (int i = 2; i < PublishedValues.MAX_VALUES; i++) {
+      Assert.assertTrue(values.publish("w" + i, i), "Should be published");
+    }
+    Assert.assertTrue(!values.publish("more", 0), "Should not be published");
+  }
+}
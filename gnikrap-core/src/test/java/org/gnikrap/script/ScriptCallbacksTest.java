@@ -0,0 +1,123 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ScriptCallbacksTest {
+
+  private static Runnable record(final List<String> calls, final String name, final Thread[] caller) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        calls.add(name);
+        caller[0] = Thread.currentThread();
+      }
+    };
+  }
+
+  @Test
+  public void testCalledByTheScriptThread() throws Exception {
+    final ScriptCallbacks callbacks = new ScriptCallbacks();
+    final List<String> calls = new ArrayList<String>();
+    final Thread[] caller = new Thread[1];
+
+    // Queued by another thread, not called
+    Thread other = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        callbacks.add(record(calls, "a", caller));
+        callbacks.add(record(calls, "b", caller));
+      }
+    });
+    other.start();
+    other.join();
+    Assert.assertEquals(callbacks.size(), 2);
+    Assert.assertTrue(calls.isEmpty());
+
+    // Called in order by the "script" thread
+    callbacks.runAll();
+    Assert.assertEquals(calls.toString(), "[a, b]");
+    Assert.assertSame(caller[0], Thread.currentThread(), "Called by the script thread");
+    Assert.assertEquals(callbacks.size(), 0);
+    callbacks.runAll();
+    Assert.assertEquals(calls.size(), 2);
+  }
+
+  @Test
+  public void testBoundedAndCleared() {
+    ScriptCallbacks callbacks = new ScriptCallbacks();
+    List<String> calls = new ArrayList<String>();
+    Thread[] caller = new Thread[1];
+    for (int i = 0; i < ScriptCallbacks.MAX_CALLBACKS + 2; i++) {
+      callbacks.add(record(calls, Integer.toString(i), caller));
+    }
+    Assert.assertEquals(callbacks.size(), ScriptCallbacks.MAX_CALLBACKS);
+    callbacks.runAll();
+    Assert.assertEquals(calls.get(0), "2"); // The oldest are lost
+
+    callbacks.add(record(calls, "x", caller));
+    callbacks.clear();
+    callbacks.runAll();
+    Assert.assertEquals(calls.size(), ScriptCallbacks.MAX_CALLBACKS);
+  }
+
+  @Test
+  public void testErrorIsNotCaught() {
+    final ScriptCallbacks callbacks = new ScriptCallbacks();
+    List<String> calls = new ArrayList<String>();
+    Thread[] caller = new Thread[1];
+    callbacks.add(new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException("Script error");
+      }
+    });
+    callbacks.add(record(calls, "next", caller));
+    try {
+      callbacks.runAll();
+      Assert.fail("Error expected");
+    } catch (IllegalStateException ex) {
+      // Expected
+    }
+    Assert.assertEquals(callbacks.size(), 1);
+    callbacks.runAll();
+    Assert.assertEquals(calls.toString(), "[next]");
+  }
+
+  @Test
+  public void testNotReentrant() {
+    final ScriptCallbacks callbacks = new ScriptCallbacks();
+    final List<String> calls = new ArrayList<String>();
+    final Thread[] caller = new Thread[1];
+    callbacks.add(new Runnable() {
+      @Override
+      public void run() {
+        callbacks.add(record(calls, "inner", caller));
+        callbacks.runAll(); // As a function calling ev3.isOk()
+        calls.add("outer");
+      }
+    });
+    callbacks.runAll();
+    Assert.assertEquals(calls.toString(), "[outer, inner]");
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script;
+
+import java.io.ByteArrayOutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Future;
+
+import org.gnikrap.script.ev3api.xsensors.FutureJsonToMapValue.MapXSensorValue;
+import org.gnikrap.script.ev3api.xsensors.XSensor;
+import org.gnikrap.script.ev3api.xsensors.XSensorManager;
+import org.gnikrap.script.ev3api.xsensors.XSensorValue;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class XSensorDatagramReceiverTest {
+
+  private static ScriptExecutionManager newScriptExecutionManager(final XSensorManager xsensorManager) {
+    return new ScriptExecutionManager(null) {
+      @Override
+      public XSensorManager getXSensorManager() {
+        return xsensorManager;
+      }
+
+      @Override
+      public void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value) {
+        sensor.setFutureValue(value);
+      }
+    };
+  }
+
+  private static byte[] buildDatagram(int sequence, String name, String json) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(XSensorDatagramReceiver.VERSION);
+    baos.write(sequence >>> 24);
+    baos.write(sequence >>> 16);
+    baos.write(sequence >>> 8);
+    baos.write(sequence);
+    byte[] n = name.getBytes(StandardCharsets.UTF_8);
+    baos.write(n.length);
+    baos.write(n, 0, n.length);
+    baos.write(0); // Generic XSensor
+    byte[] v = json.getBytes(StandardCharsets.UTF_8);
+    baos.write(v, 0, v.length);
+    return baos.toByteArray();
+  }
+
+  private static int getV(XSensorManager xsensorManager, String name) {
+    return ((MapXSensorValue) xsensorManager.getSensor(name).getValue()).getInt("v", -1);
+  }
+
+  @Test
+  public void testSequencing() {
+    XSensorManager xsensorManager = new XSensorManager();
+    XSensorDatagramReceiver receiver = new XSensorDatagramReceiver(newScriptExecutionManager(xsensorManager), 0);
+    InetAddress localhost = InetAddress.getLoopbackAddress();
+    InetSocketAddress sender1 = new InetSocketAddress(localhost, 1001);
+    InetSocketAddress sender2 = new InetSocketAddress(localhost, 1002);
+
+    byte[] d = buildDatagram(10, "s", "{\"isStarted\": true, \"v\": 10}");
+    Assert.assertTrue(receiver.process(sender1, d, 0, d.length));
+    d = buildDatagram(9, "s", "{\"isStarted\": true, \"v\": 9}");
+    Assert.assertFalse(receiver.process(sender1, d, 0, d.length), "Out of order");
+    d = buildDatagram(10, "s", "{\"isStarted\": true, \"v\": 10}");
+    Assert.assertFalse(receiver.process(sender1, d, 0, d.length), "Duplicated");
+    Assert.assertEquals(getV(xsensorManager, "s"), 10);
+
+    d = buildDatagram(Integer.MIN_VALUE, "s", "{\"isStarted\": true, \"v\": 11}");
+    Assert.assertTrue(receiver.process(sender1, d, 0, d.length), "Sender restarted");
+    d = buildDatagram(0, "s", "{\"isStarted\": true, \"v\": 12}");
+    Assert.assertTrue(receiver.process(sender2, d, 0, d.length), "Another sender");
+    Assert.assertEquals(getV(xsensorManager, "s"), 12);
+
+    d = buildDatagram(1, "s", "{\"isStarted\": true, \"isDelta\": true, \"v\": 13}");
+    Assert.assertFalse(receiver.process(sender2, d, 0, d.length), "Delta");
+    d = buildDatagram(2, "s", "{\"isStarted\": ");
+    Assert.assertFalse(receiver.process(sender2, d, 0, d.length), "Invalid json");
+    Assert.assertFalse(receiver.process(sender2, d, 0, 3), "Truncated");
+    Assert.assertEquals(getV(xsensorManager, "s"), 12);
+  }
+
+  @Test
+  public void testSequencesBounded() {
+    XSensorManager xsensorManager = new XSensorManager();
+    XSensorDatagramReceiver receiver = new XSensorDatagramReceiver(newScriptExecutionManager(xsensorManager), 0);
+    InetSocketAddress sender = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1001);
+    byte[] d = buildDatagram(10, "keep", "{\"isStarted\": true, \"v\": 10}");
+    Assert.assertTrue(receiver.process(sender, d, 0, d.length));
+    for (int i = 0; i < 2 * XSensorDatagramReceiver.MAX_SEQUENCES; i++) {
+      d = buildDatagram(1, "s" + i, "{\"isStarted\": true}");
+      Assert.assertTrue(receiver.process(sender, d, 0, d.length));
+      if (i % 10 == 0) { // Keep "keep" recently updated
+        d = buildDatagram(11 + i, "keep", "{\"isStarted\": true, \"v\": " + (11 + i) + "}");
+        Assert.assertTrue(receiver.process(sender, d, 0, d.length));
+      }
+    }
+    Assert.assertEquals(receiver.getSequenceCount(), XSensorDatagramReceiver.MAX_SEQUENCES);
+    d = buildDatagram(10, "keep", "{\"isStarted\": true, \"v\": 10}");
+    Assert.assertFalse(receiver.process(sender, d, 0, d.length), "Sequence still known");
+  }
+
+  @Test
+  public void testLoopback() throws Exception {
+    XSensorManager xsensorManager = new XSensorManager();
+    XSensorDatagramReceiver receiver = new XSensorDatagramReceiver(newScriptExecutionManager(xsensorManager), 0);
+    receiver.start();
+    try (DatagramSocket sender = new DatagramSocket()) {
+      InetAddress localhost = InetAddress.getLoopbackAddress();
+      for (int seq : new int[] { 1, 3, 2 }) {
+        byte[] d = buildDatagram(seq, "loop", "{\"isStarted\": true, \"v\": " + seq + "}");
+        sender.send(new DatagramPacket(d, d.length, localhost, receiver.getLocalPort()));
+      }
+      long end = System.currentTimeMillis() + 2000;
+      while ((receiver.getAcceptedCount() + receiver.getDroppedCount() < 3) && (System.currentTimeMillis() < end)) {
+        Thread.sleep(10);
+      }
+    } finally {
+      receiver.stop();
+    }
+    Assert.assertEquals(receiver.getAcceptedCount(), 2);
+    Assert.assertEquals(receiver.getDroppedCount(), 1);
+    Assert.assertEquals(getV(xsensorManager, "loop"), 3);
+  }
+}
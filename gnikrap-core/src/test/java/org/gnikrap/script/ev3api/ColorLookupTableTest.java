@@ -0,0 +1,60 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ColorLookupTableTest {
+
+  @Test
+  public void testClassify() {
+    ColorLookupTable table = new ColorLookupTable();
+    Assert.assertNull(table.classify(50, 50, 50)); // No reference
+
+    table.addReference("red", 40, 5, 5);
+    table.addReference("green", 5, 30, 8);
+    table.addReference("white", 60, 60, 60);
+    table.addReference("red", 25, 3, 3); // Same brick, less light
+    Assert.assertEquals(table.getReferenceCount(), 4);
+
+    Assert.assertEquals(table.classify(38, 6, 4), "red");
+    Assert.assertEquals(table.classify(24, 2, 4), "red");
+    Assert.assertEquals(table.classify(6, 28, 9), "green");
+    Assert.assertEquals(table.classify(100, 100, 100), null); // Too far
+    Assert.assertEquals(table.classify(200, 200, 200), null); // Out of range values
+    Assert.assertEquals(table.classify(-10, 200, 0), null);
+
+    table.setMaxDistance(100);
+    Assert.assertEquals(table.classify(100, 100, 100), "white");
+
+    table.clear();
+    Assert.assertNull(table.classify(40, 5, 5));
+  }
+
+  @Test
+  public void testMaxColors() {
+    ColorLookupTable table = new ColorLookupTable();
+    for (int i = 0; i < ColorLookupTable.MAX_COLORS; i++) {
+      Assert.assertTrue(table.addReference("c" + i, i % 100, i / 2, 0), "Should be added");
+    }
+    Assert.assertTrue(table.addReference("c0", 0, 0, 50), "Should be added (existing name)");
+    Assert.assertTrue(!table.addReference("other", 0, 0, 0), "Should not be added");
+    Assert.assertEquals(table.classify(126 % 100, 126 / 2, 0), "c126");
+  }
+}
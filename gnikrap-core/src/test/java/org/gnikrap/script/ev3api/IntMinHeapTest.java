@@ -0,0 +1,51 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class IntMinHeapTest {
+
+  @Test
+  public void testOrder() {
+    IntMinHeap heap = new IntMinHeap(2); // Will grow
+    Random r = new Random(42);
+    int[] priorities = new int[200];
+    for (int i = 0; i < priorities.length; i++) {
+      priorities[i] = r.nextInt(50);
+      heap.push(i, priorities[i]);
+    }
+    Assert.assertEquals(heap.size(), 200);
+    int[] sorted = priorities.clone();
+    Arrays.sort(sorted);
+    for (int i = 0; i < sorted.length; i++) {
+      Assert.assertEquals(heap.peekPriority(), sorted[i]);
+      int value = heap.pop();
+      Assert.assertEquals(priorities[value], sorted[i]);
+    }
+    Assert.assertTrue(heap.isEmpty(), "Heap should be empty");
+
+    heap.push(1, 5);
+    heap.clear();
+    Assert.assertTrue(heap.isEmpty(), "Heap should be empty");
+  }
+}
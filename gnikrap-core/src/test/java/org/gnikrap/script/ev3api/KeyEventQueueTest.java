@@ -0,0 +1,90 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.List;
+
+import org.gnikrap.script.ev3api.SimpleEV3Keyboard.SimpleEV3KeyEvent;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KeyEventQueueTest {
+
+  private static final int UP = 1, ENTER = 2, ESCAPE = 32;
+
+  @Test
+  public void testPressAndRelease() {
+    KeyEventQueue queue = new KeyEventQueue(8);
+    Assert.assertTrue(queue.update(0, 10).isEmpty());
+
+    // Enter and Up pressed at the same time, then Enter released
+    List<SimpleEV3KeyEvent> created = queue.update(UP | ENTER, 20);
+    Assert.assertEquals(created.size(), 2);
+    queue.update(UP, 30);
+    Assert.assertEquals(queue.size(), 3);
+
+    SimpleEV3KeyEvent e = queue.poll();
+    Assert.assertEquals(e.getId(), UP);
+    Assert.assertEquals(e.getName(), "Up");
+    Assert.assertTrue(e.isPressed());
+    Assert.assertEquals(e.getTime(), 20L);
+    e = queue.poll();
+    Assert.assertEquals(e.getId(), ENTER);
+    Assert.assertTrue(e.isPressed());
+    e = queue.poll();
+    Assert.assertEquals(e.getId(), ENTER);
+    Assert.assertTrue(e.isReleased());
+    Assert.assertEquals(e.getTime(), 30L);
+    Assert.assertNull(queue.poll());
+
+    Assert.assertEquals(queue.getPressCount(KeyEventQueue.indexOf(ENTER)), 1);
+    Assert.assertEquals(queue.getReleaseCount(KeyEventQueue.indexOf(ENTER)), 1);
+    Assert.assertEquals(queue.getReleaseCount(KeyEventQueue.indexOf(UP)), 0);
+    Assert.assertEquals(queue.getPressCount(KeyEventQueue.ANY_KEY), 2);
+  }
+
+  @Test
+  public void testBoundedQueue() {
+    KeyEventQueue queue = new KeyEventQueue(4);
+    for (int i = 0; i < 3; i++) {
+      queue.update(ESCAPE, 2 * i);
+      queue.update(0, 2 * i + 1);
+    }
+    // 6 events, only the 4 last are kept
+    Assert.assertEquals(queue.size(), 4);
+    Assert.assertEquals(queue.getLostCount(), 2);
+    Assert.assertEquals(queue.poll().getTime(), 2L);
+    queue.clear();
+    Assert.assertEquals(queue.size(), 0);
+    // Counters are not related to the queue
+    Assert.assertEquals(queue.getPressCount(KeyEventQueue.indexOf(ESCAPE)), 3);
+    Assert.assertEquals(queue.getLastPressed(), ESCAPE);
+  }
+
+  @Test
+  public void testWait() throws InterruptedException {
+    KeyEventQueue queue = new KeyEventQueue(4);
+    int count = queue.getPressCount(KeyEventQueue.ANY_KEY);
+    // Short press between 2 calls is not missed
+    queue.update(ENTER, 1);
+    queue.update(0, 2);
+    Assert.assertTrue(queue.waitPress(KeyEventQueue.ANY_KEY, count, 1000));
+    Assert.assertFalse(queue.waitRelease(KeyEventQueue.indexOf(ENTER), 1, 1));
+    Assert.assertNotNull(queue.poll(1));
+  }
+}
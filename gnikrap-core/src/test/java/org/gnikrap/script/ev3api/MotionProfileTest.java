@@ -0,0 +1,75 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MotionProfileTest {
+
+  private static final float DELTA = 0.01f;
+
+  @Test
+  public void testTrapezoidal() {
+    // 1s to reach 360deg/s, 180deg for each ramp, 1s of cruise
+    MotionProfile p = new MotionProfile(720, 360, 360, false);
+    Assert.assertEquals(p.getDuration(), 3f, DELTA);
+    Assert.assertEquals(p.getPeakSpeed(), 360f, DELTA);
+    Assert.assertEquals(p.getPosition(0), 0f, DELTA);
+    Assert.assertEquals(p.getPosition(0.5f), 45f, DELTA);
+    Assert.assertEquals(p.getPosition(1), 180f, DELTA);
+    Assert.assertEquals(p.getPosition(2), 540f, DELTA);
+    Assert.assertEquals(p.getPosition(2.5f), 675f, DELTA);
+    Assert.assertEquals(p.getPosition(10), 720f, DELTA);
+    Assert.assertEquals(p.getSpeed(0.5f), 180f, DELTA);
+    Assert.assertEquals(p.getSpeed(1.5f), 360f, DELTA);
+    Assert.assertEquals(p.getSpeed(2.75f), 90f, DELTA);
+  }
+
+  @Test
+  public void testShortMove() {
+    // Maximum speed not reached: triangle profile
+    MotionProfile p = new MotionProfile(-100, 1000, 100, false);
+    Assert.assertEquals(p.getPeakSpeed(), 100f, DELTA);
+    Assert.assertEquals(p.getDuration(), 2f, DELTA);
+    Assert.assertEquals(p.getPosition(1), -50f, DELTA);
+    Assert.assertEquals(p.getPosition(2), -100f, DELTA);
+  }
+
+  @Test
+  public void testSCurve() {
+    float maxAcceleration = 500;
+    MotionProfile p = new MotionProfile(1000, 300, maxAcceleration, true);
+    // Continuous and respects the limits
+    float previousPosition = 0;
+    float previousSpeed = 0;
+    float dt = 0.001f;
+    for (float t = dt; t < p.getDuration() + 0.1f; t += dt) {
+      float position = p.getPosition(t);
+      float speed = p.getSpeed(t);
+      Assert.assertTrue(speed <= 300 + DELTA);
+      Assert.assertTrue(Math.abs(speed - previousSpeed) / dt <= maxAcceleration * 1.01f, "Acceleration at " + t);
+      Assert.assertTrue(position >= previousPosition);
+      Assert.assertEquals((position - previousPosition) / dt, (speed + previousSpeed) / 2, 1f, "Speed at " + t);
+      previousPosition = position;
+      previousSpeed = speed;
+    }
+    Assert.assertEquals(p.getPosition(p.getDuration()), 1000f, DELTA);
+    Assert.assertEquals(p.getSpeed(p.getDuration() / 2), 300f, DELTA);
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.gnikrap.script.JsonMessageFields;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ScreenDiffEncoderTest {
+
+  private static final int WIDTH = 20; // 3 bytes by row
+  private static final int HEIGHT = 4;
+
+  /**
+   * Decode the message as the browser does.
+   */
+  private static void decode(ByteBuffer message, byte[] screen) {
+    Assert.assertEquals(message.get(), JsonMessageFields.BINARY_MESSAGE_SCREEN);
+    Assert.assertEquals(message.getShort(), WIDTH);
+    Assert.assertEquals(message.getShort(), HEIGHT);
+    int rows = message.getShort();
+    for (int n = 0; n < rows; n++) {
+      int row = message.getShort() & 0xFFFF;
+      if ((row & ScreenDiffEncoder.RAW_ROW) != 0) {
+        message.get(screen, (row & ~ScreenDiffEncoder.RAW_ROW) * 3, 3);
+        continue;
+      }
+      int i = row * 3;
+      int end = i + 3;
+      while (i < end) {
+        int count = message.get() & 0xFF;
+        byte value = message.get();
+        for (int k = 0; k < count; k++) {
+          screen[i++] = value;
+        }
+      }
+    }
+    Assert.assertEquals(message.remaining(), 0);
+  }
+
+  @Test
+  public void testDiff() {
+    ScreenDiffEncoder encoder = new ScreenDiffEncoder(WIDTH, HEIGHT);
+    byte[] frame = new byte[3 * HEIGHT];
+    byte[] screen = new byte[frame.length];
+    screen[5] = 42;
+
+    // First frame: all the rows (1 run by row)
+    ByteBuffer message = encoder.encode(frame);
+    Assert.assertEquals(message.remaining(), 7 + HEIGHT * 4);
+    decode(message, screen);
+    Assert.assertEquals(Arrays.toString(screen), Arrays.toString(frame));
+
+    // Nothing changed
+    Assert.assertNull(encoder.encode(frame));
+
+    // One row changed
+    frame[6] = (byte) 0xFF;
+    frame[7] = (byte) 0xFF;
+    frame[8] = (byte) 0xFF;
+    message = encoder.encode(frame);
+    Assert.assertEquals(message.remaining(), 7 + 2 + 2);
+    decode(message, screen);
+    Assert.assertEquals(Arrays.toString(screen), Arrays.toString(frame));
+
+    // Noisy row: raw is smaller than the run-length encoding
+    frame[9] = 1;
+    frame[10] = 2;
+    frame[11] = 3;
+    message = encoder.encode(frame);
+    Assert.assertEquals(message.remaining(), 7 + 2 + 3);
+    decode(message, screen);
+    Assert.assertEquals(Arrays.toString(screen), Arrays.toString(frame));
+
+    // Keyframe
+    encoder.requestKeyframe();
+    message = encoder.encode(frame);
+    Assert.assertEquals(message.getShort(5), HEIGHT);
+  }
+
+  @Test
+  public void testKeyframePeriod() {
+    ScreenDiffEncoder encoder = new ScreenDiffEncoder(WIDTH, HEIGHT);
+    byte[] frame = new byte[3 * HEIGHT];
+    Assert.assertNotNull(encoder.encode(frame));
+    for (int i = 1; i < ScreenDiffEncoder.KEYFRAME_PERIOD; i++) {
+      Assert.assertNull(encoder.encode(frame));
+    }
+    Assert.assertNotNull(encoder.encode(frame));
+    Assert.assertNull(encoder.encode(new byte[2])); // Not a frame
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.lang.management.ManagementFactory;
+
+import org.gnikrap.script.ev3api.SimpleEV3ColorSensor.ColorResult;
+import org.gnikrap.script.ev3api.SimpleEV3IRSensor.RemoteCommandResult;
+import org.gnikrap.script.ev3api.SimpleEV3IRSensor.SeekBeaconResult;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import lejos.hardware.sensor.SensorMode;
+import lejos.robotics.Color;
+
+/**
+ * Check that reading the sensors results in a loop doesn't produce garbage.
+ */
+public class SensorResultAllocationTest {
+
+  private static final int LOOPS = 100000;
+
+  /**
+   * Sample values are set by the test.
+   */
+  private static final class FakeSensorMode implements SensorMode {
+    final float[] values;
+
+    FakeSensorMode(int sampleSize) {
+      values = new float[sampleSize];
+    }
+
+    @Override
+    public String getName() {
+      return "Fake";
+    }
+
+    @Override
+    public int sampleSize() {
+      return values.length;
+    }
+
+    @Override
+    public void fetchSample(float[] sample, int offset) {
+      System.arraycopy(values, 0, sample, offset, values.length);
+    }
+  }
+
+  private static long getAllocatedBytes() {
+    java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1; // Not supported by the JVM
+  }
+
+  private static int pollingLoop(SimpleEV3ColorSensor colorSensor, FakeSensorMode colorMode, SimpleEV3IRSensor irSensor, int[] remoteCommands,
+      FakeSensorMode seekMode) {
+    int result = 0;
+    for (int i = 0; i < LOOPS; i++) {
+      colorMode.values[0] = (i % 15) + Color.NONE;
+      remoteCommands[0] = i % 12;
+      seekMode.values[1] = i % 100;
+      ColorResult color = colorSensor.getColor();
+      RemoteCommandResult remote = irSensor.getRemoteCommand();
+      SeekBeaconResult seek = irSensor.seekBeacon(true);
+      result += color.getValue() + remote.getValue() + seek.getDistance();
+    }
+    return result;
+  }
+
+  @Test
+  public void testSharedResults() {
+    Assert.assertSame(ColorResult.valueOf(Color.RED), ColorResult.valueOf(Color.RED));
+    Assert.assertTrue(ColorResult.valueOf(Color.BLUE).isBlue());
+    Assert.assertTrue(ColorResult.valueOf(Color.NONE).isNoColor());
+    Assert.assertEquals(ColorResult.valueOf(42).getValue(), 42);
+    Assert.assertSame(RemoteCommandResult.valueOf(9), RemoteCommandResult.valueOf(9));
+    Assert.assertTrue(RemoteCommandResult.valueOf(9).isBeaconEnabled());
+    Assert.assertEquals(RemoteCommandResult.valueOf(-1).getValue(), -1);
+  }
+
+  @Test
+  public void testSteadyStatePollingDoesNotAllocate() throws Exception {
+    FakeSensorMode colorMode = new FakeSensorMode(1);
+    SimpleEV3ColorSensor colorSensor = new SimpleEV3ColorSensor(null, EV3Constants.S1, new FakeSensorMode(1), new FakeSensorMode(1), colorMode,
+        new FakeSensorMode(3));
+    FakeSensorMode seekMode = new FakeSensorMode(8);
+    final int[] remoteCommands = new int[4];
+    SimpleEV3IRSensor irSensor = new SimpleEV3IRSensor(null, EV3Constants.S4, new FakeSensorMode(1), seekMode, new SimpleEV3IRSensor.RemoteCommandSource() {
+      @Override
+      public int getRemoteCommand(int chan) {
+        return remoteCommands[chan];
+      }
+    });
+    try {
+      pollingLoop(colorSensor, colorMode, irSensor, remoteCommands, seekMode); // Warm-up (class loading, JIT)
+
+      // Keep the best run: a JIT recompilation can allocate a few bytes during a run
+      long allocated = Long.MAX_VALUE;
+      int result = 0;
+      for (int i = 0; i < 3; i++) {
+        long before = getAllocatedBytes();
+        result += pollingLoop(colorSensor, colorMode, irSensor, remoteCommands, seekMode);
+        allocated = Math.min(allocated, getAllocatedBytes() - before);
+      }
+      if (getAllocatedBytes() >= 0) {
+        // One object by loop would be at least 16 bytes * LOOPS
+        Assert.assertTrue(allocated < 1024, "Allocated " + allocated + " bytes (result: " + result + ")");
+      }
+    } finally {
+      colorSensor.release();
+      irSensor.release();
+    }
+  }
+
+  @Test
+  public void testColorSensorSharedResults() {
+    FakeSensorMode colorMode = new FakeSensorMode(1);
+    SimpleEV3ColorSensor sensor = new SimpleEV3ColorSensor(null, EV3Constants.S1, new FakeSensorMode(1), new FakeSensorMode(1), colorMode,
+        new FakeSensorMode(3));
+    try {
+      colorMode.values[0] = Color.RED;
+      ColorResult first = sensor.getColor();
+      Assert.assertTrue(first.isRed());
+      Assert.assertSame(sensor.getColor(), first, "Same color, same result");
+
+      colorMode.values[0] = Color.BLUE;
+      ColorResult blue = sensor.getColor();
+      Assert.assertTrue(blue.isBlue());
+      Assert.assertSame(blue, ColorResult.valueOf(Color.BLUE), "Shared result");
+    } finally {
+      sensor.release();
+    }
+  }
+
+  @Test
+  public void testIRSensorReusedResults() throws Exception {
+    FakeSensorMode seekMode = new FakeSensorMode(8);
+    final int[] remoteCommands = new int[4];
+    SimpleEV3IRSensor sensor = new SimpleEV3IRSensor(null, EV3Constants.S4, new FakeSensorMode(1), seekMode, new SimpleEV3IRSensor.RemoteCommandSource() {
+      @Override
+      public int getRemoteCommand(int chan) {
+        return remoteCommands[chan];
+      }
+    });
+    try {
+      // Remote command
+      remoteCommands[0] = 9;
+      RemoteCommandResult remote = sensor.getRemoteCommand();
+      Assert.assertTrue(remote.isBeaconEnabled());
+      Assert.assertSame(sensor.getRemoteCommand(), remote, "Same command, same result");
+      sensor.setChannel(2);
+      remoteCommands[1] = 1;
+      Assert.assertTrue(sensor.getRemoteCommand().isTopLeftEnabled());
+      Assert.assertSame(sensor.getRemoteCommand(), RemoteCommandResult.valueOf(1), "Shared result");
+
+      // Seek beacon (channel 2)
+      seekMode.values[2] = -5;
+      seekMode.values[3] = 40;
+      SeekBeaconResult seek = sensor.seekBeacon(true);
+      Assert.assertEquals(seek.getBearing(), -5);
+      Assert.assertEquals(seek.getDistance(), 40);
+      seekMode.values[2] = 3;
+      seekMode.values[3] = 20;
+      Assert.assertSame(sensor.seekBeacon(true), seek, "Reused result");
+      Assert.assertEquals(seek.getBearing(), 3);
+      Assert.assertEquals(seek.getDistance(), 20);
+
+      // Without reuse, a new result not updated by the next reading
+      SeekBeaconResult notReused = sensor.seekBeacon(false);
+      Assert.assertFalse(notReused == seek);
+      seekMode.values[3] = 10;
+      Assert.assertSame(sensor.seekBeacon(true), seek, "Reused result");
+      Assert.assertEquals(seek.getDistance(), 10);
+      Assert.assertEquals(notReused.getDistance(), 20);
+    } finally {
+      sensor.release();
+    }
+  }
+}
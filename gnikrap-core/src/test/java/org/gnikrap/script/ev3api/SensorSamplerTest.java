@@ -0,0 +1,120 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import lejos.robotics.SampleProvider;
+
+public class SensorSamplerTest {
+
+  /**
+   * Sample is the number of fetch done.
+   */
+  private static final class CountingSampleProvider implements SampleProvider {
+    int count;
+
+    @Override
+    public int sampleSize() {
+      return 1;
+    }
+
+    @Override
+    public void fetchSample(float[] sample, int offset) {
+      sample[offset] = ++count;
+    }
+  }
+
+  /**
+   * The periodic tasks are only run by {@link #tick()}, in the test thread.
+   */
+  private static final class ManualExecutor extends ScheduledThreadPoolExecutor {
+    private final List<Runnable> tasks = new ArrayList<Runnable>();
+    private final List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+
+    ManualExecutor() {
+      super(1);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+      ScheduledFuture<?> result = schedule(new Runnable() {
+        @Override
+        public void run() {
+          // Never run during the test, only used for the cancellation
+        }
+      }, 1, TimeUnit.DAYS);
+      tasks.add(command);
+      futures.add(result);
+      return result;
+    }
+
+    void tick() {
+      for (int i = 0; i < tasks.size(); i++) {
+        if (!futures.get(i).isCancelled()) {
+          tasks.get(i).run();
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBackgroundSampling() throws Exception {
+    ManualExecutor executor = new ManualExecutor();
+    SensorSampler sampler = new SensorSampler("test", executor);
+    CountingSampleProvider mode = new CountingSampleProvider();
+    float[] sample = new float[1];
+    try {
+      // On demand
+      sampler.fetchSample(mode, sample);
+      Assert.assertEquals(sample[0], 1f);
+      Assert.assertEquals(sampler.getAge(mode), 0);
+
+      // Background: the first sample is fetched by start, reading doesn't fetch
+      sampler.start(mode, SensorSampler.MIN_PERIOD_IN_MS);
+      sampler.fetchSample(mode, sample);
+      sampler.fetchSample(mode, sample);
+      Assert.assertEquals(sample[0], 2f);
+      Assert.assertEquals(mode.count, 2);
+
+      // The value changes with the background sampling
+      executor.tick();
+      executor.tick();
+      sampler.fetchSample(mode, sample);
+      Assert.assertEquals(sample[0], 4f);
+      Assert.assertTrue(sampler.getAge(mode) < 1000);
+
+      // Back to on demand
+      sampler.stop(mode);
+      executor.tick();
+      Assert.assertEquals(mode.count, 4);
+      sampler.fetchSample(mode, sample);
+      Assert.assertEquals(sample[0], 5f);
+      Assert.assertEquals(sampler.getAge(mode), 0);
+    } finally {
+      sampler.release();
+    }
+  }
+}
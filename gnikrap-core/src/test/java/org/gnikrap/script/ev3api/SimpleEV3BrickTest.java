@@ -0,0 +1,79 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Only the checks done without hardware access (the brick itself can't be built off-brick).
+ */
+public class SimpleEV3BrickTest {
+
+  private static void checkDeviceFails(String device, String expectedCode) {
+    try {
+      SimpleEV3Brick.checkDevice(device);
+      Assert.fail("EV3ScriptException expected for " + device);
+    } catch (EV3ScriptException ex) {
+      Assert.assertEquals(ex.getCode(), expectedCode);
+    }
+  }
+
+  @Test
+  public void testCheckDevice() throws EV3ScriptException {
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("LargeMotor:A"), SimpleEV3LargeMotor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("MediumMotor:D"), SimpleEV3MediumMotor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("ColorSensor:S1"), SimpleEV3ColorSensor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("IRSensor:4"), SimpleEV3IRSensor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("TouchSensor:S2"), SimpleEV3TouchSensor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("UltrasonicSensor:S3"), SimpleEV3UltrasonicSensor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("NXTSoundSensor:S1"), SimpleNXTSoundSensor.class);
+    Assert.assertEquals(SimpleEV3Brick.checkDevice("GyroSensor:S2"), SimpleEV3GyroSensor.class);
+  }
+
+  @Test
+  public void testCheckInvalidDevices() {
+    checkDeviceFails(null, EV3ScriptException.INVALID_DEVICE);
+    checkDeviceFails("ColorSensor", EV3ScriptException.INVALID_DEVICE);
+    checkDeviceFails(":S1", EV3ScriptException.INVALID_DEVICE);
+    checkDeviceFails("GPSSensor:S1", EV3ScriptException.INVALID_DEVICE);
+    checkDeviceFails("ColorSensor:S5", EV3ScriptException.INVALID_SENSOR_PORT);
+    checkDeviceFails("ColorSensor:A", EV3ScriptException.INVALID_SENSOR_PORT);
+    checkDeviceFails("MediumMotor:S1", EV3ScriptException.INVALID_MOTOR_PORT);
+    checkDeviceFails("LargeMotor:", EV3ScriptException.INVALID_MOTOR_PORT);
+  }
+
+  @Test
+  public void testPortNames() throws EV3ScriptException {
+    Assert.assertEquals(SimpleEV3Brick.getSensorPortName("1"), EV3Constants.S1);
+    Assert.assertEquals(SimpleEV3Brick.getSensorPortName("S4"), EV3Constants.S4);
+    Assert.assertEquals(SimpleEV3Brick.getMotorPortName("C"), EV3Constants.C);
+  }
+
+  @Test
+  public void testCheckDevices() throws EV3ScriptException {
+    Assert.assertEquals(SimpleEV3Brick.checkDevices("LargeMotor:A", "ColorSensor:1", "ColorSensor:S1", "LargeMotor:A").toString(),
+        "{LargeMotor:A=A, ColorSensor:1=S1}");
+    try {
+      SimpleEV3Brick.checkDevices("ColorSensor:S1", "TouchSensor:1");
+      Assert.fail("EV3ScriptException expected");
+    } catch (EV3ScriptException ex) {
+      Assert.assertEquals(ex.getCode(), EV3ScriptException.INVALID_DEVICE);
+    }
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3FilterTest {
+
+  private final SimpleEV3Filters filters = new SimpleEV3Filters();
+
+  @Test
+  public void testMovingAverage() throws EV3ScriptException {
+    SimpleEV3Filter f = filters.movingAverage(3);
+    Assert.assertEquals(f.update(3), 3f);
+    Assert.assertEquals(f.update(6), 4.5f);
+    Assert.assertEquals(f.update(9), 6f);
+    Assert.assertEquals(f.update(12), 9f); // 3 is no more in the window
+    Assert.assertEquals(f.update(Float.NaN), 9f);
+    Assert.assertEquals(f.getCount(), 4);
+    f.reset();
+    Assert.assertEquals(f.update(1), 1f);
+  }
+
+  @Test
+  public void testMedian() throws EV3ScriptException {
+    SimpleEV3Filter f = filters.median(3);
+    Assert.assertEquals(f.update(10), 10f);
+    Assert.assertEquals(f.update(20), 15f);
+    Assert.assertEquals(f.update(255), 20f); // Isolated wrong value removed
+    Assert.assertEquals(f.update(21), 21f);
+    Assert.assertEquals(f.update(22), 22f);
+    Assert.assertEquals(f.update(22), 22f);
+    Assert.assertEquals(f.update(5), 22f);
+    Assert.assertEquals(f.update(5), 5f);
+  }
+
+  @Test
+  public void testEmaAndKalman() throws EV3ScriptException {
+    SimpleEV3Filter ema = filters.ema(0.5f);
+    Assert.assertEquals(ema.update(10), 10f);
+    Assert.assertEquals(ema.update(20), 15f);
+    Assert.assertEquals(ema.update(20), 17.5f);
+
+    SimpleEV3Filter kalman = filters.kalman(0.01f, 4f);
+    kalman.update(50);
+    for (int i = 0; i < 200; i++) {
+      kalman.update((i % 2 == 0) ? 58 : 62);
+    }
+    Assert.assertEquals(kalman.get(), 60f, 1.5f);
+  }
+
+  @Test
+  public void testHysteresisAndSource() throws EV3ScriptException {
+    final float[] values = { 10, 45, 55, 45, 35, 45 };
+    final int[] index = { 0 };
+    SimpleEV3Filter f = filters.hysteresis(40, 50).wrap(new SimpleEV3Filter.Source() {
+      @Override
+      public float read() {
+        return values[index[0]++];
+      }
+    });
+    float[] expected = { 0, 0, 1, 1, 0, 0 };
+    for (float e : expected) {
+      Assert.assertEquals(f.read(), e);
+    }
+  }
+
+  @Test
+  public void testInfiniteValuesIgnored() throws EV3ScriptException {
+    SimpleEV3Filter[] all = { filters.movingAverage(3), filters.median(3), filters.ema(0.5f), filters.kalman(0.01f, 4f), filters.hysteresis(40, 50) };
+    for (SimpleEV3Filter f : all) {
+      Assert.assertEquals(f.update(Float.POSITIVE_INFINITY), 0f);
+      Assert.assertEquals(f.getCount(), 0);
+      f.update(60);
+      float before = f.update(60);
+      Assert.assertEquals(f.update(Float.POSITIVE_INFINITY), before);
+      Assert.assertEquals(f.update(Float.NEGATIVE_INFINITY), before);
+      Assert.assertEquals(f.getCount(), 2);
+      // Still working with the next values
+      for (int i = 0; i < 10; i++) {
+        f.update(60);
+      }
+      float expected = (f instanceof SimpleEV3Filter.Hysteresis ? 1f : 60f); // 60 is above the high threshold
+      Assert.assertEquals(f.get(), expected, 0.01f);
+    }
+  }
+
+  @Test
+  public void testInvalidParameters() {
+    try {
+      filters.median(0);
+      Assert.fail("EV3ScriptException expected");
+    } catch (EV3ScriptException ex) {
+      Assert.assertEquals(ex.getCode(), EV3ScriptException.INVALID_FILTER);
+    }
+    try {
+      filters.ema(1.5f);
+      Assert.fail("EV3ScriptException expected");
+    } catch (EV3ScriptException ex) {
+      Assert.assertEquals(ex.getCode(), EV3ScriptException.INVALID_FILTER);
+    }
+  }
+}
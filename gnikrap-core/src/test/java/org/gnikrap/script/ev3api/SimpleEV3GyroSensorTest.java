@@ -0,0 +1,61 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.gnikrap.script.ev3api.SimpleEV3GyroSensor.GyroIntegrator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3GyroSensorTest {
+
+  private static final long MS = 1000000L; // In ns
+
+  @Test
+  public void testIntegration() {
+    GyroIntegrator i = new GyroIntegrator(2); // Bias of 2 deg/s
+    long t = 0;
+    // 90 deg/s during 1s (sampled every 5ms)
+    for (int k = 0; k <= 200; k++) {
+      i.update(92, t);
+      t += 5 * MS;
+    }
+    Assert.assertEquals(i.getAngle(), 90f, 0.5f);
+    Assert.assertEquals(i.getRate(), 90f, 0.01f);
+
+    i.resetAngle();
+    Assert.assertEquals(i.getAngle(), 0f, 0.001f);
+    i.update(-88, t);
+    t += 10 * MS;
+    i.update(-88, t);
+    Assert.assertEquals(i.getAngle(), -0.9f, 0.01f);
+  }
+
+  @Test
+  public void testDriftCompensation() {
+    // Real bias is 1 deg/s but measured 0 at start
+    GyroIntegrator i = new GyroIntegrator(0);
+    long t = 0;
+    for (int k = 0; k < 10000; k++) {
+      i.update(1, t);
+      t += 5 * MS;
+    }
+    Assert.assertEquals(i.getBias(), 1f, 0.01f);
+    // Without the compensation, the angle would be 50 degrees
+    Assert.assertTrue(Math.abs(i.getAngle()) < 5, "Angle: " + i.getAngle());
+  }
+}
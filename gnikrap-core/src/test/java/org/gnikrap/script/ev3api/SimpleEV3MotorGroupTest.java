@@ -0,0 +1,43 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3MotorGroupTest {
+
+  @Test
+  public void testRatios() {
+    float[] ratios = SimpleEV3MotorGroup.getRatios(new int[] { 90, -180, 0, 45 });
+    Assert.assertEquals(ratios.length, 4);
+    Assert.assertEquals(ratios[0], 0.5f, 0.0001f);
+    Assert.assertEquals(ratios[1], 1f, 0.0001f); // The biggest angle, whatever the direction
+    Assert.assertEquals(ratios[2], 0f, 0.0001f);
+    Assert.assertEquals(ratios[3], 0.25f, 0.0001f);
+
+    ratios = SimpleEV3MotorGroup.getRatios(new int[] { -360, -360 });
+    Assert.assertEquals(ratios[0], 1f, 0.0001f);
+    Assert.assertEquals(ratios[1], 1f, 0.0001f);
+  }
+
+  @Test
+  public void testRatiosNoMove() {
+    Assert.assertNull(SimpleEV3MotorGroup.getRatios(new int[] { 0, 0, 0 }));
+  }
+}
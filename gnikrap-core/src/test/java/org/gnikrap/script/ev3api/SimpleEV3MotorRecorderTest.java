@@ -0,0 +1,89 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import lejos.hardware.motor.BaseRegulatedMotor;
+
+import org.gnikrap.script.JsonMessageFields;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3MotorRecorderTest {
+
+  private static SimpleEV3MotorRecorder newRecorder(int capacity) {
+    return new SimpleEV3MotorRecorder(null, new String[] { "A", "C" }, new BaseRegulatedMotor[2], 1, capacity);
+  }
+
+  private static void record(SimpleEV3MotorRecorder r, int from, int to) {
+    for (int i = from; i < to; i++) {
+      r.record(i * 10, new int[] { i, -i }, new int[] { 2 * i, -2 * i });
+    }
+  }
+
+  @Test
+  public void testRingBuffer() {
+    SimpleEV3MotorRecorder r = newRecorder(4);
+    Assert.assertEquals(r.getPeriod(), SimpleEV3MotorRecorder.MIN_PERIOD_IN_MS);
+    Assert.assertEquals(r.getTimes().length, 0);
+
+    record(r, 0, 3);
+    Assert.assertEquals(r.getSize(), 3);
+    Assert.assertEquals(Arrays.toString(r.getTimes()), "[0, 10, 20]");
+
+    // Overflow: oldest first
+    record(r, 3, 6);
+    Assert.assertEquals(r.getSize(), 4);
+    Assert.assertEquals(Arrays.toString(r.getTimes()), "[20, 30, 40, 50]");
+    Assert.assertEquals(Arrays.toString(r.getTachoCounts(0)), "[2, 3, 4, 5]");
+    Assert.assertEquals(Arrays.toString(r.getSpeeds(1)), "[-4, -6, -8, -10]");
+
+    r.clear();
+    Assert.assertEquals(r.getSize(), 0);
+  }
+
+  @Test
+  public void testChunks() {
+    SimpleEV3MotorRecorder r = newRecorder(4);
+    record(r, 0, 2);
+    ByteBuffer chunk = r.nextChunk();
+    Assert.assertEquals(chunk.get(), JsonMessageFields.BINARY_MESSAGE_MOTOR_TELEMETRY);
+    Assert.assertEquals(chunk.get(), 2); // Motors
+    Assert.assertEquals(chunk.getShort(), 2); // Samples
+    Assert.assertEquals(chunk.get(), 'A');
+    Assert.assertEquals(chunk.get(), 'C');
+    chunk.position(chunk.position() + 4 + 6 + 6); // Skip first sample
+    Assert.assertEquals(chunk.getInt(), 10);
+    Assert.assertEquals(chunk.getInt(), 1);
+    Assert.assertEquals(chunk.getShort(), 2);
+    Assert.assertEquals(chunk.getInt(), -1);
+    Assert.assertEquals(chunk.getShort(), -2);
+    Assert.assertFalse(chunk.hasRemaining());
+    Assert.assertNull(r.nextChunk());
+
+    // Samples overwritten before having been streamed are lost
+    record(r, 2, 8);
+    chunk = r.nextChunk();
+    chunk.position(2);
+    Assert.assertEquals(chunk.getShort(), 4);
+    chunk.position(6);
+    Assert.assertEquals(chunk.getInt(), 40);
+  }
+}
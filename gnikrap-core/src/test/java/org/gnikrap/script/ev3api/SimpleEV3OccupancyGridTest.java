@@ -0,0 +1,82 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3OccupancyGridTest {
+
+  private static SimpleEV3OccupancyGrid newGridWithWall() {
+    SimpleEV3OccupancyGrid grid = new SimpleEV3OccupancyGrid(100, 100, 1);
+    // Obstacle at 20 in front of the robot
+    for (int i = 0; i < 3; i++) {
+      grid.addReading(0.5f, 0.5f, 0, 20, 50);
+    }
+    return grid;
+  }
+
+  @Test
+  public void testReadings() {
+    SimpleEV3OccupancyGrid grid = newGridWithWall();
+    Assert.assertEquals(grid.getState(20.5f, 0.5f), 1);
+    Assert.assertEquals(grid.getState(10.5f, 0.5f), 0);
+    Assert.assertEquals(grid.getState(0.5f, 10.5f), -1); // Never seen
+    Assert.assertEquals(grid.getState(500, 0), -1); // Outside
+    Assert.assertTrue(grid.getProbability(20.5f, 0.5f) > 0.9f);
+    Assert.assertTrue(grid.getProbability(10.5f, 0.5f) < 0.3f);
+
+    // Nothing seen up to the max range: only free cells
+    grid.addReading(0.5f, 0.5f, 90, 80, 30);
+    Assert.assertEquals(grid.getCellState(50, 60), -1);
+    grid.addReading(0.5f, 0.5f, 90, 80, 30);
+    grid.addReading(0.5f, 0.5f, 90, 80, 30);
+    Assert.assertEquals(grid.getCellState(50, 60), 0);
+    Assert.assertEquals(grid.getCellState(50, 85), -1); // After the max range
+  }
+
+  @Test
+  public void testQueries() {
+    SimpleEV3OccupancyGrid grid = newGridWithWall();
+    Assert.assertEquals(grid.castRay(0.5f, 0.5f, 0, 50), 19.5f, 0.01f);
+    Assert.assertEquals(grid.castRay(0.5f, 0.5f, 180, 50), -1f);
+    Assert.assertEquals(grid.castRay(0.5f, 0.5f, 0, 10), -1f);
+
+    Assert.assertEquals(grid.getNearestObstacleDistance(0.5f, 5.5f, 30), (float) Math.sqrt(20 * 20 + 5 * 5), 0.01f);
+    Assert.assertEquals(grid.getNearestObstacleDistance(0.5f, 5.5f, 10), -1f);
+
+    grid.setState(-10.5f, 0.5f, true);
+    Assert.assertEquals(grid.getNearestObstacleDistance(0.5f, 5.5f, 30), (float) Math.sqrt(11 * 11 + 5 * 5), 0.01f);
+    grid.clear();
+    Assert.assertEquals(grid.getState(20.5f, 0.5f), -1);
+  }
+
+  @Test
+  public void testImage() {
+    SimpleEV3OccupancyGrid grid = newGridWithWall();
+    byte[] data = grid.toImage().getImage().getData();
+    int bytesByLine = (100 + 7) / 8;
+    // Cell (70, 50) is the pixel (70, 49) as the image first line is the top of the grid
+    Assert.assertEquals(data[49 * bytesByLine + 70 / 8], (byte) (1 << (70 % 8)));
+    int count = 0;
+    for (byte b : data) {
+      count += Integer.bitCount(b & 0xFF);
+    }
+    Assert.assertEquals(count, 1);
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.gnikrap.script.ev3api.SimpleEV3Odometry.Pose;
+import org.gnikrap.script.ev3api.SimpleEV3Odometry.PoseIntegrator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3OdometryTest {
+
+  // Wheel of 3.6/PI cm => 1 degree is 0.01 cm
+  private static final float WHEEL_DIAMETER = (float) (3.6 / Math.PI);
+
+  private static int toDegrees(double cm) {
+    return (int) Math.round(cm * 100);
+  }
+
+  @Test
+  public void testStraightAndTurn() {
+    PoseIntegrator p = new PoseIntegrator(WHEEL_DIAMETER, 10);
+    p.update(1000, 2000, Float.NaN); // First update only initialize
+    Assert.assertEquals(p.getX(), 0f, 0.001f);
+
+    // 100 cm straight
+    for (int i = 1; i <= 10; i++) {
+      p.update(1000 + toDegrees(10 * i), 2000 + toDegrees(10 * i), Float.NaN);
+    }
+    Assert.assertEquals(p.getX(), 100f, 0.01f);
+    Assert.assertEquals(p.getY(), 0f, 0.01f);
+
+    // Turn 90 degrees left in place: each wheel moves PI * 10 / 4 cm
+    for (int i = 1; i <= 100; i++) {
+      int d = toDegrees(Math.PI * 10 / 4 * i / 100);
+      p.update(1000 + toDegrees(100) - d, 2000 + toDegrees(100) + d, Float.NaN);
+    }
+    Assert.assertEquals(p.getHeading(), 90f, 0.5f);
+    Assert.assertEquals(p.getX(), 100f, 0.01f);
+    Assert.assertEquals(p.getDistance(), 100f, 0.01f);
+  }
+
+  @Test
+  public void testArc() {
+    // Quarter of circle with a radius of 20 cm (center of the robot)
+    PoseIntegrator p = new PoseIntegrator(WHEEL_DIAMETER, 10);
+    p.update(0, 0, Float.NaN);
+    double leftLength = Math.PI / 2 * 15, rightLength = Math.PI / 2 * 25;
+    for (int i = 1; i <= 100; i++) {
+      p.update(toDegrees(leftLength * i / 100), toDegrees(rightLength * i / 100), Float.NaN);
+    }
+    Assert.assertEquals(p.getX(), 20f, 0.1f);
+    Assert.assertEquals(p.getY(), 20f, 0.1f);
+    Assert.assertEquals(p.getHeading(), 90f, 0.5f);
+  }
+
+  @Test
+  public void testGyroFusion() {
+    PoseIntegrator p = new PoseIntegrator(WHEEL_DIAMETER, 10);
+    p.setGyroWeight(1);
+    p.update(0, 0, 0);
+    // The wheels slip: they see a 90 degrees turn while the gyro sees 45 degrees
+    int quarter = toDegrees(Math.PI * 10 / 4);
+    p.update(-quarter, quarter, 45);
+    Assert.assertEquals(p.getHeading(), 45f, 0.01f);
+
+    p.setPose(5, 6, 270);
+    Pose pose = p.getPose();
+    Assert.assertEquals(pose.x, 5f, 0.001f);
+    Assert.assertEquals(pose.heading, -90f, 0.001f);
+  }
+}
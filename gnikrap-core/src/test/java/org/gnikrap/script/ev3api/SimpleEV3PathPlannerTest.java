@@ -0,0 +1,97 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3PathPlannerTest {
+
+  private static final String[] MAZE = { //
+  "     ", //
+      " ### ", //
+      "   # ", //
+      "## # ", //
+      "   # " };
+
+  @Test
+  public void testFourConnected() {
+    SimpleEV3PathPlanner planner = SimpleEV3PathPlanner.fromRows(MAZE);
+    Assert.assertEquals(planner.getWidth(), 5);
+    Assert.assertEquals(planner.getHeight(), 5);
+    Assert.assertTrue(planner.isWall(1, 1), "Should be a wall");
+    Assert.assertTrue(planner.isWall(-1, 0), "Outside should be a wall");
+
+    int[] path = planner.findPath(0, 4, 2, 2);
+    // (0,4) -> (2,4) -> (2,2)
+    Assert.assertEquals(Arrays.toString(path), "[0, 4, 2, 4, 2, 2]");
+    Assert.assertEquals(planner.getLastPathCost(), 40);
+
+    path = planner.findPath(0, 4, 4, 4);
+    // Around the walls: (0,4) -> (2,4) -> (2,2) -> (0,2) -> (0,0) -> (4,0) -> (4,4)
+    Assert.assertEquals(Arrays.toString(path), "[0, 4, 2, 4, 2, 2, 0, 2, 0, 0, 4, 0, 4, 4]");
+    Assert.assertEquals(planner.getLastPathCost(), 160);
+
+    // Same cost with Dijkstra
+    planner.setDijkstra(true);
+    planner.findPath(0, 4, 4, 4);
+    Assert.assertEquals(planner.getLastPathCost(), 160);
+  }
+
+  @Test
+  public void testEightConnected() {
+    SimpleEV3PathPlanner planner = SimpleEV3PathPlanner.fromRows(new String[] { "....", "....", "....", "...." }).setEightConnected(true);
+    Assert.assertEquals(Arrays.toString(planner.findPath(0, 0, 3, 3)), "[0, 0, 3, 3]");
+    Assert.assertEquals(planner.getLastPathCost(), 42);
+
+    // Can't cut the corner of a wall
+    planner.setWall(1, 0, true);
+    Assert.assertEquals(Arrays.toString(planner.findPath(0, 0, 1, 1)), "[0, 0, 0, 1, 1, 1]");
+    Assert.assertEquals(planner.getLastPathCost(), 20);
+  }
+
+  @Test
+  public void testNoPath() {
+    SimpleEV3PathPlanner planner = SimpleEV3PathPlanner.fromRows(new String[] { "  #  ", "  #  " });
+    Assert.assertEquals(planner.findPath(0, 0, 4, 0).length, 0);
+    Assert.assertEquals(planner.getLastPathCost(), -1);
+    Assert.assertEquals(planner.findPath(0, 0, 2, 0).length, 0); // Goal in a wall
+
+    planner.setWall(2, 1, false);
+    int[] path = planner.findPath(0, 0, 4, 0);
+    Assert.assertEquals(planner.getLastPathCost(), 60); // Through the hole
+    Assert.assertEquals(Arrays.toString(Arrays.copyOfRange(path, path.length - 4, path.length)), "[4, 1, 4, 0]");
+    Assert.assertEquals(Arrays.toString(planner.findPath(1, 1, 1, 1)), "[1, 1]");
+    Assert.assertEquals(planner.getLastPathCost(), 0);
+  }
+
+  @Test
+  public void testFromGrid() {
+    SimpleEV3OccupancyGrid grid = new SimpleEV3OccupancyGrid(10, 10, 1);
+    for (int i = 0; i < 3; i++) {
+      grid.setState(0.5f, 2.5f, true);
+    }
+    SimpleEV3PathPlanner planner = SimpleEV3PathPlanner.fromGrid(grid);
+    int column = grid.toColumn(0.5f);
+    int row = grid.toRow(2.5f);
+    Assert.assertTrue(planner.isWall(column, row), "Should be a wall");
+    Assert.assertTrue(!planner.isWall(column, row + 1), "Should not be a wall");
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import lejos.hardware.lcd.Image;
+
+import org.gnikrap.script.ev3api.SimpleEV3Screen.DirtyRegion;
+import org.gnikrap.script.ev3api.SimpleEV3Screen.SimpleEV3Image;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3ScreenTest {
+
+  @Test
+  public void testDirtyRegion() {
+    DirtyRegion dirty = new DirtyRegion();
+    dirty.clear(178, 128);
+    Assert.assertTrue(dirty.isEmpty());
+
+    dirty.add(10, 20, 5, 5);
+    dirty.add(30, 2, 1, 1);
+    Assert.assertFalse(dirty.isEmpty());
+    Assert.assertEquals(dirty.minX, 10);
+    Assert.assertEquals(dirty.minY, 2);
+    Assert.assertEquals(dirty.getWidth(), 21);
+    Assert.assertEquals(dirty.getHeight(), 23);
+
+    // Clipped to the screen
+    dirty.add(-10, 120, 500, 50);
+    Assert.assertEquals(dirty.minX, 0);
+    Assert.assertEquals(dirty.getWidth(), 178);
+    Assert.assertEquals(dirty.maxY, 128);
+
+    // Out of the screen
+    dirty.clear(178, 128);
+    dirty.add(200, 10, 10, 10);
+    Assert.assertTrue(dirty.isEmpty());
+  }
+
+  private static SimpleEV3Image newImage(int width, int height) {
+    return new SimpleEV3Image(new Image(width, height, new byte[(width + 7) / 8 * height]));
+  }
+
+  @Test
+  public void testImageCache() {
+    ImageCache cache = new ImageCache(100);
+    SimpleEV3Image img1 = newImage(16, 20); // 40 bytes
+    SimpleEV3Image img2 = newImage(8, 40);
+    cache.put("img1", 0, img1);
+    cache.put("img2", 0, img2);
+    Assert.assertEquals(cache.getSizeInBytes(), 80);
+    Assert.assertSame(cache.get("img1"), img1);
+
+    // img2 is the least recently used
+    cache.put("img3", 0, newImage(8, 40));
+    Assert.assertEquals(cache.size(), 2);
+    Assert.assertEquals(cache.getSizeInBytes(), 80);
+    Assert.assertNull(cache.get("img2"));
+    Assert.assertSame(cache.get("img1"), img1);
+
+    // Too big image: kept alone
+    SimpleEV3Image big = newImage(80, 20);
+    cache.put("big", 0, big);
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertSame(cache.get("big"), big);
+
+    // The key size is counted (eg. a data URI bigger than its image)
+    cache.clear();
+    cache.put("img1", 0, img1);
+    cache.put("uri", 70, newImage(8, 2));
+    Assert.assertEquals(cache.size(), 1);
+    Assert.assertEquals(cache.getSizeInBytes(), 72);
+    Assert.assertNull(cache.get("img1"));
+  }
+}
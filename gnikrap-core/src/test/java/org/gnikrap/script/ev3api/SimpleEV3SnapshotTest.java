@@ -0,0 +1,86 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SimpleEV3SnapshotTest {
+
+  /** Device with two values: kind 0 is an integer counter, kind 1 is a decimal value */
+  private static class CountingReader extends SimpleEV3Snapshot.DeviceReader {
+    private final int step;
+    int fetchCount;
+
+    CountingReader(int step) {
+      super(new Object(), 2, 1);
+      this.step = step;
+    }
+
+    @Override
+    void fetch() {
+      fetchCount++;
+      intSample[0] += step;
+      sample[1] = step / 2f;
+    }
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    CountingReader device = new CountingReader(1);
+    SimpleEV3Snapshot snapshot = new SimpleEV3Snapshot().add("a", device, 0).add("b", new CountingReader(10), 0).add("a/2", device, 1);
+    Assert.assertEquals(snapshot.getTimestamp(), 0);
+    int a = snapshot.getIndex("a"), b = snapshot.getIndex("b"), half = snapshot.getIndex("a/2");
+    float[] values = snapshot.read().getValues();
+    int[] intValues = snapshot.getIntValues();
+    Assert.assertEquals(device.fetchCount, 1); // One fetch by device, even with 2 values
+    Assert.assertEquals(intValues[a], 1);
+    Assert.assertEquals(values[b], 10f);
+    Assert.assertEquals(values[half], 0.5f, 0.0001f);
+    Assert.assertEquals(intValues[half], 0);
+    Assert.assertTrue(snapshot.getTimestamp() > 0);
+
+    snapshot.read();
+    Assert.assertEquals(device.fetchCount, 2);
+    Assert.assertSame(snapshot.getValues(), values, "Array reused");
+    Assert.assertSame(snapshot.getIntValues(), intValues, "Array reused");
+    Assert.assertEquals(values[b], 20f);
+
+    CountingReader other = new CountingReader(-1);
+    snapshot.add("a", other, 0).add("a/2", other, 1); // Replace, the first device is no more read
+    snapshot.read();
+    Assert.assertEquals(values.length, 3);
+    Assert.assertEquals(intValues[a], -1);
+    Assert.assertEquals(device.fetchCount, 2);
+    Assert.assertEquals(other.fetchCount, 1);
+
+    // Integer values are kept exact (a float can't represent 2^24 + 1)
+    final int big = (1 << 24) + 1;
+    snapshot.add("tacho", new CountingReader(big), 0);
+    snapshot.read();
+    Assert.assertEquals(snapshot.getIntValues()[snapshot.getIndex("tacho")], big);
+    Assert.assertEquals(snapshot.getIntValues()[b], 40);
+
+    try {
+      snapshot.getIndex("unknown");
+      Assert.fail("EV3ScriptException expected for unknown value");
+    } catch (EV3ScriptException ex) {
+      Assert.assertEquals(ex.getCode(), EV3ScriptException.INVALID_SNAPSHOT_VALUE_NAME);
+    }
+  }
+}
@@ -76,4 +76,22 @@ public class SimpleEV3SoundTest {
     Assert.assertEquals(SimpleEV3Sound.getFrequency("C7"), 2093);
   }
 
+  @Test
+  public void testMelody() throws Exception {
+    SimpleEV3Melody melody = SimpleEV3Melody.compile(new String[] { "Do", " - ", "a4", "Sol#" }, new float[] { 100, 50 });
+    Assert.assertEquals(melody.getNoteCount(), 4);
+    Assert.assertEquals(melody.getFrequency(0), (int) 261.626);
+    Assert.assertEquals(melody.getFrequency(1), 0); // Rest
+    Assert.assertEquals(melody.getFrequency(2), 440);
+    Assert.assertEquals(melody.getDuration(0), 100);
+    Assert.assertEquals(melody.getDuration(3), 50); // Last duration used for the remaining notes
+    Assert.assertEquals(melody.getDuration(), 250);
+
+    try {
+      SimpleEV3Melody.compile(new String[] { "Do", "Xy" }, new float[] { 100 });
+      Assert.fail("Invalid note should be detected at compile time");
+    } catch (EV3ScriptException ex) {
+      Assert.assertEquals(ex.getCode(), EV3ScriptException.INVALID_NOTE);
+    }
+  }
 }
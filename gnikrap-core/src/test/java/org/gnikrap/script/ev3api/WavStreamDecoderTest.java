@@ -0,0 +1,129 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class WavStreamDecoderTest {
+
+  private static void writeId(ByteArrayOutputStream out, String id) {
+    for (int i = 0; i < 4; i++) {
+      out.write(id.charAt(i));
+    }
+  }
+
+  private static void writeLittleEndian(ByteArrayOutputStream out, int value, int nbBytes) {
+    for (int i = 0; i < nbBytes; i++) {
+      out.write((value >> (8 * i)) & 0xFF);
+    }
+  }
+
+  private static byte[] buildWav(int channels, int bits, int rate, byte[] data, boolean withExtraChunk) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    writeId(out, "RIFF");
+    writeLittleEndian(out, 0, 4); // Length not used by the decoder
+    writeId(out, "WAVE");
+    if (withExtraChunk) {
+      writeId(out, "LIST");
+      writeLittleEndian(out, 3, 4);
+      out.write(1);
+      out.write(2);
+      out.write(3);
+      out.write(0); // Padding
+    }
+    writeId(out, "fmt ");
+    writeLittleEndian(out, 16, 4);
+    writeLittleEndian(out, 1, 2);
+    writeLittleEndian(out, channels, 2);
+    writeLittleEndian(out, rate, 4);
+    writeLittleEndian(out, rate * channels * bits / 8, 4);
+    writeLittleEndian(out, channels * bits / 8, 2);
+    writeLittleEndian(out, bits, 2);
+    writeId(out, "data");
+    writeLittleEndian(out, data.length, 4);
+    out.write(data, 0, data.length);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testDecode8BitsMonoByChunk() throws IOException {
+    byte[] data = new byte[10];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) (100 + i);
+    }
+    WavStreamDecoder decoder = new WavStreamDecoder(new ByteArrayInputStream(buildWav(1, 8, 8000, data, true)));
+    Assert.assertEquals(decoder.getSampleRate(), 8000);
+    Assert.assertEquals(decoder.getChannels(), 1);
+    Assert.assertEquals(decoder.getSampleCount(), 10L);
+
+    byte[] chunk = new byte[4];
+    Assert.assertEquals(decoder.read(chunk), 4);
+    Assert.assertEquals(Arrays.toString(chunk), Arrays.toString(new byte[] { 100, 101, 102, 103 }));
+    Assert.assertEquals(decoder.read(chunk), 4);
+    Assert.assertEquals(chunk[0], (byte) 104);
+    Assert.assertEquals(decoder.read(chunk), 2);
+    Assert.assertEquals(chunk[1], (byte) 109);
+    Assert.assertEquals(decoder.read(chunk), -1);
+    decoder.close();
+  }
+
+  @Test
+  public void testDecode16BitsStereo() throws IOException {
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    // Frame 1: both channels at max => 255 ; frame 2: silence => 128 ; frame 3: min and silence => 64
+    int[] samples = { 32767, 32767, 0, 0, -32768, 0 };
+    for (int s : samples) {
+      writeLittleEndian(data, s, 2);
+    }
+    data.write(0); // Incomplete frame, ignored
+    WavStreamDecoder decoder = new WavStreamDecoder(new ByteArrayInputStream(buildWav(2, 16, 22050, data.toByteArray(), false)));
+    Assert.assertEquals(decoder.getBitsPerSample(), 16);
+    Assert.assertEquals(decoder.getSampleCount(), 3L);
+
+    byte[] chunk = new byte[16];
+    Assert.assertEquals(decoder.read(chunk), 3);
+    Assert.assertEquals(chunk[0] & 0xFF, 255);
+    Assert.assertEquals(chunk[1] & 0xFF, 128);
+    Assert.assertEquals(chunk[2] & 0xFF, 64);
+    Assert.assertEquals(decoder.read(chunk), -1);
+  }
+
+  @Test
+  public void testInvalidFile() {
+    try {
+      new WavStreamDecoder(new ByteArrayInputStream("Not a WAV file at all".getBytes()));
+      Assert.fail("IOException expected");
+    } catch (IOException ioe) {
+      // Expected
+    }
+    try {
+      // Truncated before the 'data' chunk
+      byte[] wav = buildWav(1, 8, 8000, new byte[0], false);
+      new WavStreamDecoder(new ByteArrayInputStream(Arrays.copyOf(wav, 30)));
+      Assert.fail("IOException expected");
+    } catch (IOException ioe) {
+      // Expected
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Gnikrap is a simple scripting environment for the Lego Mindstrom EV3
+ * Copyright (C) 2017 Jean BENECH
+ * 
+ * Gnikrap is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * Gnikrap is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with Gnikrap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.gnikrap.script.ev3api.xsensors;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import org.gnikrap.script.ev3api.xsensors.FutureJsonToMapValue.MapXSensorValue;
+import org.gnikrap.script.ev3api.xsensors.FutureJsonToXTouchValue.XTouchValue;
+import org.gnikrap.script.ev3api.xsensors.FutureJsonToXVideoValue.XVideoValue;
+import org.gnikrap.utils.JsonUtils;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.eclipsesource.json.JsonValue;
+
+public class XSensorTest {
+
+  @Test
+  public void testXVideoDelta() {
+    XSensor sensor = new XSensor("video");
+    sensor.setFutureValue(new FutureJsonToXVideoValue(JsonValue.readFrom("{\"isStarted\": true, \"objects\": {\"a\": {\"x\": 1, \"y\": 2}, \"b\": {\"x\": 3, \"y\": 4}}}")));
+    sensor.setFutureValue(new FutureJsonToXVideoValue(JsonValue.readFrom("{\"isStarted\": true, \"isDelta\": true, \"objects\": {\"a\": {\"x\": 10, \"y\": 20}}, \"removed\": []}")));
+    sensor.setFutureValue(new FutureJsonToXVideoValue(JsonValue.readFrom("{\"isStarted\": true, \"isDelta\": true, \"objects\": {\"c\": {\"x\": 5, \"y\": 6}}, \"removed\": [\"b\"]}")));
+
+    XVideoValue value = (XVideoValue) sensor.getValue();
+    Assert.assertEquals(value.getObjects().length, 2);
+    Assert.assertEquals(value.getObject("a").getX(), 10);
+    Assert.assertEquals(value.getObject("a").getY(), 20);
+    Assert.assertFalse(value.containsObject("b"));
+    Assert.assertEquals(value.getObject("c").getX(), 5);
+  }
+
+  @Test
+  public void testXVideoKeyframeIgnorePreviousValue() {
+    XSensor sensor = new XSensor("video");
+    sensor.setFutureValue(new FutureJsonToXVideoValue(JsonValue.readFrom("{\"isStarted\": true, \"objects\": {\"a\": {\"x\": 1, \"y\": 2}}}")));
+    XVideoValue first = (XVideoValue) sensor.getValue();
+    sensor.setFutureValue(new FutureJsonToXVideoValue(JsonValue.readFrom("{\"isStarted\": true, \"objects\": {\"b\": {\"x\": 3, \"y\": 4}}}")));
+
+    XVideoValue value = (XVideoValue) sensor.getValue();
+    Assert.assertFalse(value.containsObject("a"));
+    Assert.assertTrue(value.containsObject("b"));
+    // Value previously read by the script is unchanged
+    Assert.assertTrue(first.containsObject("a"));
+    Assert.assertFalse(first.containsObject("b"));
+  }
+
+  @Test
+  public void testXTouchDeltaWithoutPreviousValue() {
+    XSensor sensor = new XSensor("touch");
+    sensor.setFutureValue(new FutureJsonToXTouchValue(JsonValue.readFrom("{\"isStarted\": true, \"isDelta\": true, \"touchs\": {\"left\": 2}, \"removed\": [\"right\"]}")));
+
+    XTouchValue value = (XTouchValue) sensor.getValue();
+    Assert.assertEquals(value.getTouches().length, 1);
+    Assert.assertEquals(value.getTouch("left").getHits(), 2);
+  }
+
+  @Test
+  public void testLongDeltaChain() {
+    XSensor sensor = new XSensor("touch");
+    sensor.setFutureValue(new FutureJsonToXTouchValue(JsonValue.readFrom("{\"isStarted\": true, \"touchs\": {}}")));
+    for (int i = 0; i < 1000; i++) {
+      sensor.setFutureValue(new FutureJsonToXTouchValue(JsonValue.readFrom("{\"isStarted\": true, \"isDelta\": true, \"touchs\": {\"t" + i + "\": 1}, \"removed\": []}")));
+    }
+
+    XTouchValue value = (XTouchValue) sensor.getValue();
+    Assert.assertEquals(value.getTouches().length, 1000);
+  }
+
+  @Test
+  public void testMapValue() {
+    XSensor sensor = new XSensor("custom");
+    sensor.setFutureValue(new FutureJsonToMapValue(JsonValue.readFrom("{\"isStarted\": true, \"i\": 12, \"f\": 1.5, \"s\": \"txt\", \"o\": {\"a\": [1, 2]}}")));
+
+    MapXSensorValue value = (MapXSensorValue) sensor.getValue();
+    Assert.assertTrue(value.isStarted());
+    Assert.assertEquals(value.size(), 5);
+    Assert.assertEquals(value.get("i"), Integer.valueOf(12));
+    Assert.assertEquals(value.get("s"), "txt");
+    Assert.assertNull(value.get("unknown"));
+    Assert.assertEquals(((List<?>) ((Map<?, ?>) value.get("o")).get("a")).get(1), Integer.valueOf(2));
+    Assert.assertEquals(value.getInt("i", -1), 12);
+    Assert.assertEquals(value.getInt("f", -1), 1);
+    Assert.assertEquals(value.getFloat("f", -1), 1.5f, 0.0001f);
+    Assert.assertEquals(value.getInt("s", -1), -1);
+    Assert.assertEquals(value.getBoolean("isStarted", false), true);
+    Assert.assertEquals(value.getBoolean("i", false), false);
+    Assert.assertTrue(value.keySet().contains("o"));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testMapValueIsReadOnly() {
+    Map<String, Object> o = (Map<String, Object>) JsonUtils.toLazyObject(JsonValue.readFrom("{\"a\": 1}"));
+    try {
+      o.put("b", 2);
+      Assert.fail("Read only map");
+    } catch (UnsupportedOperationException uoe) {
+      // Expected
+    }
+    try {
+      o.remove("a");
+      Assert.fail("Read only map");
+    } catch (UnsupportedOperationException uoe) {
+      // Expected
+    }
+    try {
+      o.clear();
+      Assert.fail("Read only map");
+    } catch (UnsupportedOperationException uoe) {
+      // Expected
+    }
+    Assert.assertEquals(o.get("a"), Integer.valueOf(1));
+  }
+
+  @Test
+  public void testRecordAndReplay() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    XSensorStreamRecorder recorder = new XSensorStreamRecorder(baos);
+    recorder.record(0, "video", JSonXSensorMessageFields.XSENSOR_TYPE_XVIDEO, JsonValue.readFrom("{\"isStarted\": true, \"objects\": {\"a\": {\"x\": 1, \"y\": 2}}}"));
+    recorder.record(10, "custom", null, JsonValue.readFrom("{\"isStarted\": true, \"v\": \"\u00e9t\u00e9\"}"));
+    recorder.record(20, "video", JSonXSensorMessageFields.XSENSOR_TYPE_XVIDEO, JsonValue.readFrom("{\"isStarted\": true, \"isDelta\": true, \"objects\": {\"b\": {\"x\": 3, \"y\": 4}}, \"removed\": []}"));
+    recorder.close();
+    Assert.assertEquals(recorder.getRecordCount(), 3);
+
+    XSensorManager manager = new XSensorManager();
+    XSensorStreamPlayer player = new XSensorStreamPlayer(new ByteArrayInputStream(baos.toByteArray()), manager, 0);
+    player.run();
+    Assert.assertFalse(player.isPlaying());
+    Assert.assertEquals(player.getReplayedCount(), 3);
+
+    XVideoValue video = (XVideoValue) manager.getSensor("video").getValue();
+    Assert.assertTrue(video.containsObject("a"));
+    Assert.assertEquals(video.getObject("b").getY(), 4);
+    Assert.assertEquals(((MapXSensorValue) manager.getSensor("custom").getValue()).get("v"), "\u00e9t\u00e9");
+  }
+
+  @Test
+  public void testReplayValueSetter() throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    XSensorStreamRecorder recorder = new XSensorStreamRecorder(baos);
+    recorder.record(0, "custom", null, JsonValue.readFrom("{\"isStarted\": true}"));
+    recorder.record(5, "custom", null, JsonValue.readFrom("{\"isStarted\": true}"));
+    recorder.close();
+
+    final List<String> calls = new ArrayList<String>();
+    XSensorManager manager = new XSensorManager();
+    XSensorStreamPlayer player = new XSensorStreamPlayer(new ByteArrayInputStream(baos.toByteArray()), manager, 0, new XSensorStreamPlayer.ValueSetter() {
+      @Override
+      public void setXSensorFutureValue(XSensor sensor, Future<XSensorValue> value) {
+        calls.add(sensor.getName());
+      }
+    });
+    player.run();
+    Assert.assertEquals(calls.toString(), "[custom, custom]");
+    Assert.assertFalse(manager.getSensor("custom").getValue().isStarted()); // Only set through the setter
+  }
+
+  @Test
+  public void testReplayInvalidStream() {
+    try {
+      new XSensorStreamPlayer(new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 5 }), new XSensorManager(), 1);
+      Assert.fail("IOException expected if the stream is not a XSensor record stream");
+    } catch (IOException ioe) {
+      // Expected
+    }
+  }
+}